@@ -0,0 +1,72 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Сравнение форматов и сжатия конверта: время кодирования запроса и размер тела в Kafka.
+// Размер выводится во вспомогательном счетчике bytes (байт на операцию)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiMessageEnvelopeBenchmark {
+    @Param({"json", "cbor"})
+    private String codec;
+
+    @Param({"none", "zstd", "lz4"})
+    private String compression;
+
+    @Param({"4096", "65536", "524288"})
+    private int textLength;
+
+    private AiMessageEnvelope envelope;
+    private AiRequestMessage message;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Size {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        envelope = new AiMessageEnvelope(new SimpleMeterRegistry(), codec, compression, 0, Integer.MAX_VALUE);
+        // Текст, похожий на документ: слова из небольшого словаря, кириллица
+        String[] words = {"отчет", "договор", "стороны", "обязуются", "выполнить", "работы", "в", "срок", "согласно", "приложению"};
+        StringBuilder text = new StringBuilder(textLength);
+        for (int i = 0; text.length() < textLength; i++) {
+            text.append(words[(i * 7 + i / 3) % words.length]).append(i % 12 == 11 ? ".\n" : " ");
+        }
+        message = new AiRequestMessage("request-id", "Исправь ошибки в тексте", text.substring(0, textLength), false);
+    }
+
+    @Benchmark
+    public ProducerRecord<String, byte[]> wrap(Size size) throws IOException {
+        ProducerRecord<String, byte[]> record = envelope.wrap("topic", message);
+        size.bytes += record.value().length;
+        return record;
+    }
+}
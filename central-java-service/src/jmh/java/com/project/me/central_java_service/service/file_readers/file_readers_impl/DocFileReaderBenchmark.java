@@ -0,0 +1,107 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.usermodel.CharacterRun;
+import org.apache.poi.hwpf.usermodel.Paragraph;
+import org.apache.poi.hwpf.usermodel.Range;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Сравнение DocFileReader с прежним проходом (String.format и цепочка replace на каждый фрагмент)
+// на уже разобранном документе: замеряется только построение HTML, без разбора файла в HWPF.
+// В репозитории нет doc файлов, путь к файлу задается параметром: -p file=/path/to/document.doc.
+// Память на операцию - с профилировщиком: -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocFileReaderBenchmark {
+    private static final String[] ALIGN_STYLES = {
+            "text-align: left;", "text-align: center;", "text-align: right;", "text-align: justify"
+    };
+
+    @Param("")
+    private String file;
+
+    private HWPFDocument document;
+    private final DocFileReader reader = new DocFileReader();
+
+    @Setup
+    public void setUp() throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalStateException("Не задан doc файл: -p file=/path/to/document.doc");
+        }
+        try (InputStream inputStream = Files.newInputStream(Path.of(file))) {
+            document = new HWPFDocument(inputStream);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public String singlePass() {
+        return reader.read(document.getRange(), document.getText());
+    }
+
+    @Benchmark
+    public String previous() {
+        StringBuilder htmlContent = new StringBuilder("<html><body>");
+        Range range = document.getRange();
+        for (int i = 0; i < range.numParagraphs(); i++) {
+            Paragraph paragraph = range.getParagraph(i);
+            int justification = paragraph.getJustification();
+            String alignment = justification >= 0 && justification < ALIGN_STYLES.length ? ALIGN_STYLES[justification] : ALIGN_STYLES[0];
+            htmlContent.append(String.format("<p style=\"%s\">", alignment));
+
+            for (int j = 0; j < paragraph.numCharacterRuns(); j++) {
+                CharacterRun run = paragraph.getCharacterRun(j);
+                int fontSize = run.getFontSize();
+                String fontSizeStyle = fontSize > 0 ? String.format("font-size: %dpx", fontSize) : "";
+                htmlContent.append(String.format("<span style=\"%s\">", fontSizeStyle));
+                String text = run.text();
+                if (run.isBold()) {
+                    htmlContent.append("<b>");
+                }
+                if (run.isItalic()) {
+                    htmlContent.append("<i>");
+                }
+                htmlContent.append(text
+                        .replace("&", "&amp;")
+                        .replace("<", "&lt;")
+                        .replace(">", "&gt;")
+                        .replace("\n", "<br>")
+                        .replace("\r", "<br>"));
+                if (run.isItalic()) {
+                    htmlContent.append("</i>");
+                }
+                if (run.isBold()) {
+                    htmlContent.append("</b>");
+                }
+                htmlContent.append("/span");
+            }
+            htmlContent.append("</p><br>");
+        }
+        return htmlContent.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Сравнение потокового DocXFileReader с прежним чтением через XWPFDocument на одном и том же файле.
+// Перед замером проверяется, что вывод совпадает. Память на операцию - с профилировщиком: -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class DocXFileReaderBenchmark {
+    @Param({"1000", "20000", "150000"})
+    private int paragraphs;
+
+    private byte[] docx;
+    private MockMultipartFile file;
+    private final DocXFileReader reader = new DocXFileReader();
+
+    @Setup
+    public void setUp() throws IOException {
+        docx = DocxFixtures.paragraphs(paragraphs);
+        file = new MockMultipartFile("file", "file.docx", null, docx);
+        if (!reader.readFile(file).equals(XwpfDocxReader.read(docx))) {
+            throw new IllegalStateException("Вывод DocXFileReader отличается от XWPFDocument");
+        }
+    }
+
+    @Benchmark
+    public String streaming() {
+        return reader.readFile(file);
+    }
+
+    @Benchmark
+    public String xwpf() throws IOException {
+        return XwpfDocxReader.read(docx);
+    }
+}
@@ -0,0 +1,63 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Время чтения pdf в зависимости от числа потоков пула. threads = 0 - чтение за один проход,
+// как до разбиения на диапазоны; остальные значения - пул такого размера и диапазоны от 20 страниц
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PDFFileReaderBenchmark {
+    @Param({"0", "2", "4", "8"})
+    private int threads;
+
+    @Param({"40", "400"})
+    private int pages;
+
+    private ThreadPoolTaskExecutor executor;
+    private PDFFileReader reader;
+    private MockMultipartFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setQueueCapacity(Math.max(1, threads) * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        reader = new PDFFileReader(executor, threads == 0 ? Integer.MAX_VALUE : 20, Duration.ofMinutes(5));
+        file = new MockMultipartFile("file", "file.pdf", "application/pdf", PdfFixtures.pages(pages, 50));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public String read() {
+        return reader.readFile(file);
+    }
+}
@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableMongoRepositories(basePackages = "com.project.me.central_java_service.repository")
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 public class CentralJavaServiceApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(CentralJavaServiceApplication.class, args);
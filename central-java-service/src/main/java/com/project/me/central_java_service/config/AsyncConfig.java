@@ -1,22 +1,87 @@
 package com.project.me.central_java_service.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig {
     @Bean
-    public Executor taskExecutor() {
+    public Executor taskExecutor(MeterRegistry meterRegistry) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(25);
         executor.initialize();
+        // Метрики пула, в том числе executor.queued - количество задач в очереди
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "taskExecutor");
+        return executor;
+    }
+
+    // Пул для параллельного извлечения текста из страниц PDF. Ограничивает число потоков
+    // на все загрузки сразу; по умолчанию - по числу процессоров.
+    // Очередь ограничена: когда она заполнена, диапазон читается в потоке запроса
+    @Bean
+    public ThreadPoolTaskExecutor pdfTextExecutor(MeterRegistry meterRegistry,
+                                                  @Value("${documents.import.pdf.threads:0}") int threads,
+                                                  @Value("${documents.import.pdf.queue-capacity:0}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity > 0 ? queueCapacity : poolSize * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("pdf-text-");
+        executor.initialize();
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "pdfTextExecutor");
+        return executor;
+    }
+
+    // Пул отправки событий SSE. Поток Kafka только ставит событие в очередь клиента,
+    // запись в соединение выполняется здесь
+    @Bean
+    public ThreadPoolTaskExecutor sseExecutor(MeterRegistry meterRegistry,
+                                              @Value("${ai.stream.sender-threads:8}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("sse-");
+        executor.initialize();
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "sseExecutor");
+        return executor;
+    }
+
+    // Один поток, который отправляет запросы к нейросети из справедливой очереди в Kafka
+    @Bean
+    public ThreadPoolTaskExecutor aiDispatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("ai-dispatch-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Запись результатов нейросети во второй уровень кэша (MongoDB) вне потока Kafka.
+    // Очередь ограничена: при переполнении запись пропускается
+    @Bean
+    public ThreadPoolTaskExecutor aiCacheWriteExecutor(MeterRegistry meterRegistry,
+                                                       @Value("${ai.cache.write-queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-cache-write-");
+        executor.initialize();
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "aiCacheWriteExecutor");
         return executor;
     }
 }
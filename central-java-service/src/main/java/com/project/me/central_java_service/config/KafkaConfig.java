@@ -1,5 +1,9 @@
 package com.project.me.central_java_service.config;
+
+import com.project.me.central_java_service.service.ai_pipeline.AiLane;
+import com.project.me.central_java_service.service.ai_pipeline.InstanceReplyTopic;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
@@ -8,10 +12,20 @@ import org.springframework.kafka.config.TopicBuilder;
 @EnableKafka
 @Configuration
 class KafkaConfig {
+    // Несколько партиций позволяют обрабатывать части большого документа параллельно несколькими воркерами
     @Bean
-    public NewTopic createRequestTextProcessTopic() {
-        return TopicBuilder.name("text-processing-requests")
-                .partitions(1)
+    public NewTopic createRequestTextProcessTopic(@Value("${ai.kafka.request-partitions:3}") int partitions) {
+        return TopicBuilder.name(AiLane.LONG.getTopic())
+                .partitions(partitions)
+                .replicas(1)
+                .build();
+    }
+
+    // Полоса коротких интерактивных запросов
+    @Bean
+    public NewTopic createShortRequestTextProcessTopic(@Value("${ai.lanes.short.partitions:1}") int partitions) {
+        return TopicBuilder.name(AiLane.SHORT.getTopic())
+                .partitions(partitions)
                 .replicas(1)
                 .build();
     }
@@ -24,6 +38,15 @@ class KafkaConfig {
                 .build();
     }
 
+    // Топик ответов для текущего экземпляра сервиса
+    @Bean
+    public NewTopic createInstanceReplyTopic(InstanceReplyTopic replyTopic) {
+        return TopicBuilder.name(replyTopic.getName())
+                .partitions(1)
+                .replicas(1)
+                .build();
+    }
+
     @Bean
     public NewTopic createNewUserTopic() {
         return TopicBuilder.name("new-user")
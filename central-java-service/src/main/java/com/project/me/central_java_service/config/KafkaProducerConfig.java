@@ -1,6 +1,7 @@
 package com.project.me.central_java_service.config;
 
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -36,4 +37,17 @@ public class KafkaProducerConfig {
     public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
+
+    // Сообщения нейросети передаются в бинарном конверте, формат тела задается заголовками
+    @Bean
+    public ProducerFactory<String, byte[]> aiProducerFactory() {
+        Map<String, Object> props = producerConfig();
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> aiKafkaTemplate(ProducerFactory<String, byte[]> aiProducerFactory) {
+        return new KafkaTemplate<>(aiProducerFactory);
+    }
 }
\ No newline at end of file
@@ -1,10 +1,17 @@
 package com.project.me.central_java_service.config;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
 import com.mongodb.client.MongoClients;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import java.util.Arrays;
+import java.util.List;
 
 @Configuration
 public class MongoConfig {
@@ -14,8 +21,38 @@ public class MongoConfig {
     @Value("${servers.mongodbname}")
     private String mongoDbName;
 
+    // Алгоритмы сжатия трафика с MongoDB в порядке предпочтения. Сервер выбирает первый поддерживаемый.
+    // Сжатие, указанное в строке подключения (compressors=...), имеет приоритет
+    @Value("${servers.mongo-compressors:zstd,zlib}")
+    private String mongoCompressors;
+
     @Bean
     public MongoTemplate mongoTemplate() {
-        return new MongoTemplate(MongoClients.create(mongoAddr), mongoDbName);
+        ConnectionString connectionString = new ConnectionString(mongoAddr);
+        MongoClientSettings.Builder settings = MongoClientSettings.builder().applyConnectionString(connectionString);
+        if (connectionString.getCompressorList().isEmpty()) {
+            settings.compressorList(compressors(mongoCompressors));
+        }
+        return new MongoTemplate(MongoClients.create(settings.build()), mongoDbName);
+    }
+
+    private static List<MongoCompressor> compressors(String names) {
+        return Arrays.stream(names.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty() && !name.equals("none"))
+                .map(name -> switch (name) {
+                    case "zstd" -> MongoCompressor.createZstdCompressor();
+                    case "zlib" -> MongoCompressor.createZlibCompressor();
+                    case "snappy" -> MongoCompressor.createSnappyCompressor();
+                    default -> throw new IllegalArgumentException("Неизвестный алгоритм сжатия MongoDB: " + name);
+                })
+                .toList();
+    }
+
+    // Хранилище больших текстов, которые не передаются через Kafka
+    @Bean
+    public GridFsTemplate aiPayloadGridFsTemplate(MongoTemplate mongoTemplate,
+                                                  @Value("${ai.claim-check.bucket:ai_payloads}") String bucket) {
+        return new GridFsTemplate(mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter(), bucket);
     }
 }
@@ -3,6 +3,9 @@ package com.project.me.central_java_service.controller;
 import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.exception.CentralErrorResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -16,6 +19,12 @@ import java.util.Map;
 @Slf4j
 @RestControllerAdvice
 public class CentralGlobalExceptionHandler {
+    private final long retryAfterSeconds;
+
+    public CentralGlobalExceptionHandler(@Value("${ai.admission.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
     @ExceptionHandler(BaseCoreServiceException.class)
     public ResponseEntity<CentralErrorResponse> handleException(BaseCoreServiceException ex) {
         log.warn(ex.getMessage());
@@ -24,7 +33,21 @@ public class CentralGlobalExceptionHandler {
                 ex.getReason(),
                 ex.getMessage()
         );
-        return new ResponseEntity<>(authErrorResponse, ex.getStatusCode());
+        return new ResponseEntity<>(authErrorResponse, ex.getHeaders(), ex.getStatusCode());
+    }
+
+    // Пул потоков обработки переполнен
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<CentralErrorResponse> handleTaskRejected(TaskRejectedException ex) {
+        log.warn("CentralGlobalExceptionHandler. Пул потоков переполнен: {}", ex.getMessage());
+        CentralErrorResponse errorResponse = new CentralErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "Сервис перегружен, повторите запрос позже"
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(errorResponse);
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
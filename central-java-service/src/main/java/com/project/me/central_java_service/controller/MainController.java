@@ -1,23 +1,31 @@
 package com.project.me.central_java_service.controller;
 
-import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.model.dto.*;
 import com.project.me.central_java_service.model.entity.Document;
 import com.project.me.central_java_service.model.entity.TextAiRequest;
-import com.project.me.central_java_service.model.entity.User;
-import com.project.me.central_java_service.repository.UserRepository;
 import com.project.me.central_java_service.service.*;
+import com.project.me.central_java_service.service.ai_pipeline.AiAdmissionLimiter;
+import com.project.me.central_java_service.service.history.RequestHistoryAppender;
+import com.project.me.central_java_service.service.history.RequestHistoryService;
+import com.project.me.central_java_service.util.DocumentETag;
 import com.project.me.central_java_service.util.PreMadePrompts;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,9 +34,13 @@ import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @RestController
@@ -38,66 +50,96 @@ public class MainController {
     private final UserDocumentsService userDocumentsService;
     private final ExportFileService exportFileService;
     private final ReaderFileService readerFileService;
-    private final UserRepository userRepository;
+    private final RequestHistoryAppender historyAppender;
+    private final RequestHistoryService historyService;
     private final PreMadePrompts preMadePrompts;
     private final VirusScannerService virusScannerService;
+    private final AiAdmissionLimiter admissionLimiter;
+    private final ThreadPoolTaskExecutor sseExecutor;
+    private final int maxPendingDeltas;
 
     @Autowired
     public MainController(CoreService coreService,
                           UserDocumentsService userDocumentsService,
                           ExportFileService exportFileService,
                           ReaderFileService readerFileService,
-                          UserRepository userRepository, PreMadePrompts preMadePrompts, VirusScannerService virusScannerService) {
+                          RequestHistoryAppender historyAppender, RequestHistoryService historyService, PreMadePrompts preMadePrompts, VirusScannerService virusScannerService,
+                          AiAdmissionLimiter admissionLimiter,
+                          @Qualifier("sseExecutor") ThreadPoolTaskExecutor sseExecutor,
+                          @Value("${ai.stream.max-pending-deltas:256}") int maxPendingDeltas) {
         this.coreService = coreService;
         this.userDocumentsService = userDocumentsService;
         this.readerFileService = readerFileService;
         this.exportFileService = exportFileService;
-        this.userRepository = userRepository;
+        this.historyAppender = historyAppender;
+        this.historyService = historyService;
         this.preMadePrompts = preMadePrompts;
         this.virusScannerService = virusScannerService;
+        this.admissionLimiter = admissionLimiter;
+        this.sseExecutor = sseExecutor;
+        this.maxPendingDeltas = maxPendingDeltas;
     }
 
-    // Запрос на обработку текста и занесение его в базу
-    @Async(value = "taskExecutor")
+    // Запрос на обработку текста и занесение его в базу.
+    // Проверка лимита выполняется в потоке запроса, чтобы при перегрузке сразу ответить 429/503
     @PostMapping("/process-text")
     public CompletableFuture<ResponseEntity<TextResponseDTO>> processText(
             @RequestBody @Valid TextRequestDTO textRequestDTO,
             @RequestHeader(value = "From") String userEmail) {
         log.info("MainController. POST-запрос. text={}, instruction={}, email={}", textRequestDTO.text().substring(0, Math.min(20, textRequestDTO.text().length())), textRequestDTO.instruction(), userEmail);
-        return coreService.processText(textRequestDTO)
+        return admissionLimiter.execute(() -> coreService.processText(textRequestDTO, userEmail))
                 .orTimeout(60, TimeUnit.SECONDS)
                 .thenApply(result -> {
-                    TextAiRequest request = new TextAiRequest();
-                    request.setAiRequestId(UUID.randomUUID().toString());
-
-                    Map<String, String> prompts = preMadePrompts.getOptions();
-                    if (prompts.containsKey(textRequestDTO.instruction())) {
-                        request.setPrompt("Опция: " + prompts.get(textRequestDTO.instruction()).toLowerCase());
-                    } else {
-                        request.setPrompt(textRequestDTO.instruction());
-                    }
+                    saveRequestToHistory(textRequestDTO, result, userEmail);
+                    return ResponseEntity.ok().body(result);
+                })
+                .exceptionally(this::processTextErrorResponse);
+    }
 
-                    request.setRequestText(textRequestDTO.text());
-                    request.setResponseText(result.result());
-                    request.setRequestTime(LocalDateTime.now());
+    // Потоковая обработка текста: части ответа отправляются клиенту как Server-Sent Events.
+    // События "delta" содержат очередную часть текста, "done" - итоговый результат, "error" - ошибку.
+    // При отключении клиента запрос к нейросети отменяется
+    @PostMapping(value = "/process-text-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter processTextStream(
+            @RequestBody @Valid TextRequestDTO textRequestDTO,
+            @RequestHeader(value = "From") String userEmail) {
+        log.info("MainController. POST-запрос. Потоковая обработка. instruction={}, email={}", textRequestDTO.instruction(), userEmail);
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(60));
+        SseEventStream events = new SseEventStream(emitter, sseExecutor, maxPendingDeltas);
 
-                    User user = userRepository.findUserByUserEmail(userEmail)
-                            .orElseThrow(
-                                    () -> new BaseCoreServiceException(HttpStatus.NOT_FOUND, "Пользователь не найден")
-                            );
+        CompletableFuture<TextResponseDTO> future;
+        try {
+            future = admissionLimiter.execute(
+                    () -> coreService.processTextStream(textRequestDTO, userEmail, events::delta)
+            );
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<TextResponseDTO> request = future;
+        events.onClientGone(() -> request.cancel(false));
 
-                    user.getRequests().add(request);
-                    userRepository.save(user);
+        future.whenComplete((result, throwable) -> {
+            if (throwable instanceof CancellationException) {
+                log.info("MainController. Клиент отключился, потоковая обработка отменена");
+                return;
+            }
+            if (throwable != null) {
+                log.warn("MainController. Ошибка потоковой обработки: {}", throwable.getMessage());
+                events.finish("error", "Ошибка обработки текста");
+                return;
+            }
+            try {
+                saveRequestToHistory(textRequestDTO, result, userEmail);
+            } catch (RuntimeException e) {
+                log.warn("MainController. Не удалось сохранить запрос в историю: {}", e.getMessage());
+            }
+            events.finish("done", result);
+        });
 
-                    return ResponseEntity.ok().body(result);
-                })
-                .exceptionally(throwable -> {
-                    System.err.println("Ошибка: " + throwable.getMessage());
-                    return ResponseEntity.internalServerError().build();
-                });
+        return emitter;
     }
 
-    // Запрос на считывание файла .doc или .docx
+    // Запрос на считывание файла. Формат определяется по содержимому (doc, docx, odt, rtf, pdf, txt, html, md)
     @PostMapping(value = "/upload-document-file", produces = "application/json")
     public ResponseEntity<?> uploadMicrosoftFile(
             @RequestParam("file") MultipartFile file,
@@ -137,10 +179,49 @@ public class MainController {
     }
 
     // Запрос на получение всех документов для пользователя
+    // Ответ помечается ETag по ревизии документов пользователя; без изменений возвращается 304
     @GetMapping("/all-user-documents")
-    public ResponseEntity<List<Document>> getAllUserSessions(@RequestHeader(value = "From") String userEmail) {
+    public ResponseEntity<List<Document>> getAllUserSessions(@RequestHeader(value = "From") String userEmail,
+                                                             WebRequest webRequest) {
         log.info("MainController. GET-запрос. Получение списка всех документов для {}", userEmail);
-        return new ResponseEntity<>(userDocumentsService.getAllDocuments(userEmail), HttpStatus.OK);
+        Optional<String> eTag = userDocumentsService.getDocumentsETag(userEmail, "all");
+        if (eTag.isPresent() && webRequest.checkNotModified(eTag.get())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build();
+        }
+        return withETag(eTag).body(userDocumentsService.getAllDocuments(userEmail));
+    }
+
+    // Запрос на получение страницы списка документов (без текстов)
+    @GetMapping("/user-documents-page")
+    public ResponseEntity<DocumentPageDTO> getUserDocumentsPage(
+            @RequestHeader(value = "From") String userEmail,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String namePrefix,
+            WebRequest webRequest) {
+        log.info("MainController. GET-запрос. Получение страницы документов для {}", userEmail);
+        Optional<String> eTag = userDocumentsService.getDocumentsETag(userEmail, "page", cursor, limit, namePrefix);
+        if (eTag.isPresent() && webRequest.checkNotModified(eTag.get())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build();
+        }
+        return withETag(eTag).body(userDocumentsService.getDocumentsPage(userEmail, cursor, limit, namePrefix));
+    }
+
+    // Запрос на получение одного документа с текстом
+    // Версия документа возвращается в ETag; если она совпадает с If-None-Match, текст не загружается (304)
+    @GetMapping("/get-document")
+    public ResponseEntity<Document> getDocument(
+            @RequestHeader(value = "From") String userEmail,
+            @RequestParam String documentId,
+            WebRequest webRequest) {
+        log.info("MainController. GET-запрос. Получение документа с documentId={} для пользователя с email={}", documentId, userEmail);
+        String eTag = DocumentETag.of(userDocumentsService.getDocumentVersion(userEmail, documentId));
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        Document document = userDocumentsService.getDocument(userEmail, documentId);
+        long version = document.getVersion() == null ? 0 : document.getVersion();
+        return ResponseEntity.ok().eTag(DocumentETag.of(version)).body(document);
     }
 
     // Запрос на создание нового документа
@@ -152,26 +233,35 @@ public class MainController {
         return new ResponseEntity<>(userDocumentsService.createDocument(userEmail), HttpStatus.OK);
     }
 
-    // Запрос на сохранение измнений в документе
+    // Запрос на сохранение измнений в документе. Если передан If-Match, документ сохраняется
+    // только при совпадении версии, иначе 409. Новая версия возвращается в ETag
     @PutMapping(value = "/save-document-changes", produces = "application/json")
-    public ResponseEntity<HttpStatus> saveDocumentChanges(@RequestBody @Valid SaveDocumentDTO documentDTO, @RequestHeader("From") String userEmail) {
+    public ResponseEntity<HttpStatus> saveDocumentChanges(
+            @RequestBody @Valid SaveDocumentDTO documentDTO,
+            @RequestHeader("From") String userEmail,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("MainController. PUT-запрос. Внесение изменений в документ с documentId={} для пользователя с email={}", documentDTO.documentId(), userEmail);
-        if (userDocumentsService.saveOrUpdateDocument(documentDTO, userEmail)) {
-            return new ResponseEntity<>(HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        }
+        long version = userDocumentsService.saveOrUpdateDocument(documentDTO, userEmail, DocumentETag.parse(ifMatch));
+        return ResponseEntity.ok().eTag(DocumentETag.of(version)).build();
+    }
+
+    // Запрос на частичное сохранение документа: изменения относительно версии, известной клиенту
+    @PatchMapping(value = "/patch-document", produces = "application/json")
+    public ResponseEntity<DocumentVersionDTO> patchDocument(@RequestBody @Valid PatchDocumentDTO patchDTO, @RequestHeader("From") String userEmail) {
+        log.info("MainController. PATCH-запрос. Частичное сохранение документа с documentId={} для пользователя с email={}", patchDTO.documentId(), userEmail);
+        DocumentVersionDTO result = userDocumentsService.patchDocument(patchDTO, userEmail);
+        return ResponseEntity.ok().eTag(DocumentETag.of(result.version())).body(result);
     }
 
-    // Запрос на смену имени у документа
+    // Запрос на смену имени у документа. If-Match и ETag - как при сохранении документа
     @PutMapping(value = "/update-document-name")
-    public ResponseEntity<?> updateDocumentName(@RequestBody @Valid UpdateDocumentNameDTO documentNameDTO, @RequestHeader("From") String userEmail) {
+    public ResponseEntity<?> updateDocumentName(
+            @RequestBody @Valid UpdateDocumentNameDTO documentNameDTO,
+            @RequestHeader("From") String userEmail,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("MainController. PUT-запрос. Запрос на переименование документа. documentId={}", documentNameDTO.documentId());
-        if (userDocumentsService.updateDocumentName(documentNameDTO, userEmail)) {
-            return new ResponseEntity<>(HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        }
+        long version = userDocumentsService.updateDocumentName(documentNameDTO, userEmail, DocumentETag.parse(ifMatch));
+        return ResponseEntity.ok().eTag(DocumentETag.of(version)).build();
     }
 
     // Запрос на удаление документа
@@ -192,11 +282,70 @@ public class MainController {
         return ResponseEntity.ok().body(Map.of("email", userEmail));
     }
 
-    // Запрос на получение истории запросов
+    // Запрос на получение страницы истории запросов (без текстов запроса и ответа)
     @GetMapping("/get-request-history")
-    public ResponseEntity<List<TextAiRequest>> getRequestHistory(@RequestHeader("From") String userEmail) {
+    public ResponseEntity<RequestHistoryPageDTO> getRequestHistory(
+            @RequestHeader("From") String userEmail,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            WebRequest webRequest) {
         log.info("MainController. GET-запрос. Получение истории запросов для пользователя с email={}", userEmail);
-        List<TextAiRequest> res = userDocumentsService.getUserRequestHistory(userEmail);
-        return ResponseEntity.ok().body(res);
+        Optional<String> eTag = historyService.getPageETag(userEmail, cursor, limit);
+        if (eTag.isPresent() && webRequest.checkNotModified(eTag.get())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).build();
+        }
+        return withETag(eTag).body(historyService.getPage(userEmail, cursor, limit));
+    }
+
+    // Запрос на получение одной записи истории с текстами запроса и ответа
+    @GetMapping("/get-request-history-entry")
+    public ResponseEntity<TextAiRequest> getRequestHistoryEntry(
+            @RequestHeader("From") String userEmail,
+            @RequestParam String aiRequestId) {
+        log.info("MainController. GET-запрос. Получение записи истории aiRequestId={} для пользователя с email={}", aiRequestId, userEmail);
+        return ResponseEntity.ok().body(historyService.getEntry(userEmail, aiRequestId));
+    }
+
+    private static ResponseEntity.BodyBuilder withETag(Optional<String> eTag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        eTag.ifPresent(builder::eTag);
+        return builder;
+    }
+
+    // Сохранение запроса к нейросети в историю пользователя. Запись выполняется отложенно
+    private void saveRequestToHistory(TextRequestDTO textRequestDTO, TextResponseDTO result, String userEmail) {
+        TextAiRequest request = new TextAiRequest();
+        request.setAiRequestId(UUID.randomUUID().toString());
+
+        Map<String, String> prompts = preMadePrompts.getOptions();
+        if (prompts.containsKey(textRequestDTO.instruction())) {
+            request.setPrompt("Опция: " + prompts.get(textRequestDTO.instruction()).toLowerCase());
+        } else {
+            request.setPrompt(textRequestDTO.instruction());
+        }
+
+        request.setRequestText(textRequestDTO.text());
+        request.setResponseText(result.result());
+        request.setRequestTime(LocalDateTime.now());
+
+        historyAppender.append(userEmail, request);
+    }
+
+    // Ответ на ошибку обработки текста: перегрузка и ошибки нейросети сохраняют свой статус
+    private ResponseEntity<TextResponseDTO> processTextErrorResponse(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        log.warn("MainController. Ошибка обработки текста: {}", cause.getMessage());
+
+        if (cause instanceof ResponseStatusException statusException) {
+            return ResponseEntity.status(statusException.getStatusCode())
+                    .headers(statusException.getHeaders())
+                    .build();
+        }
+        if (cause instanceof TimeoutException) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+        }
+        return ResponseEntity.internalServerError().build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.project.me.central_java_service.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Отправка событий SSE клиенту без блокировки вызывающего потока.
+// События копятся в очереди потока и отправляются в отдельном пуле по одному, в порядке поступления,
+// поэтому медленный клиент не задерживает поток Kafka, который принимает ответы для всех клиентов.
+// Если клиент не успевает забирать части ответа, новые части отбрасываются: итоговое событие
+// все равно содержит полный текст. При отключении клиента или таймауте вызывается onClientGone
+@Slf4j
+public class SseEventStream {
+    private final SseEmitter emitter;
+    private final Executor executor;
+    private final int maxPendingDeltas;
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingDeltas = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile boolean deltasDropped;
+    private volatile boolean finished;
+    private volatile Runnable onClientGone = () -> {
+    };
+
+    public SseEventStream(SseEmitter emitter, Executor executor, int maxPendingDeltas) {
+        this.emitter = emitter;
+        this.executor = executor;
+        this.maxPendingDeltas = maxPendingDeltas;
+
+        emitter.onTimeout(this::clientGone);
+        emitter.onError(ex -> clientGone());
+        emitter.onCompletion(this::clientGone);
+    }
+
+    // Действие при отключении клиента до итогового события, например отмена запроса к нейросети
+    public void onClientGone(Runnable action) {
+        this.onClientGone = action;
+        if (closed.get() && !finished) {
+            action.run();
+        }
+    }
+
+    // Очередная часть ответа
+    public void delta(Object data) {
+        if (closed.get() || deltasDropped) {
+            return;
+        }
+        if (pendingDeltas.incrementAndGet() > maxPendingDeltas) {
+            pendingDeltas.decrementAndGet();
+            deltasDropped = true;
+            log.warn("SseEventStream. Клиент не успевает получать части ответа, дальше будет отправлен только итог");
+            return;
+        }
+        events.add(new Event("delta", data, false));
+        schedule();
+    }
+
+    // Итоговое событие, после которого поток закрывается
+    public void finish(String name, Object data) {
+        events.add(new Event(name, data, true));
+        schedule();
+    }
+
+    private void schedule() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            log.warn("SseEventStream. Пул отправки событий переполнен, поток закрыт");
+            close();
+        }
+    }
+
+    private void drain() {
+        do {
+            Event event;
+            while ((event = events.poll()) != null) {
+                if (!event.last()) {
+                    pendingDeltas.decrementAndGet();
+                }
+                if (!closed.get()) {
+                    send(event);
+                }
+            }
+            draining.set(false);
+            // Событие могло прийти между последней проверкой очереди и сбросом флага
+        } while (!events.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private void send(Event event) {
+        try {
+            emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+            if (event.last()) {
+                finished = true;
+                closed.set(true);
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SseEventStream. Не удалось отправить событие {}: {}", event.name(), e.getMessage());
+            close();
+        }
+    }
+
+    private void close() {
+        if (closed.compareAndSet(false, true)) {
+            events.clear();
+            emitter.complete();
+            onClientGone.run();
+        }
+    }
+
+    private void clientGone() {
+        if (closed.compareAndSet(false, true)) {
+            events.clear();
+            onClientGone.run();
+        }
+    }
+
+    private record Event(String name, Object data, boolean last) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.project.me.central_java_service.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+// Отказ в обработке запроса из-за перегрузки. Клиенту возвращается заголовок Retry-After
+public class AiOverloadedException extends BaseCoreServiceException {
+    private final long retryAfterSeconds;
+
+    public AiOverloadedException(HttpStatusCode code, String message, long retryAfterSeconds) {
+        super(code, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
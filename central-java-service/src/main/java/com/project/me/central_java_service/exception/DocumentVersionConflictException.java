@@ -0,0 +1,26 @@
+package com.project.me.central_java_service.exception;
+
+import com.project.me.central_java_service.util.DocumentETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+// Документ изменился после версии, от которой считал изменения клиент.
+// Текущая версия возвращается в заголовках X-Document-Version и ETag
+public class DocumentVersionConflictException extends BaseCoreServiceException {
+    public static final String VERSION_HEADER = "X-Document-Version";
+
+    private final long currentVersion;
+
+    public DocumentVersionConflictException(long currentVersion) {
+        super(HttpStatus.CONFLICT, "Документ был изменен, текущая версия: " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(VERSION_HEADER, String.valueOf(currentVersion));
+        headers.setETag(DocumentETag.of(currentVersion));
+        return headers;
+    }
+}
@@ -0,0 +1,10 @@
+package com.project.me.central_java_service.model.dto;
+
+import java.util.List;
+
+// Страница списка документов. nextCursor передается в следующий запрос, null - страниц больше нет
+public record DocumentPageDTO(
+        List<DocumentSummaryDTO> items,
+        String nextCursor
+) {
+}
@@ -0,0 +1,13 @@
+package com.project.me.central_java_service.model.dto;
+
+import java.time.LocalDateTime;
+
+// Документ в списке: без текста, только его длина
+public record DocumentSummaryDTO(
+        String documentId,
+        String documentName,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Integer textLength
+) {
+}
@@ -0,0 +1,7 @@
+package com.project.me.central_java_service.model.dto;
+
+public record DocumentVersionDTO(
+        String documentId,
+        long version
+) {
+}
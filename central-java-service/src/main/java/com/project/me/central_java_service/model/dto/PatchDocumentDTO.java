@@ -0,0 +1,19 @@
+package com.project.me.central_java_service.model.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public record PatchDocumentDTO(
+
+        @NotNull
+        String documentId,
+
+        // Версия документа, относительно которой вычислены изменения
+        @NotNull
+        Long baseVersion,
+
+        @NotNull
+        List<TextEditOperation> ops
+) {
+}
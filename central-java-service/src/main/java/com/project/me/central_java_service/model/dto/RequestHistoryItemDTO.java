@@ -0,0 +1,11 @@
+package com.project.me.central_java_service.model.dto;
+
+import java.time.LocalDateTime;
+
+// Запись истории без текстов запроса и ответа
+public record RequestHistoryItemDTO(
+        String aiRequestId,
+        String prompt,
+        LocalDateTime requestTime
+) {
+}
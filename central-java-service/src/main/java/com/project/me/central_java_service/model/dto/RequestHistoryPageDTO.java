@@ -0,0 +1,10 @@
+package com.project.me.central_java_service.model.dto;
+
+import java.util.List;
+
+// Страница истории запросов. nextCursor передается в следующий запрос, null - страниц больше нет
+public record RequestHistoryPageDTO(
+        List<RequestHistoryItemDTO> items,
+        String nextCursor
+) {
+}
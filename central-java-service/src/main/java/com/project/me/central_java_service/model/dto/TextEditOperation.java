@@ -0,0 +1,10 @@
+package com.project.me.central_java_service.model.dto;
+
+// Операция изменения текста в стиле Quill Delta: ровно одно из полей retain, insert, delete.
+// Позиции считаются в единицах UTF-16 (char) HTML-текста документа, как в Quill
+public record TextEditOperation(
+        Integer retain,
+        String insert,
+        Integer delete
+) {
+}
@@ -0,0 +1,29 @@
+package com.project.me.central_java_service.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "ai_result_cache")
+public class AiResultCacheEntry {
+    // SHA-256 от (настройки модели, инструкция, текст)
+    @Id
+    private String key;
+
+    private String result;
+
+    private Date createdAt;
+
+    // Срок хранения записи. TTL-индекс с expireAfterSeconds = 0 удаляет запись в этот момент,
+    // поэтому изменение ai.cache.persistent-ttl не требует пересоздания индекса
+    private Date expireAt;
+}
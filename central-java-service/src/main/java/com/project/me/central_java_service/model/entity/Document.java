@@ -1,24 +1,63 @@
 package com.project.me.central_java_service.model.entity;
 
-import lombok.Builder;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.project.me.central_java_service.util.TextCompression;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.annotation.Id;
 
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
+@org.springframework.data.mongodb.core.mapping.Document(collection = "documents")
 public class Document implements Comparable<Document>{
+    @Id
     private String documentId;
 
+    private String userEmail;
+
     private String documentName;
 
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
 
+    // Текст хранится либо как есть, либо сжатым в compressedText (см. DocumentTextCodec)
+    @Getter(AccessLevel.NONE)
     private String text;
 
+    @JsonIgnore
+    private byte[] compressedText;
+
+    // Алгоритм сжатия compressedText
+    @JsonIgnore
+    private String textCodec;
+
+    // Длина текста в кодовых точках Unicode, чтобы не загружать текст для списка документов
+    private Integer textLength;
+
+    // Версия текста, увеличивается при каждом изменении текста
+    private Long version;
+
+    // Версия, с которой текст записан в базу. Отложенная запись выполняется, только если она новее
+    @JsonIgnore
+    private Long textVersion;
+
+    // Последняя версия, выданная сохранению текста. Больше textVersion, пока текст ждет отложенной записи
+    @JsonIgnore
+    private Long pendingTextVersion;
+
+    // Сжатый текст распаковывается при первом обращении
+    public String getText() {
+        if (text == null && compressedText != null) {
+            text = TextCompression.decompress(compressedText, textCodec);
+            compressedText = null;
+        }
+        return text;
+    }
+
     @Override
     public int compareTo(Document other) {
         if (this.updatedAt == null && other.updatedAt == null) {
@@ -2,13 +2,18 @@ package com.project.me.central_java_service.model.entity;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
+@Document(collection = "ai_requests")
 public class TextAiRequest {
+    @Id
     private String aiRequestId;
+    private String userEmail;
     private String requestText;
     private String responseText;
     private String prompt;
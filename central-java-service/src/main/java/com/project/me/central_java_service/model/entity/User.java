@@ -6,9 +6,10 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.util.Collections;
 import java.util.List;
 
+// Документы пользователя хранятся в коллекции documents, история запросов - в ai_requests.
+// Встроенные списки старого формата переносятся DocumentMigration и RequestHistoryMigration
 @Getter
 @Setter
 @Document(collection = "users")
@@ -19,12 +20,7 @@ public class User {
     @Indexed
     String userEmail;
 
-    private List<com.project.me.central_java_service.model.entity.Document> documents;
-
+    // Устаревшее поле: история запросов хранится в коллекции ai_requests.
+    // Оставлено, чтобы сохранение пользователя не стерло историю до ее переноса RequestHistoryMigration
     private List<TextAiRequest> requests;
-
-    public List<com.project.me.central_java_service.model.entity.Document> getDocuments() {
-        Collections.sort(this.documents); // Убедимся, что список отсортирован
-        return this.documents;
-    }
 }
@@ -0,0 +1,21 @@
+package com.project.me.central_java_service.model.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Счетчики изменений данных пользователя для условных GET-запросов
+@Getter
+@Setter
+@Document(collection = "user_revisions")
+public class UserRevision {
+    @Id
+    private String userEmail;
+
+    // Увеличивается при каждом изменении документов пользователя
+    private long documents;
+
+    // Увеличивается при добавлении записей в историю запросов
+    private long history;
+}
@@ -0,0 +1,15 @@
+package com.project.me.central_java_service.repository;
+
+import com.project.me.central_java_service.model.entity.Document;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentRepository extends MongoRepository<Document, String> {
+    Optional<Document> findByUserEmailAndDocumentId(String userEmail, String documentId);
+
+    List<Document> findAllByUserEmailOrderByUpdatedAtDesc(String userEmail);
+}
@@ -1,83 +1,313 @@
 package com.project.me.central_java_service.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.model.dto.TextRequestDTO;
 import com.project.me.central_java_service.model.dto.TextResponseDTO;
-import com.project.me.central_java_service.model.entity.User;
-import com.project.me.central_java_service.repository.UserRepository;
+import com.project.me.central_java_service.service.ai_pipeline.AiLane;
+import com.project.me.central_java_service.service.ai_pipeline.AiLaneRouter;
+import com.project.me.central_java_service.service.ai_pipeline.AiResultCache;
+import com.project.me.central_java_service.service.ai_pipeline.ClaimCheckStore;
+import com.project.me.central_java_service.service.ai_pipeline.FairDispatchScheduler;
+import com.project.me.central_java_service.service.ai_pipeline.InstanceReplyTopic;
+import com.project.me.central_java_service.service.ai_pipeline.PendingRequestRegistry;
+import com.project.me.central_java_service.service.ai_pipeline.TextChunker;
+import com.project.me.central_java_service.service.ai_pipeline.codec.AiMessageEnvelope;
+import com.project.me.central_java_service.service.ai_pipeline.codec.AiReplyMessage;
+import com.project.me.central_java_service.service.ai_pipeline.codec.AiRequestMessage;
+import com.project.me.central_java_service.util.PreMadePrompts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class CoreService {
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, CompletableFuture<TextResponseDTO>> messagesBuffer = new ConcurrentHashMap<>();
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final AiMessageEnvelope messageEnvelope;
+    private final PendingRequestRegistry pendingRequests;
+    private final InstanceReplyTopic replyTopic;
+    private final AiResultCache resultCache;
+    // Запросы в обработке по ключу (пользователь, инструкция, текст)
+    private final Map<String, CompletableFuture<TextResponseDTO>> inFlightRequests = new ConcurrentHashMap<>();
+    private final Counter coalescedRequests;
+    private final TextChunker textChunker;
+    private final PreMadePrompts preMadePrompts;
+    private final Counter failedChunks;
+    private final AiLaneRouter laneRouter;
+    private final FairDispatchScheduler fairScheduler;
+    private final ClaimCheckStore claimCheckStore;
 
     @Autowired
-    public CoreService(KafkaTemplate<String, String> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public CoreService(KafkaTemplate<String, byte[]> aiKafkaTemplate,
+                       AiMessageEnvelope messageEnvelope,
+                       PendingRequestRegistry pendingRequests,
+                       InstanceReplyTopic replyTopic,
+                       AiResultCache resultCache,
+                       TextChunker textChunker,
+                       PreMadePrompts preMadePrompts,
+                       AiLaneRouter laneRouter,
+                       FairDispatchScheduler fairScheduler,
+                       ClaimCheckStore claimCheckStore,
+                       MeterRegistry meterRegistry) {
+        this.kafkaTemplate = aiKafkaTemplate;
+        this.messageEnvelope = messageEnvelope;
+        this.pendingRequests = pendingRequests;
+        this.replyTopic = replyTopic;
+        this.resultCache = resultCache;
+        this.textChunker = textChunker;
+        this.preMadePrompts = preMadePrompts;
+        this.laneRouter = laneRouter;
+        this.fairScheduler = fairScheduler;
+        this.claimCheckStore = claimCheckStore;
+        this.failedChunks = Counter.builder("ai.chunks.failed")
+                .description("Части большого документа, которые не удалось обработать")
+                .register(meterRegistry);
+        this.coalescedRequests = Counter.builder("ai.requests.coalesced")
+                .description("Запросы, присоединенные к уже выполняющемуся одинаковому запросу")
+                .register(meterRegistry);
     }
 
-    @Async
-    public CompletableFuture<TextResponseDTO> processText(TextRequestDTO requestDTO) {
+    // Обработка текста без блокировки: в потоке запроса выполняется только поиск в кэше и постановка
+    // в очередь отправки, ответ приходит через future. Количество одновременных запросов ограничивает
+    // AiAdmissionLimiter, а не пул потоков
+    public CompletableFuture<TextResponseDTO> processText(TextRequestDTO requestDTO, String userEmail) {
+        String cacheKey = resultCache.key(requestDTO.instruction(), requestDTO.text());
+        Optional<TextResponseDTO> cached = resultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            log.info("CoreService. Результат обработки текста найден в кэше");
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        // Одинаковые запросы пользователя, пока первый из них в обработке, присоединяются к нему.
+        // Запросы разных пользователей не объединяются: справедливая очередь учитывает запрос
+        // только у того, кто его отправил. Готовые результаты общие через кэш
+        String inFlightKey = userEmail + '\u0000' + cacheKey;
+        CompletableFuture<TextResponseDTO> shared = new CompletableFuture<>();
+        CompletableFuture<TextResponseDTO> existing = inFlightRequests.putIfAbsent(inFlightKey, shared);
+        if (existing != null) {
+            log.info("CoreService. Такой же запрос уже в обработке, ожидаем его результат");
+            coalescedRequests.increment();
+            return existing.copy();
+        }
+
+        try {
+            dispatch(cacheKey, requestDTO.instruction(), requestDTO.text(), userEmail)
+                    .whenComplete((result, ex) -> {
+                        inFlightRequests.remove(inFlightKey, shared);
+                        if (ex != null) {
+                            shared.completeExceptionally(ex);
+                        } else {
+                            shared.complete(result);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            inFlightRequests.remove(inFlightKey, shared);
+            shared.completeExceptionally(e);
+        }
+
+        return shared.copy();
+    }
+
+    // Потоковая обработка текста: части ответа передаются в onPartial по мере генерации,
+    // future завершается полным текстом. Такие запросы не объединяются и не разбиваются на части.
+    // Отмена возвращенного future (клиент отключился) снимает запрос из реестра и очереди отправки
+    public CompletableFuture<TextResponseDTO> processTextStream(TextRequestDTO requestDTO, String userEmail, Consumer<String> onPartial) {
+        String cacheKey = resultCache.key(requestDTO.instruction(), requestDTO.text());
+        Optional<TextResponseDTO> cached = resultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            log.info("CoreService. Результат потоковой обработки текста найден в кэше");
+            onPartial.accept(cached.get().result());
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        CompletableFuture<TextResponseDTO> request = sendToWorker(requestDTO.instruction(), requestDTO.text(), userEmail, onPartial);
+        // Выполняется в потоке Kafka: put кладет результат в память, а запись в MongoDB только ставит в очередь
+        CompletableFuture<TextResponseDTO> result = request.thenApply(response -> {
+            resultCache.put(cacheKey, response);
+            return response;
+        });
+        result.whenComplete((response, ex) -> {
+            if (ex instanceof CancellationException) {
+                request.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    // Большой текст с поабзацной инструкцией отправляется частями, остальные запросы - целиком
+    private CompletableFuture<TextResponseDTO> dispatch(String cacheKey, String instruction, String text, String userEmail) {
+        if (!textChunker.needsChunking(text) || !preMadePrompts.isChunkable(instruction)) {
+            return sendAndCache(cacheKey, instruction, text, userEmail);
+        }
+
+        List<String> chunks = textChunker.split(text);
+        if (chunks.size() == 1) {
+            return sendAndCache(cacheKey, instruction, text, userEmail);
+        }
+        log.info("CoreService. Текст разбит на {} частей для параллельной обработки", chunks.size());
+
+        List<CompletableFuture<TextResponseDTO>> parts = new ArrayList<>(chunks.size());
+        for (String chunk : chunks) {
+            try {
+                // Части кэшируются по отдельности: при повторной обработке документа
+                // с небольшими правками к нейросети уйдут только измененные части
+                String chunkKey = resultCache.key(instruction, chunk);
+                Optional<TextResponseDTO> cached = resultCache.get(chunkKey);
+                parts.add(cached.isPresent()
+                        ? CompletableFuture.completedFuture(cached.get())
+                        : sendAndCache(chunkKey, instruction, chunk, userEmail));
+            } catch (RuntimeException e) {
+                parts.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        return CompletableFuture.allOf(parts.stream()
+                        .map(part -> part.exceptionally(ex -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> assembleChunks(chunks, parts));
+    }
+
+    // Сборка результата в исходном порядке. Если хотя бы одна часть не обработана, запрос завершается ошибкой:
+    // частично обработанный текст не выдается за полный. Обработанные части уже в кэше,
+    // поэтому при повторе к нейросети уйдут только неудавшиеся
+    private TextResponseDTO assembleChunks(List<String> chunks, List<CompletableFuture<TextResponseDTO>> parts) {
+        List<String> processed = new ArrayList<>(parts.size());
+        Throwable lastError = null;
+        int failed = 0;
+
+        for (CompletableFuture<TextResponseDTO> part : parts) {
+            if (part.isCompletedExceptionally()) {
+                lastError = part.exceptionNow();
+                failed++;
+            } else {
+                processed.add(part.join().result());
+            }
+        }
+
+        if (failed > 0) {
+            failedChunks.increment(failed);
+            log.warn("CoreService. Не удалось обработать {} из {} частей текста", failed, chunks.size());
+            // Если не обработана ни одна часть, причина (перегрузка, таймаут) передается как есть
+            if (failed == chunks.size()) {
+                throw new CompletionException(lastError);
+            }
+            throw new CompletionException(new BaseCoreServiceException(HttpStatus.BAD_GATEWAY,
+                    "Не удалось обработать часть текста, повторите запрос"));
+        }
+        return new TextResponseDTO(textChunker.join(chunks, processed));
+    }
+
+    private CompletableFuture<TextResponseDTO> sendAndCache(String cacheKey, String instruction, String text, String userEmail) {
+        return sendToWorker(instruction, text, userEmail, null)
+                .thenApply(result -> {
+                    resultCache.put(cacheKey, result);
+                    return result;
+                });
+    }
+
+    // Отправка запроса воркеру нейросети через справедливую очередь пользователя.
+    // Если задан onPartial, воркер присылает ответ частями
+    private CompletableFuture<TextResponseDTO> sendToWorker(String instruction, String text, String userEmail, Consumer<String> onPartial) {
         String requestId = UUID.randomUUID().toString();
         log.info("CoreService. Запрос на обработку текста. Буффер: {}", requestId);
-        CompletableFuture<TextResponseDTO> future = new CompletableFuture<>();
-        messagesBuffer.put(requestId, future);
+        CompletableFuture<TextResponseDTO> future = pendingRequests.register(requestId, onPartial);
+        AiLane lane = laneRouter.classify(instruction, text);
 
         try {
-            String message = buildJSON(requestId, requestDTO.instruction(), requestDTO.text());
-            kafkaTemplate.send("text-processing-requests", message)
+            laneRouter.track(lane, future);
+            boolean stream = onPartial != null;
+            // Большой текст передается через хранилище и удаляется, когда запрос завершен
+            Optional<ClaimCheckStore.Claim> claim = claimCheckStore.offload(text);
+            claim.ifPresent(c -> future.whenComplete((result, ex) -> claimCheckStore.delete(c.ref())));
+            AiRequestMessage message = claim
+                    .map(c -> new AiRequestMessage(requestId, instruction, null, stream, c.ref(), c.sha256()))
+                    .orElseGet(() -> new AiRequestMessage(requestId, instruction, text, stream));
+
+            ProducerRecord<String, byte[]> record = messageEnvelope.wrap(lane.getTopic(), message);
+            // Воркер отправит ответ в топик этого экземпляра
+            record.headers().add(KafkaHeaders.REPLY_TOPIC, replyTopic.getName().getBytes(StandardCharsets.UTF_8));
+            fairScheduler.submit(userEmail, text.length(), future, () -> kafkaTemplate.send(record)
                     .whenComplete(
                             (request, ex) -> {
                                 if (ex != null) {
-                                    messagesBuffer.remove(requestId);
-                                    future.completeExceptionally(ex);
+                                    pendingRequests.fail(requestId, ex);
                                 }
-                            });
-        } catch (JsonProcessingException e) {
-            messagesBuffer.remove(requestId);
-            future.completeExceptionally(e);
+                            }));
+        } catch (IOException e) {
+            pendingRequests.fail(requestId, e);
+        } catch (RuntimeException e) {
+            pendingRequests.fail(requestId, e);
+            throw e;
         }
 
         return future;
     }
 
-    @KafkaListener(topics = "text-processing-response", groupId = "core-response")
-    public void listener(String response) {
+    // Ответы приходят в топик экземпляра. Общий топик слушается отдельной группой каждого экземпляра
+    // для воркеров, которые еще не поддерживают заголовок reply-topic
+    @KafkaListener(
+            topics = {"#{@instanceReplyTopic.name}", InstanceReplyTopic.SHARED_RESPONSE_TOPIC},
+            groupId = "#{@instanceReplyTopic.groupId}",
+            containerFactory = "aiKafkaListenerContainerFactory"
+    )
+    public void listener(ConsumerRecord<String, byte[]> record) {
         try {
-            JsonNode jsonNode = objectMapper.readTree(response);
-            String requestId = jsonNode.get("requestId").asText();
+            AiReplyMessage reply = messageEnvelope.unwrap(record);
+            String requestId = reply.requestId();
+            if (reply.isPartial()) {
+                pendingRequests.publishPartial(requestId, reply.seq(), reply.delta());
+                return;
+            }
             log.info("CoreService. Результат обработки получен из Кафки. Буффер: {}", requestId);
-            String processedText = jsonNode.get("processedText").asText();
-            CompletableFuture<TextResponseDTO> future = messagesBuffer.remove(requestId);
-            if (future != null) {
-                future.complete(new TextResponseDTO(processedText));
+            if (reply.isError()) {
+                log.warn("CoreService. Нейросеть вернула ошибку: {}. Буффер: {}", reply.error(), requestId);
+                pendingRequests.fail(requestId, new BaseCoreServiceException(HttpStatus.BAD_GATEWAY, "Ошибка обработки текста нейросетью"));
+                return;
             }
-        } catch (JsonProcessingException e) {
-            System.out.println("Ошибка при обработке результата: " + e.getMessage());
+            String processedText = reply.processedText();
+            if (reply.hasTextRef()) {
+                // Общий топик читают все экземпляры: текст читает и удаляет только тот, кто ждет ответ.
+                // Если запрос уже истек, текст удалит очистка хранилища по ttl
+                if (!pendingRequests.isPending(requestId)) {
+                    log.debug("CoreService. Получен ответ на запрос, который не ожидается этим экземпляром. Буффер: {}", requestId);
+                    return;
+                }
+                try {
+                    processedText = claimCheckStore.load(reply.processedTextRef(), reply.processedTextSha256());
+                } catch (IOException e) {
+                    log.error("CoreService. Не удалось прочитать результат из хранилища: {}. Буффер: {}", e.getMessage(), requestId);
+                    pendingRequests.fail(requestId, new BaseCoreServiceException(HttpStatus.BAD_GATEWAY, "Ошибка обработки текста нейросетью"));
+                    return;
+                } finally {
+                    claimCheckStore.delete(reply.processedTextRef());
+                }
+            }
+            if (!pendingRequests.complete(requestId, new TextResponseDTO(processedText))) {
+                log.debug("CoreService. Получен ответ на запрос, который не ожидается этим экземпляром. Буффер: {}", requestId);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("CoreService. Ошибка при обработке результата: {}", e.getMessage());
         }
     }
-
-    private String buildJSON(String requestId, String instruction, String text) throws JsonProcessingException {
-        Map<String, String> message = new HashMap<>();
-        message.put("requestId", requestId);
-        message.put("instruction", instruction);
-        message.put("text", text);
-        return objectMapper.writeValueAsString(message);
-    }
 }
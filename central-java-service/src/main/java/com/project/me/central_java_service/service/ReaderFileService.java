@@ -22,7 +22,7 @@ public class ReaderFileService {
 
     public Document readFile(String userEmail, String fileName, MultipartFile file) {
         log.info("ReaderFileService. Начато считывание файла");
-        FileReader fileReader = fileReaderFactory.getFileReader(fileName);
+        FileReader fileReader = fileReaderFactory.getFileReader(fileName, file);
         String fileContent = fileReader.readFile(file);
         return userDocumentsService.createDocument(userEmail, fileContent);
     }
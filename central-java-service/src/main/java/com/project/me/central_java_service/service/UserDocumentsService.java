@@ -1,16 +1,28 @@
 package com.project.me.central_java_service.service;
 
-import com.mongodb.BasicDBObject;
-import com.mongodb.client.result.UpdateResult;
+import com.mongodb.client.result.DeleteResult;
+import com.project.me.central_java_service.exception.DocumentVersionConflictException;
+import com.project.me.central_java_service.model.dto.DocumentPageDTO;
+import com.project.me.central_java_service.model.dto.DocumentSummaryDTO;
+import com.project.me.central_java_service.model.dto.DocumentVersionDTO;
+import com.project.me.central_java_service.model.dto.PatchDocumentDTO;
 import com.project.me.central_java_service.model.dto.SaveDocumentDTO;
 import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.model.dto.UpdateDocumentNameDTO;
 import com.project.me.central_java_service.model.entity.Document;
-import com.project.me.central_java_service.model.entity.TextAiRequest;
 import com.project.me.central_java_service.model.entity.User;
+import com.project.me.central_java_service.repository.DocumentRepository;
 import com.project.me.central_java_service.repository.UserRepository;
+import com.project.me.central_java_service.service.documents.DocumentMigration;
+import com.project.me.central_java_service.service.documents.DocumentTextCodec;
+import com.project.me.central_java_service.service.documents.DocumentWriteBuffer;
+import com.project.me.central_java_service.util.KeysetCursor;
+import com.project.me.central_java_service.util.TextDelta;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -20,30 +32,46 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
 public class UserDocumentsService {
     private final UserRepository userRepository;
+    private final DocumentRepository documentRepository;
     private final MongoTemplate mongoTemplate;
+    private final DocumentMigration documentMigration;
+    private final DocumentWriteBuffer writeBuffer;
+    private final UserRevisionService revisionService;
+    private final DocumentTextCodec textCodec;
+    private final int maxPageSize;
 
     @Autowired
-    public UserDocumentsService(UserRepository userRepository, MongoTemplate mongoTemplate) {
+    public UserDocumentsService(UserRepository userRepository,
+                                DocumentRepository documentRepository,
+                                MongoTemplate mongoTemplate,
+                                DocumentMigration documentMigration,
+                                DocumentWriteBuffer writeBuffer,
+                                UserRevisionService revisionService,
+                                DocumentTextCodec textCodec,
+                                @Value("${documents.max-page-size:100}") int maxPageSize) {
         this.userRepository = userRepository;
+        this.documentRepository = documentRepository;
         this.mongoTemplate = mongoTemplate;
+        this.documentMigration = documentMigration;
+        this.writeBuffer = writeBuffer;
+        this.revisionService = revisionService;
+        this.textCodec = textCodec;
+        this.maxPageSize = maxPageSize;
     }
 
     // Создание нового пользователя
     public void createUser(String userEmail) {
         log.info("UserAndDocumentsService. Запрос от AuthService. Создание нового пользователя с email={}", userEmail);
 
-        Optional<User> userOptional = userRepository.findUserByUserEmail(userEmail);
-
-        if (userOptional.isEmpty() || !userOptional.isPresent()) {
+        if (!userRepository.existsByUserEmail(userEmail)) {
             User user = new User();
             user.setUserEmail(userEmail);
-            user.setDocuments(new ArrayList<>());
-            user.setRequests(new ArrayList<>());
             userRepository.save(user);
         } else {
             log.info("UserAndDocumentsService. Пользователь уже существует. Продолжаем работу");
@@ -54,13 +82,10 @@ public class UserDocumentsService {
     public Document createDocument(String userEmail) {
         log.info("UserAndDocumentsService. Создание нового документа для пользователя с email={}", userEmail);
 
-        User user = getUser(userEmail);
-
-        Document document = getNewDocument();
+        checkUserExists(userEmail);
 
-        user.getDocuments().add(document);
-
-        userRepository.save(user);
+        Document document = documentRepository.insert(getNewDocument(userEmail));
+        revisionService.increment(userEmail, UserRevisionService.DOCUMENTS);
         return document;
     }
 
@@ -68,109 +93,267 @@ public class UserDocumentsService {
     public Document createDocument(String userEmail, String text) {
         log.info("UserAndDocumentsService. Создание нового документа с текстом для пользователя с email={}", userEmail);
 
-        User user = getUser(userEmail);
+        checkUserExists(userEmail);
 
-        Document document = getNewDocument();
-        document.setText(text);
+        Document document = getNewDocument(userEmail);
+        textCodec.apply(document, text);
+        document.setTextLength(textLength(text));
 
-        user.getDocuments().add(document);
+        Document inserted = documentRepository.insert(document);
+        revisionService.increment(userEmail, UserRevisionService.DOCUMENTS);
+        return inserted;
+    }
 
-        userRepository.save(user);
-        return document;
+    // ETag списка документов пользователя. params - параметры запроса, от которых зависит ответ.
+    // Пустой результат - у пользователя остались не записанные в базу изменения или ревизия отстает от данных
+    public Optional<String> getDocumentsETag(String userEmail, Object... params) {
+        checkUserExists(userEmail);
+        writeBuffer.flushUser(userEmail);
+        if (writeBuffer.hasPendingForUser(userEmail)) {
+            return Optional.empty();
+        }
+        return revisionService.currentETag(userEmail, UserRevisionService.DOCUMENTS, params);
     }
 
     // Получить список всех документов пользователя
     public List<Document> getAllDocuments(String userEmail) {
         log.info("UserAndDocumentsService. Получение всех документов для {}", userEmail);
 
-        User user = getUser(userEmail);
+        checkUserExists(userEmail);
+        writeBuffer.flushUser(userEmail);
 
-        return user.getDocuments();
+        List<Document> documents = documentRepository.findAllByUserEmailOrderByUpdatedAtDesc(userEmail);
+        documents.forEach(document -> document.setVersion(visibleVersion(document)));
+        return documents;
     }
 
-    // Обновить имя документа
-    public boolean updateDocumentName(UpdateDocumentNameDTO documentNameDTO, String userEmail) {
-        log.info("UserAndDocumentsService. Обновление имени документа для {}", userEmail);
+    // Получить страницу списка документов без текстов, от последних измененных к ранним.
+    // namePrefix - фильтр по началу имени документа
+    public DocumentPageDTO getDocumentsPage(String userEmail, String cursor, int limit, String namePrefix) {
+        log.info("UserAndDocumentsService. Получение страницы документов для {}", userEmail);
 
-        User user = getUser(userEmail);
+        checkUserExists(userEmail);
+        writeBuffer.flushUser(userEmail);
 
-        Document document = getDocumentForUserByDocumentId(user, documentNameDTO.documentId());
+        int pageSize = Math.clamp(limit, 1, maxPageSize);
+        Query query = new Query(Criteria.where("userEmail").is(userEmail));
+        if (namePrefix != null && !namePrefix.isEmpty()) {
+            query.addCriteria(Criteria.where("documentName").regex("^" + Pattern.quote(namePrefix)));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(KeysetCursor.decode(cursor).after("updatedAt"));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "updatedAt", "_id")).limit(pageSize + 1);
+        query.fields().include("documentName", "createdAt", "updatedAt", "textLength");
 
-        document.setUpdatedAt(LocalDateTime.now());
-        document.setDocumentName(documentNameDTO.name());
+        List<Document> found = mongoTemplate.find(query, Document.class);
+        boolean hasMore = found.size() > pageSize;
+        List<Document> page = hasMore ? found.subList(0, pageSize) : found;
 
-        userRepository.save(user);
+        String nextCursor = null;
+        if (hasMore) {
+            Document last = page.getLast();
+            nextCursor = new KeysetCursor(last.getUpdatedAt(), last.getDocumentId()).encode();
+        }
+        return new DocumentPageDTO(
+                page.stream()
+                        .map(document -> new DocumentSummaryDTO(
+                                document.getDocumentId(),
+                                document.getDocumentName(),
+                                document.getCreatedAt(),
+                                document.getUpdatedAt(),
+                                document.getTextLength()))
+                        .toList(),
+                nextCursor
+        );
+    }
 
-        return true;
+    // Версия документа, который получит клиент при чтении. Текст документа не загружается
+    public long getDocumentVersion(String userEmail, String documentId) {
+        documentMigration.migrateUser(userEmail);
+
+        Document document = findVersions(userEmail, documentId);
+        // Последний текст ждет записи в буфере этого экземпляра - при чтении он будет записан и отдан
+        long pendingTextVersion = document.getPendingTextVersion() == null ? 0 : document.getPendingTextVersion();
+        boolean pendingHere = writeBuffer.pendingVersion(userEmail, documentId)
+                .filter(version -> version == pendingTextVersion)
+                .isPresent();
+        return pendingHere ? document.getVersion() : visibleVersion(document);
     }
 
-    // Сохранить/обновить документ
-    public Boolean saveOrUpdateDocument(SaveDocumentDTO documentDTO, String userEmail) {
+    // Получить документ пользователя по ID документа
+    public Document getDocument(String userEmail, String documentId) {
+        documentMigration.migrateUser(userEmail);
+        writeBuffer.flush(userEmail, documentId);
+
+        Document document = documentRepository.findByUserEmailAndDocumentId(userEmail, documentId)
+                .orElseThrow(
+                        () -> new BaseCoreServiceException(HttpStatus.NOT_FOUND, "Документ не найден")
+                );
+        document.setVersion(visibleVersion(document));
+        return document;
+    }
+
+    // Обновить имя документа и вернуть новую версию.
+    // expectedVersion - версия, которую видел клиент; null - без проверки версии
+    public long updateDocumentName(UpdateDocumentNameDTO documentNameDTO, String userEmail, Long expectedVersion) {
+        log.info("UserAndDocumentsService. Обновление имени документа для {}", userEmail);
+
+        Update update = new Update()
+                .set("documentName", documentNameDTO.name())
+                .set("updatedAt", LocalDateTime.now());
+
+        return updateDocument(userEmail, documentNameDTO.documentId(), update, expectedVersion);
+    }
+
+    // Сохранить/обновить документ и вернуть новую версию. Изменения записываются в базу отложенно,
+    // см. DocumentWriteBuffer. expectedVersion - версия, которую видел клиент; null - без проверки версии
+    public long saveOrUpdateDocument(SaveDocumentDTO documentDTO, String userEmail, Long expectedVersion) {
         log.info("UserAndDocumentsService. Сохранение изменений для документа с id={} пользователя {}",documentDTO.documentId(), userEmail);
 
-        User user = getUser(userEmail);
+        documentMigration.migrateUser(userEmail);
 
-        Document document = getDocumentForUserByDocumentId(user, documentDTO.documentId());
+        // Версия выдается в базе при каждом сохранении, текст записывается отложенно
+        return writeBuffer.save(userEmail, documentDTO.documentId(), documentDTO.documentName(), documentDTO.text(),
+                expectedVersion, () -> currentVersion(userEmail, documentDTO.documentId()));
+    }
 
-        document.setUpdatedAt(LocalDateTime.now());
-        document.setDocumentName(documentDTO.documentName());
-        document.setText(documentDTO.text());
+    // Применить изменения к тексту документа. Изменения вычислены клиентом относительно baseVersion;
+    // если документ с тех пор изменился, возвращается 409 и клиент сохраняет документ целиком
+    public DocumentVersionDTO patchDocument(PatchDocumentDTO patchDTO, String userEmail) {
+        log.info("UserAndDocumentsService. Частичное сохранение документа с id={} пользователя {}", patchDTO.documentId(), userEmail);
 
-        userRepository.save(user);
+        documentMigration.migrateUser(userEmail);
+        writeBuffer.flush(userEmail, patchDTO.documentId());
 
-        return true;
+        Query query = documentQuery(userEmail, patchDTO.documentId());
+        query.fields().include(DocumentTextCodec.TEXT_FIELDS).include("version", "textVersion", "pendingTextVersion");
+        Document document = mongoTemplate.findOne(query, Document.class);
+        if (document == null) {
+            throw new BaseCoreServiceException(HttpStatus.NOT_FOUND, "Документ не найден");
+        }
+        long currentVersion = document.getVersion() == null ? 0 : document.getVersion();
+        // Изменения применяются только к тексту той версии, от которой их считал клиент.
+        // Если последний текст еще не записан другим экземпляром, текста этой версии в базе нет
+        if (currentVersion != patchDTO.baseVersion() || visibleVersion(document) != currentVersion) {
+            throw new DocumentVersionConflictException(visibleVersion(document));
+        }
+
+        String text = TextDelta.apply(document.getText() == null ? "" : document.getText(), patchDTO.ops());
+        Update update = textCodec.apply(new Update(), text)
+                .set("textLength", textLength(text))
+                .set("updatedAt", LocalDateTime.now())
+                .set("textVersion", currentVersion + 1)
+                .set("pendingTextVersion", currentVersion + 1)
+                .inc("version", 1);
+
+        // Условие на версию защищает от изменения документа между чтением и записью
+        Query versioned = documentQuery(userEmail, patchDTO.documentId())
+                .addCriteria(Criteria.where("version").is(currentVersion));
+        if (mongoTemplate.updateFirst(versioned, update, Document.class).getMatchedCount() == 0) {
+            throw new DocumentVersionConflictException(currentVersion(userEmail, patchDTO.documentId()));
+        }
+        revisionService.increment(userEmail, UserRevisionService.DOCUMENTS);
+        return new DocumentVersionDTO(patchDTO.documentId(), currentVersion + 1);
     }
 
     // Удалить документ
     public boolean deleteOneDocument(String documentId, String userEmail) {
         log.info("UserAndDocumentsService. Удаление документа с documentId={} для пользователя с email={}", documentId, userEmail);
 
-        Query query = new Query(Criteria.where("userEmail").is(userEmail));
-        Update update = new Update().pull("documents", new BasicDBObject("documentId", documentId));
+        documentMigration.migrateUser(userEmail);
+        writeBuffer.discard(userEmail, documentId);
 
-        UpdateResult result = mongoTemplate.updateFirst(query, update, User.class);
+        DeleteResult result = mongoTemplate.remove(documentQuery(userEmail, documentId), Document.class);
+        if (result.getDeletedCount() == 0) {
+            return false;
+        }
+        revisionService.increment(userEmail, UserRevisionService.DOCUMENTS);
+        return true;
+    }
+
+    // Изменение одного документа через $set, без перезаписи остальных документов пользователя.
+    // Если задана expectedVersion, документ изменяется только при совпадении версии
+    private long updateDocument(String userEmail, String documentId, Update update, Long expectedVersion) {
+        documentMigration.migrateUser(userEmail);
+        writeBuffer.flush(userEmail, documentId);
 
-        return result.getMatchedCount() > 0 && result.getModifiedCount() > 0;
+        Query query = documentQuery(userEmail, documentId);
+        if (expectedVersion != null) {
+            query.addCriteria(Criteria.where("version").is(expectedVersion));
+        }
+        query.fields().include("version");
+
+        Document updated = mongoTemplate.findAndModify(
+                query, update.inc("version", 1), FindAndModifyOptions.options().returnNew(true), Document.class
+        );
+        if (updated == null) {
+            // Документа нет - 404, версия не совпала - 409 с текущей версией
+            throw new DocumentVersionConflictException(currentVersion(userEmail, documentId));
+        }
+        revisionService.increment(userEmail, UserRevisionService.DOCUMENTS);
+        return updated.getVersion();
     }
 
-    // Получение истории запросов пользователя
-    public List<TextAiRequest> getUserRequestHistory(String userEmail) {
-        log.info("UserAndDocumentsService. Получение истории запросов для пользователя с email={}", userEmail);
+    // Текущая версия для ответа 409: та, под которой клиент может прочитать документ
+    private long currentVersion(String userEmail, String documentId) {
+        return visibleVersion(findVersions(userEmail, documentId));
+    }
 
-        User user = getUser(userEmail);
+    private Document findVersions(String userEmail, String documentId) {
+        Query query = documentQuery(userEmail, documentId);
+        query.fields().include("version", "textVersion", "pendingTextVersion");
+        Document document = mongoTemplate.findOne(query, Document.class);
+        if (document == null) {
+            throw new BaseCoreServiceException(HttpStatus.NOT_FOUND, "Документ не найден");
+        }
+        if (document.getVersion() == null) {
+            document.setVersion(0L);
+        }
+        return document;
+    }
 
-        return user.getRequests();
+    // Версия, которая соответствует тексту в базе. Пока сохранение, принятое другим экземпляром,
+    // ждет отложенной записи, в базе более старый текст: клиент получает версию этого текста,
+    // и сохранение от нее завершится 409, а не перезапишет еще не записанные изменения
+    private static long visibleVersion(Document document) {
+        long version = document.getVersion() == null ? 0 : document.getVersion();
+        long textVersion = document.getTextVersion() == null ? 0 : document.getTextVersion();
+        long pendingTextVersion = document.getPendingTextVersion() == null ? 0 : document.getPendingTextVersion();
+        return pendingTextVersion > textVersion ? textVersion : version;
+    }
+
+    private Query documentQuery(String userEmail, String documentId) {
+        return new Query(Criteria.where("userEmail").is(userEmail).and("documentId").is(documentId));
     }
 
     // Получить новый пустой документ
-    private Document getNewDocument() {
+    private Document getNewDocument(String userEmail) {
         Document document = new Document();
 
         document.setDocumentId(UUID.randomUUID().toString());
+        document.setUserEmail(userEmail);
         document.setDocumentName("Новый документ");
         document.setCreatedAt(LocalDateTime.now());
         document.setUpdatedAt(LocalDateTime.now());
         document.setText("");
+        document.setTextLength(0);
+        document.setVersion(0L);
+        document.setTextVersion(0L);
+        document.setPendingTextVersion(0L);
 
         return document;
     }
 
-    // Получить пользователя по имейлу
-    private User getUser(String userEmail) {
-        return userRepository.findUserByUserEmail(userEmail)
-                .orElseThrow(
-                        () -> new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Пользователь не найден")
-                );
+    private static int textLength(String text) {
+        return text.codePointCount(0, text.length());
     }
 
-    // Получить документ пользователя по ID документа
-    private Document getDocumentForUserByDocumentId(User user, String documentId) {
-        return user.getDocuments()
-                .stream()
-                .filter(x -> x.getDocumentId().equals(documentId))
-                .findFirst()
-                .orElseThrow(
-                        () -> new BaseCoreServiceException(HttpStatus.NOT_FOUND, "Документ не найден")
-                );
+    // Проверить, что пользователь существует, и перенести его документы в коллекцию documents
+    private void checkUserExists(String userEmail) {
+        if (!userRepository.existsByUserEmail(userEmail)) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Пользователь не найден");
+        }
+        documentMigration.migrateUser(userEmail);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,105 @@
+package com.project.me.central_java_service.service;
+
+import com.project.me.central_java_service.model.entity.UserRevision;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// Ревизии данных пользователя. По ним строятся слабые ETag для списка документов и истории запросов,
+// поэтому на повторный запрос без изменений можно ответить 304, прочитав одну маленькую запись.
+// Ревизия увеличивается после записи в базу, поэтому клиент не получит 304 на устаревшие данные.
+// Если увеличить ревизию не удалось, ETag по ней не выдается, пока повтор не выполнится успешно
+@Slf4j
+@Service
+public class UserRevisionService {
+    public static final String DOCUMENTS = "documents";
+    public static final String HISTORY = "history";
+
+    private final MongoTemplate mongoTemplate;
+    // Ревизии, которые не удалось увеличить после изменения данных
+    private final Set<RevisionKey> failed = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public UserRevisionService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // ETag по текущей ревизии. Пустой результат - ревизия отстает от данных и 304 по ней вернуть нельзя
+    public Optional<String> currentETag(String userEmail, String field, Object... params) {
+        if (failed.contains(new RevisionKey(userEmail, field))) {
+            return Optional.empty();
+        }
+        return Optional.of(eTag(getRevision(userEmail, field), params));
+    }
+
+    public long getRevision(String userEmail, String field) {
+        Query query = query(where("_id").is(userEmail));
+        query.fields().include(field);
+        UserRevision revision = mongoTemplate.findOne(query, UserRevision.class);
+        if (revision == null) {
+            return 0;
+        }
+        return DOCUMENTS.equals(field) ? revision.getDocuments() : revision.getHistory();
+    }
+
+    public void increment(String userEmail, String field) {
+        increment(List.of(userEmail), field);
+    }
+
+    // Ошибка обновления ревизии не отменяет уже выполненное изменение данных: ревизия запоминается для повтора
+    public void increment(Collection<String> userEmails, String field) {
+        if (userEmails.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserRevision.class);
+            for (String userEmail : userEmails) {
+                bulk.upsert(query(where("_id").is(userEmail)), new Update().inc(field, 1));
+            }
+            bulk.execute();
+        } catch (DataAccessException e) {
+            log.error("UserRevisionService. Не удалось обновить ревизию {}: {}", field, e.getMessage());
+            userEmails.forEach(userEmail -> failed.add(new RevisionKey(userEmail, field)));
+        }
+    }
+
+    // Повтор неудавшихся увеличений ревизии. Отметка снимается до записи: если за это время
+    // снова произойдет ошибка, отметка появится заново
+    @Scheduled(fixedDelayString = "${revisions.retry-interval-ms:5000}")
+    public void retryFailed() {
+        for (RevisionKey key : List.copyOf(failed)) {
+            failed.remove(key);
+            try {
+                mongoTemplate.upsert(query(where("_id").is(key.userEmail())), new Update().inc(key.field(), 1), UserRevision.class);
+            } catch (DataAccessException e) {
+                failed.add(key);
+                log.warn("UserRevisionService. Повтор обновления ревизии не удался: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Слабый ETag: ревизия и параметры запроса, от которых зависит ответ
+    public static String eTag(long revision, Object... params) {
+        return "W/\"" + revision + "-" + Integer.toHexString(Arrays.hashCode(params)) + "\"";
+    }
+
+    private record RevisionKey(String userEmail, String field) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Ограничение количества одновременно обрабатываемых запросов к нейросети.
+// Сверх лимита запрос сразу отклоняется с 429 и Retry-After, а не копится в очередях.
+// В адаптивном режиме лимит подстраивается по градиенту задержки: пока задержка близка к
+// долгосрочной средней, лимит растет, при ее росте - снижается (по мотивам Gradient2 из Netflix concurrency-limits).
+// Таймаут или отказ из-за перегрузки дальше по цепочке уменьшает лимит сразу в BACKOFF_RATIO раз, как в AIMD:
+// такие запросы не дают замера задержки, а без них лимит при зависшей нейросети только рос бы
+@Slf4j
+@Component
+public class AiAdmissionLimiter {
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_ALPHA = 0.01;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long retryAfterSeconds;
+    private final LongSupplier nanoTime;
+    private final Counter admitted;
+    private final Counter rejected;
+
+    private volatile double limit;
+    private double longRttNanos;
+
+    @Autowired
+    public AiAdmissionLimiter(MeterRegistry meterRegistry,
+                              @Value("${ai.admission.max-in-flight:200}") int maxLimit,
+                              @Value("${ai.admission.adaptive:false}") boolean adaptive,
+                              @Value("${ai.admission.min-limit:10}") int minLimit,
+                              @Value("${ai.admission.retry-after-seconds:5}") long retryAfterSeconds) {
+        this(meterRegistry, maxLimit, adaptive, minLimit, retryAfterSeconds, System::nanoTime);
+    }
+
+    // Источник времени задается в тестах, чтобы замеры задержки не зависели от загрузки машины
+    AiAdmissionLimiter(MeterRegistry meterRegistry, int maxLimit, boolean adaptive, int minLimit, long retryAfterSeconds,
+                       LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.adaptive = adaptive;
+        this.minLimit = Math.min(minLimit, maxLimit);
+        this.maxLimit = maxLimit;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = adaptive ? this.minLimit : maxLimit;
+
+        this.admitted = Counter.builder("ai.admission.admitted")
+                .description("Запросы к нейросети, принятые в обработку")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("ai.admission.rejected")
+                .description("Запросы к нейросети, отклоненные из-за перегрузки")
+                .register(meterRegistry);
+        Gauge.builder("ai.admission.in_flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("ai.admission.limit", this, limiter -> limiter.limit)
+                .register(meterRegistry);
+    }
+
+    // Выполнить запрос, если есть свободное место. Место освобождается по завершении future
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> action) {
+        int current = inFlight.incrementAndGet();
+        if (current > (int) limit) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            log.warn("AiAdmissionLimiter. Запрос отклонен, в обработке {} запросов при лимите {}", current - 1, (int) limit);
+            throw new AiOverloadedException(HttpStatus.TOO_MANY_REQUESTS, "Слишком много запросов, повторите позже", retryAfterSeconds);
+        }
+        admitted.increment();
+
+        long start = nanoTime.getAsLong();
+        CompletableFuture<T> future;
+        try {
+            future = action.get();
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+
+        future.whenComplete((result, ex) -> {
+            int inFlightAtCompletion = inFlight.getAndDecrement();
+            if (!adaptive) {
+                return;
+            }
+            if (ex == null) {
+                onSample(nanoTime.getAsLong() - start, inFlightAtCompletion);
+            } else if (isCongestion(ex)) {
+                onDrop();
+            }
+        });
+        return future;
+    }
+
+    // Текущий лимит одновременных запросов
+    int limit() {
+        return (int) limit;
+    }
+
+    // Таймаут ответа и отказ очереди или полосы говорят о перегрузке. Ошибки нейросети и отмена клиентом - нет
+    private static boolean isCongestion(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof TimeoutException || cause instanceof AiOverloadedException;
+    }
+
+    private synchronized void onDrop() {
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtCompletion) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos = longRttNanos * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+        }
+
+        // Если сервис загружен меньше чем наполовину, задержка ничего не говорит о запасе мощности
+        if (inFlightAtCompletion < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+        double queueSize = Math.sqrt(limit);
+        double newLimit = limit * gradient + queueSize;
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -0,0 +1,17 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import lombok.Getter;
+
+// Полоса обработки запросов к нейросети. У каждой полосы свой топик и свои воркеры,
+// поэтому короткие интерактивные операции не ждут за длинными
+@Getter
+public enum AiLane {
+    SHORT("text-processing-requests-short"),
+    LONG("text-processing-requests");
+
+    private final String topic;
+
+    AiLane(String topic) {
+        this.topic = topic;
+    }
+}
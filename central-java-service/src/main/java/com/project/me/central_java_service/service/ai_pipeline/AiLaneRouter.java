@@ -0,0 +1,96 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import com.project.me.central_java_service.util.PreMadePrompts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Выбор полосы для запроса по длине текста и ожидаемому размеру ответа выбранной опции,
+// ограничение числа запросов в полосе, а также метрики очереди и задержки по каждой полосе.
+// Ограничение задается отдельно для каждой полосы, чтобы длинные запросы не заняли все место коротких
+// (число одновременных запросов в воркерах задается SHORT_LANE_CONCURRENCY и LONG_LANE_CONCURRENCY)
+@Slf4j
+@Component
+public class AiLaneRouter {
+    private final PreMadePrompts preMadePrompts;
+    private final int shortMaxInputChars;
+    private final int shortMaxOutputChars;
+    private final Map<AiLane, AtomicInteger> queueDepth = new EnumMap<>(AiLane.class);
+    private final Map<AiLane, Timer> latency = new EnumMap<>(AiLane.class);
+    private final Map<AiLane, Integer> capacity = new EnumMap<>(AiLane.class);
+    private final Map<AiLane, Counter> rejected = new EnumMap<>(AiLane.class);
+    private final long retryAfterSeconds;
+
+    @Autowired
+    public AiLaneRouter(PreMadePrompts preMadePrompts,
+                        MeterRegistry meterRegistry,
+                        @Value("${ai.lanes.short.max-input-chars:4000}") int shortMaxInputChars,
+                        @Value("${ai.lanes.short.max-output-chars:1000}") int shortMaxOutputChars,
+                        @Value("${ai.lanes.short.capacity:200}") int shortCapacity,
+                        @Value("${ai.lanes.long.capacity:100}") int longCapacity,
+                        @Value("${ai.admission.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.preMadePrompts = preMadePrompts;
+        this.shortMaxInputChars = shortMaxInputChars;
+        this.shortMaxOutputChars = shortMaxOutputChars;
+        this.capacity.put(AiLane.SHORT, shortCapacity);
+        this.capacity.put(AiLane.LONG, longCapacity);
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        for (AiLane lane : AiLane.values()) {
+            AtomicInteger depth = new AtomicInteger();
+            queueDepth.put(lane, depth);
+            Gauge.builder("ai.lane.queue_depth", depth, AtomicInteger::get)
+                    .description("Запросы полосы, ожидающие ответа от нейросети")
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry);
+            latency.put(lane, Timer.builder("ai.lane.latency")
+                    .description("Время от отправки запроса полосы до ответа нейросети")
+                    .tag("lane", lane.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+            rejected.put(lane, Counter.builder("ai.lane.rejected")
+                    .description("Запросы, отклоненные из-за заполненной полосы")
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    public AiLane classify(String instruction, String text) {
+        if (text.length() <= shortMaxInputChars
+                && preMadePrompts.expectedOutputChars(instruction, text.length()) <= shortMaxOutputChars) {
+            return AiLane.SHORT;
+        }
+        return AiLane.LONG;
+    }
+
+    // Учет запроса в полосе до его завершения. Если полоса заполнена, запрос не учитывается
+    // и отклоняется с 503
+    public void track(AiLane lane, CompletableFuture<?> future) {
+        AtomicInteger depth = queueDepth.get(lane);
+        if (depth.incrementAndGet() > capacity.get(lane)) {
+            depth.decrementAndGet();
+            rejected.get(lane).increment();
+            log.warn("AiLaneRouter. Полоса {} заполнена: {}", lane, capacity.get(lane));
+            throw new AiOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, "Сервис перегружен, повторите запрос позже", retryAfterSeconds);
+        }
+        Timer timer = latency.get(lane);
+        long start = System.nanoTime();
+        future.whenComplete((result, ex) -> {
+            depth.decrementAndGet();
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.me.central_java_service.model.dto.TextResponseDTO;
+import com.project.me.central_java_service.model.entity.AiResultCacheEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Двухуровневый кэш результатов нейросети.
+// Первый уровень - кэш в памяти (Caffeine, W-TinyLFU), ограниченный суммарным размером текстов,
+// второй - коллекция ai_result_cache в MongoDB с TTL-индексом по сроку хранения записи.
+// Запись во второй уровень выполняется в отдельном пуле: put вызывается в потоке Kafka,
+// который не должен ждать MongoDB. Если пул не успевает, запись второго уровня пропускается.
+// Недоступность MongoDB не ломает запрос: чтение считается промахом, запись пропускается.
+@Slf4j
+@Component
+public class AiResultCache {
+    // Примерный размер записи без текста: ключ, объект ответа, узел кэша
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final String LOCAL_CACHE_NAME = "ai.results.local";
+    private static final String PERSISTENT_CACHE_NAME = "ai.results.persistent";
+    // Индекс прежней схемы: TTL по времени создания
+    private static final String LEGACY_TTL_INDEX = "createdAt_1";
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor writeExecutor;
+    private final Cache<String, TextResponseDTO> localCache;
+    private final boolean enabled;
+    private final String modelSignature;
+    private final Duration persistentTtl;
+
+    private final Counter persistentHits;
+    private final Counter persistentMisses;
+    private final Counter persistentEvictions;
+    private final Counter droppedWrites;
+
+    @Autowired
+    public AiResultCache(MongoTemplate mongoTemplate,
+                         @Qualifier("aiCacheWriteExecutor") Executor writeExecutor,
+                         MeterRegistry meterRegistry,
+                         @Value("${ai.cache.enabled:true}") boolean enabled,
+                         @Value("${ai.cache.local-max-bytes:67108864}") long localMaxBytes,
+                         @Value("${ai.cache.persistent-ttl:7d}") Duration persistentTtl,
+                         @Value("${ai.model.signature:yandexgpt;temperature=0.4}") String modelSignature) {
+        this.mongoTemplate = mongoTemplate;
+        this.writeExecutor = writeExecutor;
+        this.enabled = enabled;
+        this.modelSignature = modelSignature;
+        this.persistentTtl = persistentTtl;
+
+        this.localCache = Caffeine.newBuilder()
+                .maximumWeight(localMaxBytes)
+                .weigher(AiResultCache::weigh)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, LOCAL_CACHE_NAME);
+
+        this.persistentHits = Counter.builder("cache.gets")
+                .tag("cache", PERSISTENT_CACHE_NAME)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.persistentMisses = Counter.builder("cache.gets")
+                .tag("cache", PERSISTENT_CACHE_NAME)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        // TTL-монитор MongoDB удаляет записи раз в минуту, поэтому просроченная, но еще не удаленная
+        // запись считается вытесненной в момент чтения
+        this.persistentEvictions = Counter.builder("cache.evictions")
+                .tag("cache", PERSISTENT_CACHE_NAME)
+                .register(meterRegistry);
+        this.droppedWrites = Counter.builder("ai.cache.writes_dropped")
+                .description("Результаты, не записанные в MongoDB из-за переполнения очереди записи")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        if (!enabled) {
+            return;
+        }
+        IndexOperations indexOps = mongoTemplate.indexOps(AiResultCacheEntry.class);
+        // Прежний TTL-индекс по createdAt хранил срок в самом индексе и удалял бы записи по старому сроку
+        if (indexOps.getIndexInfo().stream().anyMatch(index -> LEGACY_TTL_INDEX.equals(index.getName()))) {
+            indexOps.dropIndex(LEGACY_TTL_INDEX);
+        }
+        indexOps.ensureIndex(new Index("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+    }
+
+    // Ключ кэша: хэш от настроек модели, инструкции и текста
+    public String key(String instruction, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelSignature.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(instruction.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Optional<TextResponseDTO> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        TextResponseDTO local = localCache.getIfPresent(key);
+        if (local != null) {
+            return Optional.of(local);
+        }
+
+        AiResultCacheEntry entry;
+        try {
+            entry = mongoTemplate.findById(key, AiResultCacheEntry.class);
+        } catch (DataAccessException e) {
+            log.warn("AiResultCache. Не удалось прочитать результат из MongoDB: {}", e.getMessage());
+            persistentMisses.increment();
+            return Optional.empty();
+        }
+        if (entry == null) {
+            persistentMisses.increment();
+            return Optional.empty();
+        }
+        if (isExpired(entry)) {
+            persistentEvictions.increment();
+            persistentMisses.increment();
+            return Optional.empty();
+        }
+
+        persistentHits.increment();
+        TextResponseDTO response = new TextResponseDTO(entry.getResult());
+        localCache.put(key, response);
+        return Optional.of(response);
+    }
+
+    public void put(String key, TextResponseDTO response) {
+        if (!enabled) {
+            return;
+        }
+
+        localCache.put(key, response);
+        try {
+            writeExecutor.execute(() -> persist(key, response));
+        } catch (RejectedExecutionException e) {
+            droppedWrites.increment();
+            log.debug("AiResultCache. Очередь записи в MongoDB переполнена, результат сохранен только в памяти");
+        }
+    }
+
+    private void persist(String key, TextResponseDTO response) {
+        Date now = new Date();
+        try {
+            mongoTemplate.save(new AiResultCacheEntry(key, response.result(), now, Date.from(now.toInstant().plus(persistentTtl))));
+        } catch (RuntimeException e) {
+            // Кэш не должен ломать основной сценарий
+            log.warn("AiResultCache. Не удалось сохранить результат в MongoDB: {}", e.getMessage());
+        }
+    }
+
+    // Записи прежней схемы без expireAt живут persistentTtl от создания
+    private boolean isExpired(AiResultCacheEntry entry) {
+        Instant expireAt = entry.getExpireAt() != null
+                ? entry.getExpireAt().toInstant()
+                : entry.getCreatedAt().toInstant().plus(persistentTtl);
+        return expireAt.isBefore(Instant.now());
+    }
+
+    // Суммарный вес записей первого уровня после применения отложенных вытеснений
+    long localWeightedSize() {
+        localCache.cleanUp();
+        return localCache.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    // Вес записи - примерный размер в байтах: строка в памяти занимает до двух байт на символ
+    private static int weigh(String key, TextResponseDTO response) {
+        long textBytes = response.result() == null ? 0 : 2L * response.result().length();
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + textBytes);
+    }
+}
@@ -0,0 +1,156 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// Хранилище больших текстов для запросов к нейросети (claim check).
+// Текст больше порога сохраняется в GridFS, а в Kafka уходит только ссылка и SHA-256.
+// Воркер сохраняет так же большой результат. Прочитанные тексты удаляются сразу,
+// забытые - по истечении ttl
+@Slf4j
+@Component
+public class ClaimCheckStore {
+    private static final String FILENAME = "ai-payload";
+    private static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+
+    private final GridFsTemplate gridFsTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int thresholdBytes;
+    private final Duration ttl;
+    private final String bucket;
+
+    private final Counter offloadedRequestBytes;
+    private final Counter offloadedReplyBytes;
+
+    @Autowired
+    public ClaimCheckStore(GridFsTemplate aiPayloadGridFsTemplate,
+                           MongoTemplate mongoTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${ai.claim-check.enabled:true}") boolean enabled,
+                           @Value("${ai.claim-check.threshold-bytes:262144}") int thresholdBytes,
+                           @Value("${ai.claim-check.ttl:1h}") Duration ttl,
+                           @Value("${ai.claim-check.bucket:ai_payloads}") String bucket) {
+        this.gridFsTemplate = aiPayloadGridFsTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.ttl = ttl;
+        this.bucket = bucket;
+
+        this.offloadedRequestBytes = Counter.builder("ai.claim_check.offloaded_bytes")
+                .description("Объем текстов, переданных через хранилище вместо Kafka")
+                .baseUnit("bytes")
+                .tag("direction", "request")
+                .register(meterRegistry);
+        this.offloadedReplyBytes = Counter.builder("ai.claim_check.offloaded_bytes")
+                .description("Объем текстов, переданных через хранилище вместо Kafka")
+                .baseUnit("bytes")
+                .tag("direction", "reply")
+                .register(meterRegistry);
+    }
+
+    // Индекс для удаления просроченных текстов. Индекс драйвера (filename, uploadDate) для этого не подходит
+    @PostConstruct
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(bucket + ".files")
+                .ensureIndex(new Index().on("uploadDate", Sort.Direction.ASC));
+    }
+
+    // Сохранить текст, если он больше порога. Пустой результат - текст передается в сообщении
+    public Optional<Claim> offload(String text) {
+        // В UTF-8 символ занимает не больше 3 байт, поэтому короткие тексты не кодируются
+        if (!enabled || (long) text.length() * 3 <= thresholdBytes) {
+            return Optional.empty();
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= thresholdBytes) {
+            return Optional.empty();
+        }
+
+        String sha256 = sha256(bytes);
+        ObjectId id = gridFsTemplate.store(
+                new ByteArrayInputStream(bytes), FILENAME, CONTENT_TYPE, new Document("sha256", sha256)
+        );
+        offloadedRequestBytes.increment(bytes.length);
+        log.info("ClaimCheckStore. Текст размером {} байт сохранен в хранилище: {}", bytes.length, id);
+        return Optional.of(new Claim(id.toHexString(), sha256));
+    }
+
+    // Прочитать текст результата по ссылке с проверкой контрольной суммы
+    public String load(String ref, String sha256) throws IOException {
+        GridFSFile file = gridFsTemplate.findOne(query(where("_id").is(new ObjectId(ref))));
+        if (file == null) {
+            throw new IOException("Текст не найден в хранилище: " + ref);
+        }
+
+        byte[] bytes;
+        try (InputStream in = gridFsTemplate.getResource(file).getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        if (sha256 != null && !sha256.equals(sha256(bytes))) {
+            throw new IOException("Контрольная сумма текста не совпадает: " + ref);
+        }
+        offloadedReplyBytes.increment(bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void delete(String ref) {
+        try {
+            gridFsTemplate.delete(query(where("_id").is(new ObjectId(ref))));
+        } catch (DataAccessException e) {
+            log.warn("ClaimCheckStore. Не удалось удалить текст {}: {}", ref, e.getMessage());
+        }
+    }
+
+    // Удаление текстов, которые никто не прочитал: запрос истек или воркер не ответил
+    @Scheduled(fixedDelayString = "${ai.claim-check.sweep-interval-ms:300000}")
+    public void deleteExpired() {
+        Date expiredBefore = Date.from(Instant.now().minus(ttl));
+        try {
+            gridFsTemplate.delete(query(where("uploadDate").lt(expiredBefore)));
+        } catch (DataAccessException e) {
+            log.warn("ClaimCheckStore. Ошибка при удалении просроченных текстов: {}", e.getMessage());
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    public record Claim(String ref, String sha256) {
+    }
+}
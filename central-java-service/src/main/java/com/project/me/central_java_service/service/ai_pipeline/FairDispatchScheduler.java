@@ -0,0 +1,220 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+// Справедливая очередь запросов к нейросети перед отправкой в Kafka.
+// У каждого пользователя своя очередь. Очереди обходятся по кругу с дефицитом (deficit round robin):
+// за проход пользователь получает quantum символов текста, поэтому длинные запросы одного пользователя
+// не вытесняют короткие запросы остальных. Количество отправленных, но еще не обработанных запросов
+// ограничено глобально (dispatch-slots) и для каждого пользователя (max-slots-per-user).
+// Отправка выполняется в отдельном потоке aiDispatchExecutor: ни поток запроса, ни поток Kafka,
+// освобождающий место по ответу, не выполняет отправку сам.
+@Slf4j
+@Component
+public class FairDispatchScheduler {
+    private final Map<String, UserQueue> users = new HashMap<>();
+    private final Deque<UserQueue> ring = new ArrayDeque<>();
+    private final int dispatchSlots;
+    private final int maxSlotsPerUser;
+    private final int maxQueuedPerUser;
+    private final int quantum;
+    private final long retryAfterSeconds;
+    private final Executor dispatcher;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private int slotsInUse;
+    private int queued;
+
+    @Autowired
+    public FairDispatchScheduler(MeterRegistry meterRegistry,
+                                 @Qualifier("aiDispatchExecutor") Executor dispatcher,
+                                 @Value("${ai.fair.dispatch-slots:32}") int dispatchSlots,
+                                 @Value("${ai.fair.max-slots-per-user:4}") int maxSlotsPerUser,
+                                 @Value("${ai.fair.max-queued-per-user:50}") int maxQueuedPerUser,
+                                 @Value("${ai.fair.quantum:4000}") int quantum,
+                                 @Value("${ai.admission.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.dispatchSlots = dispatchSlots;
+        this.maxSlotsPerUser = maxSlotsPerUser;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.quantum = quantum;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.dispatcher = dispatcher;
+
+        Gauge.builder("ai.fair.queued", this, scheduler -> scheduler.snapshot(() -> scheduler.queued))
+                .description("Запросы, ожидающие отправки в Kafka")
+                .register(meterRegistry);
+        Gauge.builder("ai.fair.slots_in_use", this, scheduler -> scheduler.snapshot(() -> scheduler.slotsInUse))
+                .description("Отправленные в Kafka запросы, ожидающие ответа")
+                .register(meterRegistry);
+        Gauge.builder("ai.fair.active_users", this, scheduler -> scheduler.snapshot(scheduler.users::size))
+                .description("Пользователи с запросами в очереди или в обработке")
+                .register(meterRegistry);
+    }
+
+    // Поставить запрос в очередь пользователя. send выполняется, когда подойдет очередь;
+    // место освобождается по завершении completion. Если completion завершится раньше
+    // (например, по TTL), запрос так и не будет отправлен
+    public void submit(String userEmail, int cost, CompletableFuture<?> completion, Runnable send) {
+        synchronized (this) {
+            UserQueue queue = users.computeIfAbsent(userEmail, UserQueue::new);
+            if (queue.tasks.size() >= maxQueuedPerUser) {
+                removeIfIdle(queue);
+                log.warn("FairDispatchScheduler. Очередь пользователя {} переполнена", userEmail);
+                throw new AiOverloadedException(HttpStatus.TOO_MANY_REQUESTS, "Слишком много запросов, повторите позже", retryAfterSeconds);
+            }
+            queue.tasks.addLast(new QueuedTask(Math.max(1, cost), completion, send));
+            queued++;
+            if (!queue.inRing) {
+                queue.inRing = true;
+                ring.addLast(queue);
+            }
+        }
+        scheduleDrain();
+    }
+
+    // Повторные вызовы, пока проход еще не начался, объединяются в один
+    private void scheduleDrain() {
+        if (!drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.execute(() -> {
+                drainScheduled.set(false);
+                drain();
+            });
+        } catch (RejectedExecutionException e) {
+            drainScheduled.set(false);
+            log.error("FairDispatchScheduler. Поток отправки недоступен: {}", e.getMessage());
+        }
+    }
+
+    private void drain() {
+        List<Dispatch> ready = new ArrayList<>();
+
+        synchronized (this) {
+            // Количество подряд пропущенных пользователей, упершихся в свой лимит
+            int capped = 0;
+            while (slotsInUse < dispatchSlots && !ring.isEmpty() && capped < ring.size()) {
+                UserQueue queue = ring.pollFirst();
+                dropCompleted(queue);
+
+                if (queue.tasks.isEmpty()) {
+                    leaveRing(queue);
+                    continue;
+                }
+                if (queue.slotsInUse >= maxSlotsPerUser) {
+                    ring.addLast(queue);
+                    capped++;
+                    continue;
+                }
+
+                queue.deficit += quantum;
+                while (!queue.tasks.isEmpty()
+                        && queue.slotsInUse < maxSlotsPerUser
+                        && slotsInUse < dispatchSlots
+                        && queue.tasks.peekFirst().cost() <= queue.deficit) {
+                    QueuedTask task = queue.tasks.pollFirst();
+                    queued--;
+                    if (task.completion().isDone()) {
+                        continue;
+                    }
+                    queue.deficit -= task.cost();
+                    queue.slotsInUse++;
+                    slotsInUse++;
+                    ready.add(new Dispatch(queue, task));
+                    capped = 0;
+                }
+
+                if (queue.tasks.isEmpty()) {
+                    leaveRing(queue);
+                } else {
+                    ring.addLast(queue);
+                }
+            }
+        }
+
+        for (Dispatch dispatch : ready) {
+            dispatch.task().completion().whenComplete((result, ex) -> release(dispatch.queue()));
+            try {
+                dispatch.task().send().run();
+            } catch (RuntimeException e) {
+                dispatch.task().completion().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void release(UserQueue queue) {
+        synchronized (this) {
+            queue.slotsInUse--;
+            slotsInUse--;
+            if (!queue.tasks.isEmpty() && !queue.inRing) {
+                queue.inRing = true;
+                ring.addLast(queue);
+            }
+            removeIfIdle(queue);
+        }
+        scheduleDrain();
+    }
+
+    private void dropCompleted(UserQueue queue) {
+        while (!queue.tasks.isEmpty() && queue.tasks.peekFirst().completion().isDone()) {
+            queue.tasks.pollFirst();
+            queued--;
+        }
+    }
+
+    // Пользователь без ожидающих запросов теряет накопленный дефицит
+    private void leaveRing(UserQueue queue) {
+        queue.deficit = 0;
+        queue.inRing = false;
+        removeIfIdle(queue);
+    }
+
+    private void removeIfIdle(UserQueue queue) {
+        if (queue.tasks.isEmpty() && queue.slotsInUse == 0 && !queue.inRing) {
+            users.remove(queue.userEmail);
+        }
+    }
+
+    private synchronized double snapshot(IntSupplier value) {
+        return value.getAsInt();
+    }
+
+    private static class UserQueue {
+        private final String userEmail;
+        private final Deque<QueuedTask> tasks = new ArrayDeque<>();
+        private int slotsInUse;
+        private long deficit;
+        private boolean inRing;
+
+        private UserQueue(String userEmail) {
+            this.userEmail = userEmail;
+        }
+    }
+
+    private record QueuedTask(int cost, CompletableFuture<?> completion, Runnable send) {
+    }
+
+    private record Dispatch(UserQueue queue, QueuedTask task) {
+    }
+}
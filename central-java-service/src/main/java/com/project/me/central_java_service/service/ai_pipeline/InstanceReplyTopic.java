@@ -0,0 +1,47 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// Топик ответов нейросети, закрепленный за конкретным экземпляром central-сервиса.
+// Имя топика передается воркеру в заголовке запроса, и ответ возвращается именно тому
+// экземпляру, который хранит ожидающий future.
+// Идентификатор экземпляра: ai.instance-id, затем HOSTNAME (имя pod'а), иначе случайный -
+// два экземпляра не должны делить один топик и одну группу. Топики остановленных экземпляров
+// удаляет InstanceReplyTopicJanitor
+@Slf4j
+@Getter
+@Component
+public class InstanceReplyTopic {
+    public static final String SHARED_RESPONSE_TOPIC = "text-processing-response";
+    public static final String TOPIC_PREFIX = SHARED_RESPONSE_TOPIC + ".";
+    public static final String GROUP_PREFIX = "core-response-";
+
+    private final String instanceId;
+    private final String name;
+    private final String groupId;
+
+    @Autowired
+    public InstanceReplyTopic(@Value("${ai.instance-id:}") String configuredId,
+                              @Value("${HOSTNAME:}") String hostname) {
+        String id = configuredId.isBlank() ? hostname : configuredId;
+        if (id.isBlank()) {
+            id = "central-" + UUID.randomUUID().toString().substring(0, 8);
+            log.warn("InstanceReplyTopic. Не заданы ai.instance-id и HOSTNAME, используется случайный идентификатор {}", id);
+        }
+        // В имени топика Kafka допустимы только латиница, цифры, '.', '_' и '-'
+        this.instanceId = id.replaceAll("[^a-zA-Z0-9._-]", "-");
+        this.name = TOPIC_PREFIX + this.instanceId;
+        this.groupId = groupOf(this.name);
+    }
+
+    // Группа экземпляра, которому принадлежит топик ответов
+    public static String groupOf(String topic) {
+        return GROUP_PREFIX + topic.substring(TOPIC_PREFIX.length());
+    }
+}
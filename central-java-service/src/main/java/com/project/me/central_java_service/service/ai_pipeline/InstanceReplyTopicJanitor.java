@@ -0,0 +1,103 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+// Удаление топиков ответов и групп экземпляров, которых больше нет.
+// Каждый перезапуск pod'а с новым именем создает новый топик text-processing-response.<id> и группу,
+// поэтому периодически ищутся топики экземпляров, в группах которых нет участников.
+// Топик удаляется, только если группа пуста на двух проверках подряд: только что запущенный
+// экземпляр успевает подключиться к своему топику
+@Slf4j
+@Component
+public class InstanceReplyTopicJanitor {
+    private static final long ADMIN_TIMEOUT_SECONDS = 30;
+
+    private final KafkaAdmin kafkaAdmin;
+    private final InstanceReplyTopic replyTopic;
+    private final boolean enabled;
+    // Топики без участников группы на прошлой проверке
+    private Set<String> idleBefore = Set.of();
+
+    @Autowired
+    public InstanceReplyTopicJanitor(KafkaAdmin kafkaAdmin,
+                                     InstanceReplyTopic replyTopic,
+                                     @Value("${ai.reply-topic.cleanup-enabled:true}") boolean enabled) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.replyTopic = replyTopic;
+        this.enabled = enabled;
+    }
+
+    @Scheduled(initialDelayString = "${ai.reply-topic.cleanup-interval-ms:600000}",
+            fixedDelayString = "${ai.reply-topic.cleanup-interval-ms:600000}")
+    public void cleanUp() {
+        if (!enabled) {
+            return;
+        }
+        try (Admin admin = Admin.create(kafkaAdmin.getConfigurationProperties())) {
+            cleanUp(admin);
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.warn("InstanceReplyTopicJanitor. Не удалось удалить топики остановленных экземпляров: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    synchronized void cleanUp(Admin admin) throws ExecutionException, InterruptedException, TimeoutException {
+        Set<String> topics = admin.listTopics().names().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS).stream()
+                .filter(topic -> topic.startsWith(InstanceReplyTopic.TOPIC_PREFIX))
+                .filter(topic -> !topic.equals(replyTopic.getName()))
+                .collect(Collectors.toSet());
+        if (topics.isEmpty()) {
+            idleBefore = Set.of();
+            return;
+        }
+
+        List<String> groups = topics.stream().map(InstanceReplyTopic::groupOf).toList();
+        Map<String, ConsumerGroupDescription> descriptions = admin.describeConsumerGroups(groups).all()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Set<String> idle = topics.stream()
+                .filter(topic -> {
+                    ConsumerGroupDescription group = descriptions.get(InstanceReplyTopic.groupOf(topic));
+                    return group == null || group.members().isEmpty();
+                })
+                .collect(Collectors.toSet());
+
+        Set<String> abandoned = new HashSet<>(idle);
+        abandoned.retainAll(idleBefore);
+        idle.removeAll(abandoned);
+        idleBefore = idle;
+        if (abandoned.isEmpty()) {
+            return;
+        }
+
+        log.info("InstanceReplyTopicJanitor. Удаляются топики остановленных экземпляров: {}", abandoned);
+        admin.deleteTopics(abandoned).all().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        // Группа без сохраненных смещений могла уже исчезнуть - ошибки по отдельным группам не важны
+        Map<String, KafkaFuture<Void>> deletedGroups = admin.deleteConsumerGroups(
+                abandoned.stream().map(InstanceReplyTopic::groupOf).toList()).deletedGroups();
+        for (Map.Entry<String, KafkaFuture<Void>> group : deletedGroups.entrySet()) {
+            try {
+                group.getValue().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                log.debug("InstanceReplyTopicJanitor. Группа {} не удалена: {}", group.getKey(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import com.project.me.central_java_service.model.dto.TextResponseDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Реестр ожидающих ответа от нейросети запросов.
+// Каждый запрос живет не дольше ttl: по истечении срока future завершается с TimeoutException
+// и удаляется из реестра, поэтому незавершенные запросы не копятся в памяти.
+// Завершенный запрос сразу удаляется и из очереди сроков, поэтому ответ не держится в памяти до истечения ttl
+@Slf4j
+@Component
+public class PendingRequestRegistry {
+    private final Map<String, PendingRequest> pending = new ConcurrentHashMap<>();
+    // Запросы в порядке регистрации. TTL у всех запросов одинаковый, поэтому порядок добавления
+    // совпадает с порядком истечения сроков, а первый элемент - самый старый запрос
+    private final ConcurrentSkipListMap<Long, PendingRequest> expiryQueue = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong expired = new AtomicLong();
+    private final long ttlNanos;
+    private final int capacity;
+    private final long retryAfterSeconds;
+
+    @Autowired
+    public PendingRequestRegistry(@Value("${ai.pending.ttl-seconds:60}") long ttlSeconds,
+                                  @Value("${ai.pending.capacity:10000}") int capacity,
+                                  @Value("${ai.admission.retry-after-seconds:5}") long retryAfterSeconds,
+                                  MeterRegistry meterRegistry) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.capacity = capacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("ai.pending.in_flight", inFlight, AtomicInteger::get)
+                .description("Количество запросов, ожидающих ответа от нейросети")
+                .register(meterRegistry);
+        FunctionCounter.builder("ai.pending.expired", expired, AtomicLong::get)
+                .description("Количество запросов, удаленных по истечении TTL")
+                .register(meterRegistry);
+        Gauge.builder("ai.pending.oldest_age", this, PendingRequestRegistry::oldestAgeSeconds)
+                .description("Возраст самого старого ожидающего запроса")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    // Зарегистрировать новый запрос и получить future, которое завершится ответом нейросети
+    public CompletableFuture<TextResponseDTO> register(String requestId) {
+        return register(requestId, null);
+    }
+
+    // Зарегистрировать потоковый запрос: промежуточные части ответа передаются в partialListener
+    public CompletableFuture<TextResponseDTO> register(String requestId, Consumer<String> partialListener) {
+        if (inFlight.incrementAndGet() > capacity) {
+            inFlight.decrementAndGet();
+            log.warn("PendingRequestRegistry. Достигнут лимит ожидающих запросов: {}", capacity);
+            throw new AiOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, "Сервис перегружен, повторите запрос позже", retryAfterSeconds);
+        }
+
+        long order = sequence.incrementAndGet();
+        PendingRequest request = new PendingRequest(
+                requestId, new CompletableFuture<>(), System.nanoTime(), partialListener, new AtomicLong(-1)
+        );
+        pending.put(requestId, request);
+        expiryQueue.put(order, request);
+
+        // Запрос может завершиться как ответом, так и извне (например, по таймауту контроллера)
+        request.future().whenComplete((result, ex) -> {
+            pending.remove(requestId, request);
+            expiryQueue.remove(order);
+            inFlight.decrementAndGet();
+        });
+        return request.future();
+    }
+
+    // Ожидает ли этот экземпляр ответ на запрос
+    public boolean isPending(String requestId) {
+        return pending.containsKey(requestId);
+    }
+
+    // Завершить запрос ответом. Возвращает false, если запрос уже не ожидается
+    public boolean complete(String requestId, TextResponseDTO response) {
+        PendingRequest request = pending.remove(requestId);
+        return request != null && request.future().complete(response);
+    }
+
+    // Передать промежуточную часть ответа. Повторы и части, пришедшие не по порядку, отбрасываются
+    public boolean publishPartial(String requestId, long seq, String delta) {
+        PendingRequest request = pending.get(requestId);
+        if (request == null || request.partialListener() == null || request.future().isDone()) {
+            return false;
+        }
+        long last = request.lastSeq().get();
+        if (seq <= last || !request.lastSeq().compareAndSet(last, seq)) {
+            return false;
+        }
+        request.partialListener().accept(delta);
+        return true;
+    }
+
+    // Завершить запрос ошибкой
+    public boolean fail(String requestId, Throwable ex) {
+        PendingRequest request = pending.remove(requestId);
+        return request != null && request.future().completeExceptionally(ex);
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    // Удаление просроченных запросов
+    @Scheduled(fixedDelayString = "${ai.pending.sweep-interval-ms:1000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        Map.Entry<Long, PendingRequest> entry;
+        while ((entry = expiryQueue.firstEntry()) != null) {
+            PendingRequest head = entry.getValue();
+            if (now - head.createdAt() < ttlNanos) {
+                break;
+            }
+            expiryQueue.remove(entry.getKey());
+            if (head.future().completeExceptionally(new TimeoutException("Истекло время ожидания ответа от нейросети"))) {
+                expired.incrementAndGet();
+                log.warn("PendingRequestRegistry. Запрос удален по истечении TTL. Буффер: {}", head.requestId());
+            }
+        }
+    }
+
+    // Завершенные запросы в очереди не остаются, поэтому достаточно первого элемента
+    double oldestAgeSeconds() {
+        Map.Entry<Long, PendingRequest> oldest = expiryQueue.firstEntry();
+        if (oldest == null) {
+            return 0;
+        }
+        return (double) (System.nanoTime() - oldest.getValue().createdAt()) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    // Количество запросов в очереди сроков
+    int trackedCount() {
+        return expiryQueue.size();
+    }
+
+    private record PendingRequest(String requestId,
+                                  CompletableFuture<TextResponseDTO> future,
+                                  long createdAt,
+                                  Consumer<String> partialListener,
+                                  AtomicLong lastSeq) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Разбиение большого текста на части по границам абзацев.
+// Текст из редактора хранится как HTML Quill (<p>...</p>), поэтому граница - это закрывающий </p>,
+// <br> или перевод строки. Абзац длиннее лимита не разрезается и уходит отдельной частью.
+@Component
+public class TextChunker {
+    private static final Pattern PARAGRAPH_END = Pattern.compile("</p>|<br\\s*/?>|\\n", Pattern.CASE_INSENSITIVE);
+
+    private final int maxChunkChars;
+
+    public TextChunker(@Value("${ai.chunking.max-chunk-chars:4000}") int maxChunkChars) {
+        this.maxChunkChars = maxChunkChars;
+    }
+
+    public boolean needsChunking(String text) {
+        return text.length() > maxChunkChars;
+    }
+
+    public List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        Matcher matcher = PARAGRAPH_END.matcher(text);
+
+        int chunkStart = 0;
+        int lastBoundary = 0;
+        while (matcher.find()) {
+            int boundary = matcher.end();
+            if (boundary - chunkStart > maxChunkChars && lastBoundary > chunkStart) {
+                chunks.add(text.substring(chunkStart, lastBoundary));
+                chunkStart = lastBoundary;
+            }
+            lastBoundary = boundary;
+        }
+
+        if (text.length() - chunkStart > maxChunkChars && lastBoundary > chunkStart) {
+            chunks.add(text.substring(chunkStart, lastBoundary));
+            chunkStart = lastBoundary;
+        }
+        if (chunkStart < text.length()) {
+            chunks.add(text.substring(chunkStart));
+        }
+        return chunks;
+    }
+
+    // Сборка обработанных частей в исходном порядке. Граница абзаца входит в саму часть,
+    // поэтому части склеиваются без разделителя. Если нейросеть отбросила завершающий
+    // перевод строки части, он возвращается, чтобы абзацы соседних частей не слились
+    public String join(List<String> chunks, List<String> processed) {
+        int length = 0;
+        for (String part : processed) {
+            length += part.length() + 1;
+        }
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < processed.size(); i++) {
+            String part = processed.get(i);
+            result.append(part);
+            if (i < processed.size() - 1 && chunks.get(i).endsWith("\n") && !part.endsWith("\n")) {
+                result.append('\n');
+            }
+        }
+        return result.toString();
+    }
+}
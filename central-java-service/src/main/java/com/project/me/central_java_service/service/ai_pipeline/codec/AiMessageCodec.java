@@ -0,0 +1,13 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+import java.io.IOException;
+
+// Формат сериализации сообщений между central-сервисом и воркером нейросети.
+// Название формата передается в заголовке сообщения
+public interface AiMessageCodec {
+    String name();
+
+    byte[] encodeRequest(AiRequestMessage message) throws IOException;
+
+    AiReplyMessage decodeReply(byte[] payload) throws IOException;
+}
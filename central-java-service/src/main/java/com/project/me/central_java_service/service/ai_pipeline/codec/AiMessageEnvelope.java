@@ -0,0 +1,154 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Версионированный конверт сообщений нейросети.
+// Формат тела и сжатие указываются в заголовках, поэтому воркер и central-сервис могут
+// переходить на новый формат постепенно. Сообщение без заголовков считается JSON без сжатия.
+// По умолчанию запросы не сжимаются: zstd и lz4 можно включать только после того, как на всех воркерах
+// установлены пакеты из python-neural-network-service/requirements.txt
+@Component
+public class AiMessageEnvelope {
+    public static final String VERSION_HEADER = "x-envelope-version";
+    public static final String CODEC_HEADER = "x-codec";
+    public static final String COMPRESSION_HEADER = "x-compression";
+    public static final String ENVELOPE_VERSION = "1";
+
+    private static final String NO_COMPRESSION = "none";
+    private static final String ZSTD = "zstd";
+    private static final String LZ4 = "lz4";
+
+    private final Map<String, AiMessageCodec> codecs = Map.of(
+            "json", new JacksonAiMessageCodec("json", new JsonFactory()),
+            "cbor", new JacksonAiMessageCodec("cbor", new CBORFactory())
+    );
+
+    private final AiMessageCodec requestCodec;
+    private final String compression;
+    private final int compressionThreshold;
+    // Наибольший размер тела ответа после распаковки. Размер из заголовка кадра приходит извне и не проверен
+    private final int maxMessageBytes;
+    private final DistributionSummary requestSize;
+
+    @Autowired
+    public AiMessageEnvelope(MeterRegistry meterRegistry,
+                             @Value("${ai.codec.name:json}") String codecName,
+                             @Value("${ai.codec.compression:none}") String compression,
+                             @Value("${ai.codec.compression-threshold:16384}") int compressionThreshold,
+                             @Value("${ai.codec.max-message-bytes:67108864}") int maxMessageBytes) {
+        this.requestCodec = codec(codecName);
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+        this.maxMessageBytes = maxMessageBytes;
+        this.requestSize = DistributionSummary.builder("ai.kafka.request_size")
+                .description("Размер тела запроса к нейросети после кодирования и сжатия")
+                .baseUnit("bytes")
+                .tag("codec", requestCodec.name())
+                .register(meterRegistry);
+    }
+
+    public ProducerRecord<String, byte[]> wrap(String topic, AiRequestMessage message) throws IOException {
+        byte[] payload = requestCodec.encodeRequest(message);
+        String appliedCompression = NO_COMPRESSION;
+        if (payload.length > compressionThreshold && !NO_COMPRESSION.equals(compression)) {
+            payload = compress(payload, compression);
+            appliedCompression = compression;
+        }
+        requestSize.record(payload.length);
+
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, message.requestId(), payload);
+        record.headers().add(VERSION_HEADER, ENVELOPE_VERSION.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(CODEC_HEADER, requestCodec.name().getBytes(StandardCharsets.UTF_8));
+        record.headers().add(COMPRESSION_HEADER, appliedCompression.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    public AiReplyMessage unwrap(ConsumerRecord<String, byte[]> record) throws IOException {
+        Headers headers = record.headers();
+        byte[] payload = decompress(record.value(), header(headers, COMPRESSION_HEADER, NO_COMPRESSION), maxMessageBytes);
+        return codec(header(headers, CODEC_HEADER, "json")).decodeReply(payload);
+    }
+
+    private AiMessageCodec codec(String name) {
+        AiMessageCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Неизвестный формат сообщений: " + name);
+        }
+        return codec;
+    }
+
+    private static String header(Headers headers, String key, String defaultValue) {
+        Header header = headers.lastHeader(key);
+        return header == null ? defaultValue : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] compress(byte[] payload, String compression) throws IOException {
+        return switch (compression) {
+            case ZSTD -> Zstd.compress(payload);
+            case LZ4 -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2);
+                try (OutputStream lz4 = new LZ4FrameOutputStream(out)) {
+                    lz4.write(payload);
+                }
+                yield out.toByteArray();
+            }
+            default -> throw new IllegalArgumentException("Неизвестный алгоритм сжатия: " + compression);
+        };
+    }
+
+    private static byte[] decompress(byte[] payload, String compression, int maxBytes) throws IOException {
+        return switch (compression) {
+            case NO_COMPRESSION -> payload;
+            case ZSTD -> {
+                long size = Zstd.getFrameContentSize(payload);
+                if (size > maxBytes) {
+                    throw new IOException("Размер ответа после распаковки превышает допустимый: " + size);
+                }
+                if (size >= 0) {
+                    yield Zstd.decompress(payload, (int) size);
+                }
+                // Размер не записан в заголовке кадра
+                try (InputStream zstd = new ZstdInputStream(new ByteArrayInputStream(payload))) {
+                    yield readLimited(zstd, maxBytes);
+                }
+            }
+            case LZ4 -> {
+                try (InputStream lz4 = new LZ4FrameInputStream(new ByteArrayInputStream(payload))) {
+                    yield readLimited(lz4, maxBytes);
+                }
+            }
+            default -> throw new IOException("Неизвестный алгоритм сжатия: " + compression);
+        };
+    }
+
+    // Прочитать поток целиком, но не больше maxBytes. Память выделяется по мере чтения, а не по заявленному размеру
+    private static byte[] readLimited(InputStream in, int maxBytes) throws IOException {
+        byte[] data = in.readNBytes(maxBytes);
+        if (data.length == maxBytes && in.read() != -1) {
+            throw new IOException("Размер ответа после распаковки превышает допустимый: больше " + maxBytes);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,25 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+// Ответ воркера нейросети. Промежуточная часть потокового ответа содержит delta и seq,
+// итоговый ответ - processedText или ссылку processedTextRef на хранилище, ошибка - error
+public record AiReplyMessage(
+        String requestId,
+        String processedText,
+        String delta,
+        long seq,
+        String error,
+        String processedTextRef,
+        String processedTextSha256
+) {
+    public boolean isPartial() {
+        return delta != null;
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    public boolean hasTextRef() {
+        return processedTextRef != null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+// Запрос к воркеру нейросети. Большой текст передается не в сообщении, а ссылкой textRef
+// на хранилище с контрольной суммой textSha256
+public record AiRequestMessage(
+        String requestId,
+        String instruction,
+        String text,
+        boolean stream,
+        String textRef,
+        String textSha256
+) {
+    public AiRequestMessage(String requestId, String instruction, String text, boolean stream) {
+        this(requestId, instruction, text, stream, null, null);
+    }
+}
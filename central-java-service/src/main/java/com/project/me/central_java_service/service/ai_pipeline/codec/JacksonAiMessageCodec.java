@@ -0,0 +1,84 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Кодек на потоковом API Jackson. Один и тот же код работает с JSON и CBOR -
+// отличается только JsonFactory. Ответ разбирается без построения дерева JsonNode:
+// читаются только известные поля, остальные пропускаются
+public class JacksonAiMessageCodec implements AiMessageCodec {
+    private final String name;
+    private final JsonFactory factory;
+
+    public JacksonAiMessageCodec(String name, JsonFactory factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte[] encodeRequest(AiRequestMessage message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(message.text() == null ? 256 : message.text().length() + 256);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("requestId", message.requestId());
+            generator.writeStringField("instruction", message.instruction());
+            if (message.textRef() != null) {
+                generator.writeStringField("textRef", message.textRef());
+                generator.writeStringField("textSha256", message.textSha256());
+            } else {
+                generator.writeStringField("text", message.text());
+            }
+            if (message.stream()) {
+                generator.writeStringField("stream", "true");
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public AiReplyMessage decodeReply(byte[] payload) throws IOException {
+        String requestId = null;
+        String processedText = null;
+        String delta = null;
+        long seq = 0;
+        String error = null;
+        String processedTextRef = null;
+        String processedTextSha256 = null;
+
+        try (JsonParser parser = factory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Ожидался объект в ответе нейросети");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "requestId" -> requestId = parser.getValueAsString();
+                    case "processedText" -> processedText = parser.getValueAsString();
+                    case "delta" -> delta = parser.getValueAsString();
+                    case "seq" -> seq = parser.getValueAsLong();
+                    case "error" -> error = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                    case "processedTextRef" -> processedTextRef = parser.getValueAsString();
+                    case "processedTextSha256" -> processedTextSha256 = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if (requestId == null) {
+            throw new IOException("В ответе нейросети нет requestId");
+        }
+        return new AiReplyMessage(requestId, processedText, delta, seq, error, processedTextRef, processedTextSha256);
+    }
+}
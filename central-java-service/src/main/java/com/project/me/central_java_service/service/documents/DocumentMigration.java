@@ -0,0 +1,188 @@
+package com.project.me.central_java_service.service.documents;
+
+import com.project.me.central_java_service.model.entity.User;
+import com.project.me.central_java_service.service.UserRevisionService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// Перенос документов из users.documents в коллекцию documents без остановки сервиса.
+// При старте пользователи переносятся курсором по одному, а до окончания переноса
+// документы пользователя переносятся при первом обращении к ним (migrateUser).
+// Документы вставляются upsert'ом по documentId, после чего поле documents удаляется,
+// поэтому повторный перенос того же пользователя безопасен
+@Slf4j
+@Component
+public class DocumentMigration {
+    private static final String LEGACY_FIELD = "documents";
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRevisionService revisionService;
+    private final boolean enabled;
+    // После полного переноса проверка при каждом обращении не нужна
+    private volatile boolean completed;
+
+    @Autowired
+    public DocumentMigration(MongoTemplate mongoTemplate,
+                             UserRevisionService revisionService,
+                             @Value("${documents.migration.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.revisionService = revisionService;
+        this.enabled = enabled;
+        this.completed = !enabled;
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(com.project.me.central_java_service.model.entity.Document.class).ensureIndex(new Index()
+                .on("userEmail", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("userEmail_documentId"));
+        // Индекс для списка документов: фильтр по пользователю, сортировка и курсор по (updatedAt, _id)
+        mongoTemplate.indexOps(com.project.me.central_java_service.model.entity.Document.class).ensureIndex(new Index()
+                .on("userEmail", Sort.Direction.ASC)
+                .on("updatedAt", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("userEmail_updatedAt_documentId"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateAll() {
+        if (!enabled) {
+            return;
+        }
+
+        Query query = legacyQuery();
+        query.fields().include("userEmail", LEGACY_FIELD);
+        query.cursorBatchSize(10);
+
+        int users = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, usersCollection())) {
+            for (Document user : (Iterable<Document>) stream::iterator) {
+                migrate(user);
+                users++;
+            }
+        } catch (DataAccessException e) {
+            log.error("DocumentMigration. Перенос документов прерван: {}", e.getMessage());
+            return;
+        }
+
+        completed = !mongoTemplate.exists(legacyQuery(), usersCollection());
+        backfillTextLength();
+        backfillVersion();
+        if (users > 0) {
+            log.info("DocumentMigration. Документы перенесены для {} пользователей", users);
+        }
+    }
+
+    // Перенести документы пользователя, если они еще хранятся внутри users
+    public void migrateUser(String userEmail) {
+        if (completed) {
+            return;
+        }
+        Query query = legacyQuery().addCriteria(where("userEmail").is(userEmail));
+        query.fields().include("userEmail", LEGACY_FIELD);
+        Document user = mongoTemplate.findOne(query, Document.class, usersCollection());
+        if (user != null) {
+            migrate(user);
+        }
+    }
+
+    private void migrate(Document user) {
+        String userEmail = user.getString("userEmail");
+        List<Document> embedded = user.getList(LEGACY_FIELD, Document.class, List.of());
+
+        if (!embedded.isEmpty()) {
+            List<Pair<Query, Update>> upserts = new ArrayList<>(embedded.size());
+            for (int i = 0; i < embedded.size(); i++) {
+                Document document = embedded.get(i);
+                String documentId = document.getString("documentId");
+                if (documentId == null) {
+                    // Идентификатор по пользователю и позиции в списке: если перенос прервется до удаления
+                    // поля documents, повторный перенос попадет в тот же документ, а не создаст копию
+                    documentId = UUID.nameUUIDFromBytes((userEmail + '\u0000' + i).getBytes(StandardCharsets.UTF_8)).toString();
+                }
+                upserts.add(Pair.of(
+                        query(where("_id").is(documentId)),
+                        new Update()
+                                .setOnInsert("userEmail", userEmail)
+                                .setOnInsert("documentName", document.get("documentName"))
+                                .setOnInsert("createdAt", document.get("createdAt"))
+                                .setOnInsert("updatedAt", document.get("updatedAt"))
+                                .setOnInsert("text", document.get("text"))
+                                .setOnInsert("textLength", textLength(document.get("text")))
+                                .setOnInsert("version", 0L)
+                ));
+            }
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, com.project.me.central_java_service.model.entity.Document.class)
+                    .upsert(upserts)
+                    .execute();
+            revisionService.increment(userEmail, UserRevisionService.DOCUMENTS);
+        }
+
+        // Если за это время список изменился (старая версия сервиса), поле остается до следующего переноса
+        mongoTemplate.updateFirst(
+                query(where("_id").is(user.get("_id")).and(LEGACY_FIELD).size(embedded.size())),
+                new Update().unset(LEGACY_FIELD),
+                User.class
+        );
+    }
+
+    // Заполнить длину текста у документов, перенесенных до появления поля textLength
+    private void backfillTextLength() {
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("textLength").toValue(StringOperators.valueOf(ConditionalOperators.ifNull("text").then("")).lengthCP());
+        long updated = mongoTemplate.updateMulti(
+                query(where("textLength").exists(false)), update, com.project.me.central_java_service.model.entity.Document.class
+        ).getModifiedCount();
+        if (updated > 0) {
+            log.info("DocumentMigration. Заполнена длина текста для {} документов", updated);
+        }
+    }
+
+    // Версия для документов, перенесенных до появления поля version
+    private void backfillVersion() {
+        mongoTemplate.updateMulti(
+                query(where("version").exists(false)),
+                new Update().set("version", 0L),
+                com.project.me.central_java_service.model.entity.Document.class
+        );
+    }
+
+    private static int textLength(Object text) {
+        return text instanceof String value ? value.codePointCount(0, value.length()) : 0;
+    }
+
+    private Query legacyQuery() {
+        return query(where(LEGACY_FIELD).exists(true));
+    }
+
+    private String usersCollection() {
+        return mongoTemplate.getCollectionName(User.class);
+    }
+}
@@ -0,0 +1,101 @@
+package com.project.me.central_java_service.service.documents;
+
+import com.project.me.central_java_service.model.entity.Document;
+import com.project.me.central_java_service.util.TextCompression;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+// Сжатие текста документов при записи в базу.
+// Тексты длиннее threshold-bytes сохраняются сжатыми в поле compressedText с указанием алгоритма в textCodec,
+// короткие - как есть в поле text. Распаковка выполняется при первом обращении к Document.getText(),
+// поэтому запросы, не читающие текст (список документов, версия), ее не выполняют
+@Component
+public class DocumentTextCodec {
+    public static final String NONE = "none";
+    // Поля, которые нужно читать из базы, чтобы получить текст документа
+    public static final String[] TEXT_FIELDS = {"text", "compressedText", "textCodec"};
+
+    private final String codec;
+    private final int threshold;
+    private final int level;
+    private final DistributionSummary ratio;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+
+    @Autowired
+    public DocumentTextCodec(MeterRegistry meterRegistry,
+                             @Value("${documents.compression.codec:zstd}") String codec,
+                             @Value("${documents.compression.threshold-bytes:4096}") int threshold,
+                             @Value("${documents.compression.level:3}") int level) {
+        if (!NONE.equals(codec) && !TextCompression.ZSTD.equals(codec) && !TextCompression.DEFLATE.equals(codec)) {
+            throw new IllegalArgumentException("Неизвестный алгоритм сжатия документов: " + codec);
+        }
+        this.codec = codec;
+        this.threshold = threshold;
+        this.level = level;
+
+        this.ratio = DistributionSummary.builder("documents.compression.ratio")
+                .description("Степень сжатия текста документа: исходный размер / сохраненный")
+                .tag("codec", codec)
+                .register(meterRegistry);
+        this.rawBytes = Counter.builder("documents.compression.bytes")
+                .description("Размер текстов документов до и после сжатия")
+                .baseUnit("bytes")
+                .tag("state", "raw")
+                .register(meterRegistry);
+        this.storedBytes = Counter.builder("documents.compression.bytes")
+                .description("Размер текстов документов до и после сжатия")
+                .baseUnit("bytes")
+                .tag("state", "stored")
+                .register(meterRegistry);
+    }
+
+    // Записать текст в новый документ перед вставкой
+    public void apply(Document document, String text) {
+        byte[] compressed = compress(text);
+        document.setText(compressed == null ? text : null);
+        document.setCompressedText(compressed);
+        document.setTextCodec(compressed == null ? null : codec);
+    }
+
+    // Добавить запись текста в обновление документа. Поле другого формата очищается
+    public Update apply(Update update, String text) {
+        byte[] compressed = compress(text);
+        if (compressed == null) {
+            return update.set("text", text).unset("compressedText").unset("textCodec");
+        }
+        return update.set("compressedText", compressed).set("textCodec", codec).unset("text");
+    }
+
+    // Сжатый текст или null, если текст сохраняется как есть
+    private byte[] compress(String text) {
+        if (NONE.equals(codec) || text == null) {
+            return null;
+        }
+        int size = text.getBytes(StandardCharsets.UTF_8).length;
+        if (size < threshold) {
+            record(size, size);
+            return null;
+        }
+        byte[] compressed = TextCompression.compress(text, codec, level);
+        if (compressed.length >= size) {
+            record(size, size);
+            return null;
+        }
+        record(size, compressed.length);
+        ratio.record((double) size / compressed.length);
+        return compressed;
+    }
+
+    private void record(int raw, int stored) {
+        rawBytes.increment(raw);
+        storedBytes.increment(stored);
+    }
+}
@@ -0,0 +1,413 @@
+package com.project.me.central_java_service.service.documents;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.me.central_java_service.exception.DocumentVersionConflictException;
+import com.project.me.central_java_service.model.entity.Document;
+import com.project.me.central_java_service.service.UserRevisionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// Отложенная запись автосохранений документов.
+// Для каждого документа хранится только последний сохраненный текст; в MongoDB он записывается,
+// когда пользователь перестал печатать на debounce-ms, но не позже max-delay-ms после первого
+// несохраненного изменения, а также перед чтением, экспортом и другими изменениями документа.
+// Каждое сохранение дописывается в локальный журнал (с fsync), который воспроизводится при старте,
+// поэтому изменения не теряются при остановке сервиса между сохранением и записью.
+// Версия выдается сразу в базе: сохранение увеличивает version документа одной маленькой записью
+// и запоминает ее в pendingTextVersion, поэтому проверка If-Match одинакова на всех экземплярах сервиса,
+// а конфликт возвращается клиенту при сохранении. Откладывается только запись текста: она выполняется,
+// только если в базе текст более ранней версии (textVersion), поэтому порядок записи с разных
+// экземпляров не важен и принятое сохранение не отбрасывается, пока его не заменил более новый текст
+@Slf4j
+@Component
+public class DocumentWriteBuffer {
+    // version = version + 1, затем pendingTextVersion = новая version
+    private static final AggregationUpdate RESERVE_VERSION = AggregationUpdate.update()
+            .set("version").toValue(ArithmeticOperators.valueOf(ConditionalOperators.ifNull("version").then(0)).add(1))
+            .set("pendingTextVersion").toValueOf("version");
+
+    // Ключ включает email, чтобы сохранение чужого documentId не смешалось с изменениями владельца
+    private final Map<DocumentKey, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final MongoTemplate mongoTemplate;
+    private final UserRevisionService revisionService;
+    private final DocumentTextCodec textCodec;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+    private final Path journalPath;
+    // Защищает согласованность журнала и буфера: журнал очищается, только когда буфер пуст
+    private final Object journalLock = new Object();
+    private final long maxJournalBytes;
+    private FileChannel journal;
+    private long journalBytes;
+
+    // Запись одного документа не выполняется параллельно из нескольких потоков
+    private final Object[] flushLocks = new Object[64];
+
+    private final Counter saves;
+    private final Counter writes;
+    private final Counter superseded;
+    private final DistributionSummary coalesced;
+
+    @Autowired
+    public DocumentWriteBuffer(MongoTemplate mongoTemplate,
+                               UserRevisionService revisionService,
+                               DocumentTextCodec textCodec,
+                               MeterRegistry meterRegistry,
+                               @Value("${documents.write-behind.debounce-ms:2000}") long debounceMillis,
+                               @Value("${documents.write-behind.max-delay-ms:10000}") long maxDelayMillis,
+                               @Value("${documents.write-behind.journal-path:data/document-journal.log}") String journalPath,
+                               @Value("${documents.write-behind.max-journal-bytes:67108864}") long maxJournalBytes) {
+        this.mongoTemplate = mongoTemplate;
+        this.revisionService = revisionService;
+        this.textCodec = textCodec;
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.journalPath = Path.of(journalPath);
+        this.maxJournalBytes = maxJournalBytes;
+        for (int i = 0; i < flushLocks.length; i++) {
+            flushLocks[i] = new Object();
+        }
+
+        Gauge.builder("documents.autosave.pending", pending, Map::size)
+                .description("Документы с изменениями, еще не записанными в базу")
+                .register(meterRegistry);
+        this.saves = Counter.builder("documents.autosave.saves")
+                .description("Принятые автосохранения")
+                .register(meterRegistry);
+        this.writes = Counter.builder("documents.autosave.writes")
+                .description("Записи документов в базу")
+                .register(meterRegistry);
+        this.superseded = Counter.builder("documents.autosave.superseded")
+                .description("Отложенные записи, не выполненные: в базе уже более новый текст или документ удален")
+                .register(meterRegistry);
+        // Сколько автосохранений документа объединено в одну запись
+        this.coalesced = DistributionSummary.builder("documents.autosave.coalesced")
+                .description("Количество автосохранений документа, объединенных в одну запись")
+                .register(meterRegistry);
+    }
+
+    // Воспроизвести журнал, оставшийся после предыдущего запуска
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(journalPath.toAbsolutePath().getParent());
+        if (Files.exists(journalPath)) {
+            int recovered = 0;
+            for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JournalEntry entry = objectMapper.readValue(line, JournalEntry.class);
+                    pending.merge(entry.key(), PendingWrite.of(entry), PendingWrite::merge);
+                    recovered++;
+                } catch (IOException e) {
+                    // Последняя строка могла быть записана не полностью
+                    log.warn("DocumentWriteBuffer. Пропущена поврежденная запись журнала: {}", e.getMessage());
+                }
+            }
+            if (recovered > 0) {
+                log.info("DocumentWriteBuffer. Из журнала восстановлено {} сохранений, документов: {}", recovered, pending.size());
+            }
+        }
+        synchronized (journalLock) {
+            openJournal(pending.isEmpty());
+        }
+        flushAll();
+    }
+
+    // Принять сохранение документа и вернуть его новую версию. Запись текста в базу выполняется позже.
+    // expectedVersion - версия, которую видел клиент; null - сохранение без проверки версии.
+    // currentVersion читает версию из базы для ответа 409, если версия не совпала
+    public long save(String userEmail, String documentId, String documentName, String text,
+                     Long expectedVersion, LongSupplier currentVersion) {
+        long version = reserveVersion(userEmail, documentId, expectedVersion, currentVersion);
+        JournalEntry entry = new JournalEntry(userEmail, documentId, documentName, text, System.currentTimeMillis(), version);
+
+        FileChannel written;
+        synchronized (journalLock) {
+            pending.merge(entry.key(), PendingWrite.of(entry), PendingWrite::merge);
+            written = appendToJournal(entry);
+        }
+        // fsync вне блокировки: сохранения других документов не ждут диск
+        forceJournal(written);
+        saves.increment();
+        return version;
+    }
+
+    // Версия документа с учетом несохраненных изменений. Пустой результат - изменений нет
+    public Optional<Long> pendingVersion(String userEmail, String documentId) {
+        return Optional.ofNullable(pending.get(new DocumentKey(userEmail, documentId))).map(PendingWrite::version);
+    }
+
+    // Есть ли у пользователя изменения, еще не записанные в базу
+    public boolean hasPendingForUser(String userEmail) {
+        return pending.keySet().stream().anyMatch(key -> key.userEmail().equals(userEmail));
+    }
+
+    // Записать несохраненные изменения документа
+    public void flush(String userEmail, String documentId) {
+        flush(new DocumentKey(userEmail, documentId));
+    }
+
+    // Записать несохраненные изменения всех документов пользователя
+    public void flushUser(String userEmail) {
+        pending.keySet().stream()
+                .filter(key -> key.userEmail().equals(userEmail))
+                .toList()
+                .forEach(this::flush);
+    }
+
+    // Отбросить несохраненные изменения удаляемого документа
+    public void discard(String userEmail, String documentId) {
+        pending.remove(new DocumentKey(userEmail, documentId));
+    }
+
+    @Scheduled(fixedDelayString = "${documents.write-behind.flush-interval-ms:500}")
+    public void flushDue() {
+        long now = System.currentTimeMillis();
+        for (PendingWrite write : List.copyOf(pending.values())) {
+            if (now - write.lastSavedAt() >= debounceMillis || now - write.firstSavedAt() >= maxDelayMillis) {
+                tryFlush(write.key());
+            }
+        }
+        compactJournal();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+        synchronized (journalLock) {
+            closeJournal();
+        }
+    }
+
+    private void flushAll() {
+        List.copyOf(pending.keySet()).forEach(this::tryFlush);
+        compactJournal();
+    }
+
+    // Запись с повтором при следующей попытке, если база недоступна
+    private void tryFlush(DocumentKey key) {
+        try {
+            flush(key);
+        } catch (DataAccessException e) {
+            log.error("DocumentWriteBuffer. Ошибка записи документа {}: {}", key.documentId(), e.getMessage());
+        }
+    }
+
+    // Изменения остаются в буфере, пока не записаны. Если за время записи пришли новые сохранения,
+    // они остаются в буфере и будут записаны следующей попыткой
+    private void flush(DocumentKey key) {
+        synchronized (flushLocks[Math.floorMod(key.hashCode(), flushLocks.length)]) {
+            PendingWrite write = pending.get(key);
+            if (write == null) {
+                return;
+            }
+
+            write(write);
+            synchronized (journalLock) {
+                pending.remove(key, write);
+            }
+        }
+    }
+
+    private long reserveVersion(String userEmail, String documentId, Long expectedVersion, LongSupplier currentVersion) {
+        Query query = query(where("userEmail").is(userEmail).and("documentId").is(documentId));
+        if (expectedVersion != null) {
+            query.addCriteria(where("version").is(expectedVersion));
+        }
+        query.fields().include("version");
+        Document reserved = mongoTemplate.findAndModify(
+                query, RESERVE_VERSION, FindAndModifyOptions.options().returnNew(true), Document.class
+        );
+        if (reserved == null) {
+            // Документа нет - 404 из currentVersion, версия не совпала - 409 с текущей версией
+            throw new DocumentVersionConflictException(currentVersion.getAsLong());
+        }
+        return reserved.getVersion();
+    }
+
+    // Имя документа записывается, только если после сохранения документ не менялся (например, не переименован).
+    // Иначе записывается только текст, если в базе текст более ранней версии
+    private void write(PendingWrite write) {
+        Query unchanged = documentQuery(write).addCriteria(where("version").is(write.version()));
+        long matched = mongoTemplate.updateFirst(
+                unchanged, textUpdate(write).set("documentName", write.documentName()), Document.class
+        ).getMatchedCount();
+        if (matched == 0) {
+            Query older = documentQuery(write).addCriteria(where("textVersion").not().gte(write.version()));
+            matched = mongoTemplate.updateFirst(older, textUpdate(write), Document.class).getMatchedCount();
+        }
+
+        if (matched == 0) {
+            superseded.increment();
+            log.info("DocumentWriteBuffer. Документ {} удален или уже содержит текст новее версии {}, запись не нужна",
+                    write.documentId(), write.version());
+            return;
+        }
+        writes.increment();
+        coalesced.record(write.saves());
+        revisionService.increment(write.userEmail(), UserRevisionService.DOCUMENTS);
+    }
+
+    private Update textUpdate(PendingWrite write) {
+        return textCodec.apply(new Update(), write.text())
+                .set("textLength", write.text().codePointCount(0, write.text().length()))
+                .set("updatedAt", write.updatedAt())
+                .set("textVersion", write.version());
+    }
+
+    private static Query documentQuery(PendingWrite write) {
+        return query(where("userEmail").is(write.userEmail()).and("documentId").is(write.documentId()));
+    }
+
+    // Возвращает канал, в который выполнена запись, для последующего fsync
+    private FileChannel appendToJournal(JournalEntry entry) {
+        try {
+            ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            journalBytes += line.remaining();
+            while (line.hasRemaining()) {
+                journal.write(line);
+            }
+        } catch (IOException e) {
+            log.error("DocumentWriteBuffer. Ошибка записи в журнал: {}", e.getMessage());
+        }
+        return journal;
+    }
+
+    private void forceJournal(FileChannel channel) {
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Журнал переписан при сжатии: новый журнал содержит это сохранение и уже сброшен на диск
+        } catch (IOException e) {
+            log.error("DocumentWriteBuffer. Ошибка сброса журнала на диск: {}", e.getMessage());
+        }
+    }
+
+    // Журнал очищается, когда все изменения записаны в базу. Если изменения есть всегда,
+    // журнал переписывается последними версиями документов, когда превысит max-journal-bytes
+    private void compactJournal() {
+        synchronized (journalLock) {
+            if (journal == null || (!pending.isEmpty() && journalBytes < maxJournalBytes)) {
+                return;
+            }
+            closeJournal();
+            openJournal(true);
+            for (PendingWrite write : pending.values()) {
+                appendToJournal(write.toJournalEntry());
+            }
+            forceJournal(journal);
+        }
+    }
+
+    private void openJournal(boolean truncate) {
+        try {
+            journalBytes = truncate ? 0 : Files.size(journalPath);
+            journal = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось открыть журнал документов " + journalPath, e);
+        }
+    }
+
+    private void closeJournal() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("DocumentWriteBuffer. Ошибка при закрытии журнала: {}", e.getMessage());
+        }
+    }
+
+    private record DocumentKey(String userEmail, String documentId) {
+    }
+
+    // Записи журнала прежнего формата содержат еще baseVersion
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record JournalEntry(String userEmail,
+                                String documentId,
+                                String documentName,
+                                String text,
+                                long savedAt,
+                                long version) {
+        private DocumentKey key() {
+            return new DocumentKey(userEmail, documentId);
+        }
+    }
+
+    private record PendingWrite(String userEmail,
+                                String documentId,
+                                String documentName,
+                                String text,
+                                long firstSavedAt,
+                                long lastSavedAt,
+                                int saves,
+                                long version) {
+        private static PendingWrite of(JournalEntry entry) {
+            return new PendingWrite(entry.userEmail(), entry.documentId(), entry.documentName(), entry.text(),
+                    entry.savedAt(), entry.savedAt(), 1, entry.version());
+        }
+
+        // Объединение двух сохранений: текст берется из сохранения с большей версией.
+        // Параллельные сохранения могут попасть в буфер не в порядке выдачи версий
+        private PendingWrite merge(PendingWrite other) {
+            PendingWrite latest = other.version() > version ? other : this;
+            return new PendingWrite(userEmail, documentId, latest.documentName(), latest.text(),
+                    Math.min(firstSavedAt, other.firstSavedAt()), Math.max(lastSavedAt, other.lastSavedAt()),
+                    saves + other.saves(), latest.version());
+        }
+
+        private DocumentKey key() {
+            return new DocumentKey(userEmail, documentId);
+        }
+
+        private JournalEntry toJournalEntry() {
+            return new JournalEntry(userEmail, documentId, documentName, text, lastSavedAt, version);
+        }
+
+        private LocalDateTime updatedAt() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSavedAt), ZoneId.systemDefault());
+        }
+    }
+}
@@ -2,6 +2,31 @@ package com.project.me.central_java_service.service.file_readers;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+import java.util.Set;
+
+// Reader одного формата файлов. FileReaderFactory выбирает reader по содержимому файла:
+// сначала по сигнатурам в начале файла, для zip-архивов - по файлам внутри архива,
+// а для текстовых форматов без сигнатур - по расширению или MIME-типу
 public interface FileReader {
     String readFile(MultipartFile file);
+
+    // MIME-типы формата
+    Set<String> mimeTypes();
+
+    // Сигнатуры в начале файла. Пустой список - текстовый формат
+    default List<MagicSignature> signatures() {
+        return List.of();
+    }
+
+    // Файл внутри zip-архива, по которому распознается формат, например word/document.xml.
+    // null - формат не zip-архив
+    default String archiveEntry() {
+        return null;
+    }
+
+    // Расширения файлов текстового формата (в нижнем регистре, без точки)
+    default Set<String> extensions() {
+        return Set.of();
+    }
 }
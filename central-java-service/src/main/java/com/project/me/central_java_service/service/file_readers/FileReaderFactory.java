@@ -1,37 +1,157 @@
 package com.project.me.central_java_service.service.file_readers;
 
-import com.project.me.central_java_service.service.file_readers.file_readers_impl.DocFileReader;
-import com.project.me.central_java_service.service.file_readers.file_readers_impl.DocXFileReader;
-import com.project.me.central_java_service.service.file_readers.file_readers_impl.PDFFileReader;
-import com.project.me.central_java_service.service.file_readers.file_readers_impl.TXTFileReader;
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.util.TextCharsetDetector;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Выбор reader'а по содержимому файла, а не по расширению.
+// Zip-архив без известной сигнатуры распознается по файлам внутри: docx, xlsx и odt - все zip-архивы.
+// Таблицы сигнатур, файлов архивов, расширений и MIME-типов строятся один раз из всех FileReader'ов приложения,
+// поэтому новый формат добавляется новым компонентом без изменения этого класса
+@Slf4j
 @Component
 public class FileReaderFactory {
-    private final ApplicationContext context;
+    private static final int HEADER_SIZE = 8 * 1024;
+    private static final String PLAIN_TEXT = "text/plain";
+    private static final String HTML = "text/html";
+    private static final MagicSignature ZIP = MagicSignature.of(0, 0x50, 0x4B, 0x03, 0x04);
+
+    // Сигнатуры от более длинных к более коротким
+    private final List<SignatureEntry> signatures = new ArrayList<>();
+    private final Map<String, FileReader> byArchiveEntry = new HashMap<>();
+    private final Map<String, FileReader> textByExtension = new HashMap<>();
+    private final Map<String, FileReader> textByMimeType = new HashMap<>();
 
     @Autowired
-    public FileReaderFactory(ApplicationContext context) {
-        this.context = context;
+    public FileReaderFactory(List<FileReader> readers) {
+        for (FileReader reader : readers) {
+            reader.signatures().forEach(signature -> signatures.add(new SignatureEntry(signature, reader)));
+            if (reader.archiveEntry() != null) {
+                register(byArchiveEntry, reader.archiveEntry(), reader);
+            }
+            if (reader.signatures().isEmpty() && reader.archiveEntry() == null) {
+                reader.extensions().forEach(extension -> register(textByExtension, extension, reader));
+                reader.mimeTypes().forEach(mimeType -> register(textByMimeType, mimeType, reader));
+            }
+        }
+        signatures.sort(Comparator.comparingInt((SignatureEntry entry) -> entry.signature().length()).reversed());
+        if (!textByMimeType.containsKey(PLAIN_TEXT)) {
+            throw new IllegalStateException("FileReaderFactory. Нет reader'а для " + PLAIN_TEXT);
+        }
+    }
+
+    public FileReader getFileReader(String fileName, MultipartFile file) {
+        byte[] header;
+        try (InputStream inputStream = file.getInputStream()) {
+            header = inputStream.readNBytes(HEADER_SIZE);
+        } catch (IOException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения файла");
+        }
+
+        for (SignatureEntry entry : signatures) {
+            if (entry.signature().matches(header, header.length)) {
+                return entry.reader();
+            }
+        }
+
+        if (ZIP.matches(header, header.length)) {
+            return getArchiveReader(fileName, file);
+        }
+
+        if (!looksLikeText(header)) {
+            log.warn("FileReaderFactory. Неизвестный формат файла {}", fileName);
+            throw new BaseCoreServiceException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Неподдерживаемый формат файла");
+        }
+
+        // У текстовых форматов нет сигнатур: используется расширение, затем MIME-тип от клиента
+        FileReader reader = textByExtension.get(getFileExtension(fileName));
+        if (reader == null && file.getContentType() != null) {
+            reader = textByMimeType.get(baseMimeType(file.getContentType()));
+        }
+        if (reader == null && looksLikeHtml(header) && textByMimeType.containsKey(HTML)) {
+            reader = textByMimeType.get(HTML);
+        }
+        return reader != null ? reader : textByMimeType.get(PLAIN_TEXT);
+    }
+
+    // Первый reader, чей файл есть в архиве. Архив читается только до этого файла
+    private FileReader getArchiveReader(String fileName, MultipartFile file) {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                FileReader reader = byArchiveEntry.get(entry.getName());
+                if (reader != null) {
+                    return reader;
+                }
+            }
+        } catch (IOException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения файла");
+        }
+        log.warn("FileReaderFactory. Неизвестный формат архива {}", fileName);
+        throw new BaseCoreServiceException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Неподдерживаемый формат файла");
     }
 
-    public FileReader getFileReader(String fileName) {
-        String extension = getFileExtension(fileName);
-        return switch (extension) {
-            case "doc" -> context.getBean(DocFileReader.class);
-            case "docx" -> context.getBean(DocXFileReader.class);
-            case "pdf" -> context.getBean(PDFFileReader.class);
-            case "txt" -> context.getBean(TXTFileReader.class);
-            default -> throw new IllegalArgumentException("Неподдержимаемый формат: " + extension);
-        };
+    private static void register(Map<String, FileReader> table, String key, FileReader reader) {
+        FileReader previous = table.put(key, reader);
+        if (previous != null && previous != reader) {
+            throw new IllegalStateException("FileReaderFactory. Формат " + key + " заявлен несколькими reader'ами");
+        }
+    }
+
+    // Текст - UTF-16 или данные без нулевых байтов
+    private static boolean looksLikeText(byte[] header) {
+        Charset charset = TextCharsetDetector.detect(header, header.length).charset();
+        if (charset.equals(StandardCharsets.UTF_16LE) || charset.equals(StandardCharsets.UTF_16BE)) {
+            return true;
+        }
+        for (byte b : header) {
+            if (b == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean looksLikeHtml(byte[] header) {
+        String start = new String(header, 0, Math.min(header.length, 512), StandardCharsets.ISO_8859_1);
+        // BOM UTF-8
+        if (start.startsWith("\u00EF\u00BB\u00BF")) {
+            start = start.substring(3);
+        }
+        start = start.stripLeading().toLowerCase(Locale.ROOT);
+        return start.startsWith("<!doctype html") || start.startsWith("<html");
+    }
+
+    private static String baseMimeType(String contentType) {
+        int parameters = contentType.indexOf(';');
+        return (parameters == -1 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
     }
 
     private String getFileExtension(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
         int dotIndex = fileName.lastIndexOf('.');
-        return dotIndex == -1 ? "" : fileName.substring(dotIndex + 1).toLowerCase();
+        return dotIndex == -1 ? "" : fileName.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
     }
-}
 
+    private record SignatureEntry(MagicSignature signature, FileReader reader) {
+    }
+}
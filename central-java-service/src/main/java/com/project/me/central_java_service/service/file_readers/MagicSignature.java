@@ -0,0 +1,56 @@
+package com.project.me.central_java_service.service.file_readers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Сигнатура формата: байты, которые должны стоять в начале файла по заданным смещениям.
+// Сигнатура может состоять из нескольких частей, например zip-архив с определенным первым файлом
+public final class MagicSignature {
+    private final List<Part> parts;
+
+    private MagicSignature(List<Part> parts) {
+        this.parts = List.copyOf(parts);
+    }
+
+    public static MagicSignature of(int offset, int... bytes) {
+        byte[] magic = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            magic[i] = (byte) bytes[i];
+        }
+        return new MagicSignature(List.of(new Part(offset, magic)));
+    }
+
+    public static MagicSignature ofAscii(int offset, String magic) {
+        return new MagicSignature(List.of(new Part(offset, magic.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    // Сигнатура с дополнительной частью
+    public MagicSignature andAscii(int offset, String magic) {
+        List<Part> extended = new ArrayList<>(parts);
+        extended.add(new Part(offset, magic.getBytes(StandardCharsets.US_ASCII)));
+        return new MagicSignature(extended);
+    }
+
+    // Количество проверяемых байтов. Из подходящих сигнатур выбирается самая длинная
+    public int length() {
+        return parts.stream().mapToInt(part -> part.bytes().length).sum();
+    }
+
+    public boolean matches(byte[] header, int length) {
+        for (Part part : parts) {
+            if (part.offset() + part.bytes().length > length) {
+                return false;
+            }
+            for (int i = 0; i < part.bytes().length; i++) {
+                if (header[part.offset() + i] != part.bytes()[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private record Part(int offset, byte[] bytes) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.project.me.central_java_service.service.file_readers;
+
+import com.project.me.central_java_service.util.HtmlEscaper;
+
+// Построение HTML документа из абзацев и фрагментов текста со стилем, в том же виде, что у DocXFileReader.
+// Соседние фрагменты с одинаковым стилем объединяются, абзац открывается при первом фрагменте
+public class StyledHtmlBuilder {
+    public static final String LEFT = "left";
+    public static final String CENTER = "center";
+    public static final String RIGHT = "right";
+    public static final String JUSTIFY = "justify";
+
+    private final StringBuilder html = new StringBuilder();
+    private final StringBuilder segment = new StringBuilder();
+    private String alignment = LEFT;
+    private boolean inParagraph;
+    private int segmentFontSize;
+    private boolean segmentBold;
+    private boolean segmentItalic;
+
+    // Выравнивание абзаца, который будет открыт следующим
+    public void alignment(String alignment) {
+        this.alignment = alignment;
+    }
+
+    // fontSize - размер шрифта в пунктах, 0 - не задан
+    public void text(CharSequence text, int fontSize, boolean bold, boolean italic) {
+        if (!text.isEmpty()) {
+            startSegment(fontSize, bold, italic);
+            segment.append(text);
+        }
+    }
+
+    public void text(char c, int fontSize, boolean bold, boolean italic) {
+        startSegment(fontSize, bold, italic);
+        segment.append(c);
+    }
+
+    // Закрыть абзац. Абзац без текста выводится пустым
+    public void endParagraph() {
+        openParagraph();
+        flushSegment();
+        html.append("</p>");
+        inParagraph = false;
+    }
+
+    public String build() {
+        if (inParagraph) {
+            endParagraph();
+        }
+        return html.toString();
+    }
+
+    private void openParagraph() {
+        if (!inParagraph) {
+            html.append("<p style=\"text-align: ").append(alignment).append(";\">");
+            inParagraph = true;
+        }
+    }
+
+    private void startSegment(int fontSize, boolean bold, boolean italic) {
+        openParagraph();
+        if (fontSize != segmentFontSize || bold != segmentBold || italic != segmentItalic) {
+            flushSegment();
+            segmentFontSize = fontSize;
+            segmentBold = bold;
+            segmentItalic = italic;
+        }
+    }
+
+    private void flushSegment() {
+        if (segment.isEmpty()) {
+            return;
+        }
+        if (segmentFontSize > 0) {
+            html.append("<span style=\"font-size: ").append(segmentFontSize).append("px;\">");
+        }
+        if (segmentBold) {
+            html.append("<strong>");
+        }
+        if (segmentItalic) {
+            html.append("<i>");
+        }
+        HtmlEscaper.appendEscaped(html, segment);
+        if (segmentItalic) {
+            html.append("</i>");
+        }
+        if (segmentBold) {
+            html.append("</strong>");
+        }
+        if (segmentFontSize > 0) {
+            html.append("</span>");
+        }
+        segment.setLength(0);
+    }
+}
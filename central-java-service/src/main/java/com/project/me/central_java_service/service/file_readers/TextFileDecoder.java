@@ -0,0 +1,62 @@
+package com.project.me.central_java_service.service.file_readers;
+
+import com.project.me.central_java_service.util.TextCharsetDetector;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+// Потоковое чтение текстового файла в кодировке, определенной по его началу (см. TextCharsetDetector).
+// BOM пропускается; ошибки после проверенного начала файла заменяются символом замены
+public record TextFileDecoder(Reader reader, Charset charset) implements Closeable {
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    static final int MAX_PRESIZE = 64 * 1024;
+
+    public static TextFileDecoder open(MultipartFile file) throws IOException {
+        BufferedInputStream inputStream = new BufferedInputStream(file.getInputStream(), SAMPLE_SIZE);
+        try {
+            inputStream.mark(SAMPLE_SIZE);
+            byte[] sample = inputStream.readNBytes(SAMPLE_SIZE);
+            inputStream.reset();
+
+            TextCharsetDetector.Detection detection = TextCharsetDetector.detect(sample, sample.length);
+            inputStream.skipNBytes(detection.bomLength());
+
+            CharsetDecoder decoder = detection.charset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            return new TextFileDecoder(new InputStreamReader(inputStream, decoder), detection.charset());
+        } catch (IOException e) {
+            closeQuietly(inputStream);
+            throw e;
+        }
+    }
+
+    // Начальный размер буфера результата: примерное количество символов в файле, но не больше MAX_PRESIZE.
+    // Для больших файлов точная оценка не помогает: размер в байтах завышает число символов в UTF-8,
+    // буфер из латиницы все равно копируется при первой кириллической букве, а toString копирует его еще раз
+    public int expectedLength(long fileSize) {
+        long chars = charset.name().startsWith("UTF-16") ? fileSize / 2 : fileSize;
+        return (int) Math.min(Math.max(chars, 16), MAX_PRESIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException ignored) {
+            // Исходная ошибка важнее
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.project.me.central_java_service.service.file_readers;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Общие части потокового чтения XML внутри zip-архивов (docx, odt)
+public final class XmlReaders {
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private XmlReaders() {
+    }
+
+    // Перейти к файлу архива с указанным именем. false - файла в архиве нет
+    public static boolean seekEntry(ZipInputStream zip, String name) throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (name.equals(entry.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static XMLStreamReader createReader(InputStream inputStream) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(inputStream);
+    }
+
+    // Перейти к следующему дочернему элементу текущего элемента.
+    // false - дочерних элементов больше нет, reader стоит на закрывающем теге
+    public static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Пропустить текущий элемент вместе с содержимым. reader остается на его закрывающем теге
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    // DTD и внешние сущности отключены: документ приходит от пользователя
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
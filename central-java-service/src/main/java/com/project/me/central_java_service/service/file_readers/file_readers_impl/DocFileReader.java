@@ -2,84 +2,157 @@ package com.project.me.central_java_service.service.file_readers.file_readers_im
 
 import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.MagicSignature;
+import com.project.me.central_java_service.util.HtmlEscaper;
 import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.hwpf.usermodel.CharacterRun;
 import org.apache.poi.hwpf.usermodel.Paragraph;
 import org.apache.poi.hwpf.usermodel.Range;
-import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
-import org.springframework.context.annotation.Scope;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Чтение doc за один проход по абзацам и фрагментам текста.
+// Соседние фрагменты с одинаковым стилем объединяются в один тег, фрагменты без стиля выводятся без span.
+// Открывающие и закрывающие теги стилей строятся один раз и переиспользуются
 @Component
-@Scope("prototype")
 public class DocFileReader implements FileReader {
+    private static final String[] ALIGN_STYLES = {
+            "<p style=\"text-align: left;\">",
+            "<p style=\"text-align: center;\">",
+            "<p style=\"text-align: right;\">",
+            "<p style=\"text-align: justify;\">"
+    };
+    // Конец абзаца и конец ячейки таблицы
+    private static final char PARAGRAPH_MARK = '\r';
+    private static final char CELL_MARK = '\u0007';
+
+    private static final Map<Integer, StyleTags> STYLE_TAGS = new ConcurrentHashMap<>();
+
     @Override
-    public String readFile(MultipartFile file) {
-        StringBuilder htmlContent = new StringBuilder("<html><body>");
+    public Set<String> mimeTypes() {
+        return Set.of("application/msword");
+    }
 
+    // Составной документ OLE2
+    @Override
+    public List<MagicSignature> signatures() {
+        return List.of(MagicSignature.of(0, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1));
+    }
+
+    @Override
+    public String readFile(MultipartFile file) {
         try (InputStream inputStream = file.getInputStream();
              HWPFDocument document = new HWPFDocument(inputStream)) {
-            Range range = document.getRange();
-
-            for (int i = 0; i < range.numParagraphs(); i++) {
-                Paragraph paragraph = range.getParagraph(i);
-
-                ParagraphAlignment paragraphAlignment = ParagraphAlignment.valueOf(paragraph.getFontAlignment());
-                String alignment;
-                switch (paragraphAlignment) {
-                    case LEFT -> alignment = "text-align: left;";
-                    case RIGHT -> alignment = "text-align: right;";
-                    case BOTH -> alignment = "text-align: justify";
-                    case CENTER -> alignment = "text-align: center;";
-                    default -> alignment = "text-align: left;";
-                }
+            return read(document.getRange(), document.getText());
+        } catch (IOException | RuntimeException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения doc файла");
+        }
+    }
+
+    // HWPF не дает итератора по абзацам: getParagraph и getCharacterRun берут элемент списка по индексу
+    // и разбирают его свойства, которые все равно нужны для стиля. Текст фрагментов не копируется
+    // (run.text() создает подстроку), а дописывается напрямую из текста документа по смещениям фрагмента
+    String read(Range range, CharSequence documentText) {
+        StringBuilder htmlContent = new StringBuilder("<html><body>");
+        StringBuilder segment = new StringBuilder();
+
+        int paragraphs = range.numParagraphs();
+        for (int i = 0; i < paragraphs; i++) {
+            readParagraph(range.getParagraph(i), documentText, htmlContent, segment);
+        }
+        return htmlContent.toString();
+    }
 
-                htmlContent.append(String.format("<p style=\"%s\">", alignment));
+    private void readParagraph(Paragraph paragraph, CharSequence documentText, StringBuilder htmlContent, StringBuilder segment) {
+        int justification = paragraph.getJustification();
+        htmlContent.append(justification >= 0 && justification < ALIGN_STYLES.length ? ALIGN_STYLES[justification] : ALIGN_STYLES[0]);
 
-                for (int j = 0; j < paragraph.numCharacterRuns(); j++) {
-                    CharacterRun run = paragraph.getCharacterRun(j);
+        // Текст копится, пока стиль фрагментов не меняется
+        int segmentStyle = 0;
+        segment.setLength(0);
 
-                    int fontSize = run.getFontSize();
-                    String fontSizeStyle = fontSize > 0 ? String.format("font-size: %dpx", fontSize) : "";
+        int runs = paragraph.numCharacterRuns();
+        for (int j = 0; j < runs; j++) {
+            CharacterRun run = paragraph.getCharacterRun(j);
+            int start = run.getStartOffset();
+            int end = run.getEndOffset();
+            // Знак конца абзаца не выводится
+            if (j == runs - 1) {
+                while (end > start && (documentText.charAt(end - 1) == PARAGRAPH_MARK || documentText.charAt(end - 1) == CELL_MARK)) {
+                    end--;
+                }
+            }
+            if (end <= start) {
+                continue;
+            }
 
-                    htmlContent.append(String.format("<span style=\"%s\">", fontSizeStyle));
+            int style = styleKey(run);
+            if (style != segmentStyle && !segment.isEmpty()) {
+                appendSegment(htmlContent, segment, segmentStyle);
+                segment.setLength(0);
+            }
+            segmentStyle = style;
+            segment.append(documentText, start, end);
+        }
+        if (!segment.isEmpty()) {
+            appendSegment(htmlContent, segment, segmentStyle);
+        }
 
-                    String text = run.text();
+        htmlContent.append("</p>");
+    }
 
-                    if (run.isBold()) {
-                        htmlContent.append("<b>");
-                    }
-                    if (run.isItalic()) {
-                        htmlContent.append("<i>");
-                    }
+    private static void appendSegment(StringBuilder htmlContent, StringBuilder segment, int style) {
+        if (style == 0) {
+            HtmlEscaper.appendEscaped(htmlContent, segment);
+            return;
+        }
+        StyleTags tags = STYLE_TAGS.computeIfAbsent(style, DocFileReader::buildTags);
+        htmlContent.append(tags.open());
+        HtmlEscaper.appendEscaped(htmlContent, segment);
+        htmlContent.append(tags.close());
+    }
 
-                    htmlContent.append(text
-                            .replace("&", "&amp;")
-                            .replace("<", "&lt;")
-                            .replace(">", "&gt;")
-                            .replace("\n", "<br>")
-                            .replace("\r", "<br>")
-                    );
+    // Стиль фрагмента одним числом: размер шрифта в пунктах, жирный, курсив. 0 - без стиля
+    private static int styleKey(CharacterRun run) {
+        // Размер в HWPF задается в половинах пункта
+        int fontSize = Math.max(0, run.getFontSize() / 2);
+        return fontSize << 2 | (run.isBold() ? 2 : 0) | (run.isItalic() ? 1 : 0);
+    }
 
-                    if (run.isItalic()) {
-                        htmlContent.append("</i>");
-                    }
-                    if (run.isBold()) {
-                        htmlContent.append("</b>");
-                    }
+    private static StyleTags buildTags(int style) {
+        int fontSize = style >>> 2;
+        boolean bold = (style & 2) != 0;
+        boolean italic = (style & 1) != 0;
 
-                    htmlContent.append("/span");
-                }
-                htmlContent.append("</p><br>");
-            }
-        } catch (IOException e) {
-            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения doc файла");
+        StringBuilder open = new StringBuilder();
+        StringBuilder close = new StringBuilder();
+        if (fontSize > 0) {
+            open.append("<span style=\"font-size: ").append(fontSize).append("px;\">");
         }
-        return htmlContent.toString();
+        if (bold) {
+            open.append("<b>");
+        }
+        if (italic) {
+            open.append("<i>");
+            close.append("</i>");
+        }
+        if (bold) {
+            close.append("</b>");
+        }
+        if (fontSize > 0) {
+            close.append("</span>");
+        }
+        return new StyleTags(open.toString(), close.toString());
+    }
+
+    private record StyleTags(String open, String close) {
     }
 }
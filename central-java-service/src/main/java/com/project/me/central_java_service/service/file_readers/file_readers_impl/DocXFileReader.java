@@ -2,89 +2,222 @@ package com.project.me.central_java_service.service.file_readers.file_readers_im
 
 import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.service.file_readers.FileReader;
-import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.poi.xwpf.usermodel.XWPFRun;
+import com.project.me.central_java_service.service.file_readers.XmlReaders;
+import com.project.me.central_java_service.util.HtmlEscaper;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.zip.ZipInputStream;
 
+// Чтение docx без построения модели документа: word/document.xml читается из архива потоком (StAX),
+// HTML пишется сразу в выходной буфер. В памяти одновременно находится только текст текущего фрагмента.
+// Выводятся абзацы верхнего уровня документа (без таблиц), как и при чтении через XWPFDocument
 @Component
 public class DocXFileReader implements FileReader {
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String DOCUMENT_PART = "word/document.xml";
+    // Элементы абзаца, внутри которых находятся фрагменты текста. Остальные (удаленный текст,
+    // закладки, рисунки) пропускаются целиком
+    private static final Set<String> RUN_CONTAINERS = Set.of(
+            "hyperlink", "ins", "fldSimple", "smartTag", "sdt", "sdtContent", "customXml", "moveTo"
+    );
+
+    @Override
+    public Set<String> mimeTypes() {
+        return Set.of("application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+    }
+
+    @Override
+    public String archiveEntry() {
+        return DOCUMENT_PART;
+    }
+
     @Override
     public String readFile(MultipartFile file) {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            if (XmlReaders.seekEntry(zip, DOCUMENT_PART)) {
+                return readDocument(zip);
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения файла");
+        }
+        // Zip-архив другого формата
+        throw new BaseCoreServiceException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Неподдерживаемый формат файла");
+    }
+
+    private String readDocument(InputStream documentXml) throws XMLStreamException {
         StringBuilder htmlContent = new StringBuilder();
-        try (XWPFDocument document = new XWPFDocument(file.getInputStream())) {
-            List<XWPFParagraph> paragraphs = document.getParagraphs();
-            for (XWPFParagraph paragraph : paragraphs) {
-
-                // Распознаем alignment текста параграфа
-                ParagraphAlignment alignment = paragraph.getAlignment();
-                String alignStyle;
-                switch (alignment) {
-                    case LEFT:
-                        alignStyle = "text-align: left;";
-                        break;
-                    case CENTER:
-                        alignStyle = "text-align: center;";
-                        break;
-                    case RIGHT:
-                        alignStyle = "text-align: right;";
-                        break;
-                    case BOTH:
-                        alignStyle = "text-align: justify;";
-                        break;
-                    default:
-                        alignStyle = "text-align: left;";
-                }
+        StringBuilder runText = new StringBuilder();
 
-                // Start paragraph div with alignment
-                htmlContent.append(String.format("<p style=\"%s\">", alignStyle));
+        XMLStreamReader reader = XmlReaders.createReader(documentXml);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && isW(reader, "body")) {
+                    while (XmlReaders.nextChild(reader)) {
+                        if (isW(reader, "p")) {
+                            readParagraph(reader, htmlContent, runText);
+                        } else {
+                            XmlReaders.skipElement(reader);
+                        }
+                    }
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return htmlContent.toString();
+    }
 
-                for (XWPFRun run : paragraph.getRuns()) {
-                    int fontSize = run.getFontSize();
-                    String fontSizeStyle = fontSize > 0 ? String.format("font-size: %dpx;", fontSize) : "";
+    // Свойства абзаца (pPr) по схеме идут первыми, поэтому тег абзаца открывается перед первым фрагментом
+    private void readParagraph(XMLStreamReader reader, StringBuilder htmlContent, StringBuilder runText) throws XMLStreamException {
+        String alignStyle = "text-align: left;";
+        boolean opened = false;
 
-                    // Открываем теги стиля для текущего XWPFRun
-                    htmlContent.append(String.format("<span style=\"%s\">", fontSizeStyle));
+        while (XmlReaders.nextChild(reader)) {
+            if (isW(reader, "pPr")) {
+                alignStyle = readAlignment(reader);
+                continue;
+            }
+            if (!opened) {
+                htmlContent.append("<p style=\"").append(alignStyle).append("\">");
+                opened = true;
+            }
+            readInline(reader, htmlContent, runText);
+        }
 
-                    if (run.isBold()) {
-                        htmlContent.append("<strong>");
-                    }
-                    if (run.isItalic()) {
-                        htmlContent.append("<i>");
-                    }
+        if (!opened) {
+            htmlContent.append("<p style=\"").append(alignStyle).append("\">");
+        }
+        htmlContent.append("</p>");
+    }
 
-                    htmlContent.append(run.text()
-                            .replace("&", "&amp;")
-                            .replace("<", "&lt;")
-                            .replace(">", "&gt;")
-                            .replace("\n", "<br>")
-                            .replace("\r", "<br>")
-                    );
+    private void readInline(XMLStreamReader reader, StringBuilder htmlContent, StringBuilder runText) throws XMLStreamException {
+        if (isW(reader, "r")) {
+            readRun(reader, htmlContent, runText);
+        } else if (W.equals(reader.getNamespaceURI()) && RUN_CONTAINERS.contains(reader.getLocalName())) {
+            while (XmlReaders.nextChild(reader)) {
+                readInline(reader, htmlContent, runText);
+            }
+        } else {
+            XmlReaders.skipElement(reader);
+        }
+    }
 
+    // Распознаем alignment текста параграфа
+    private String readAlignment(XMLStreamReader reader) throws XMLStreamException {
+        String alignStyle = "text-align: left;";
+        while (XmlReaders.nextChild(reader)) {
+            if (isW(reader, "jc")) {
+                String value = reader.getAttributeValue(W, "val");
+                alignStyle = switch (value == null ? "" : value) {
+                    case "center" -> "text-align: center;";
+                    case "right", "end" -> "text-align: right;";
+                    case "both" -> "text-align: justify;";
+                    default -> "text-align: left;";
+                };
+            }
+            XmlReaders.skipElement(reader);
+        }
+        return alignStyle;
+    }
 
-                    if (run.isItalic()) {
-                        htmlContent.append("</i>");
-                    }
-                    if (run.isBold()) {
-                        htmlContent.append("</strong>");
-                    }
+    private void readRun(XMLStreamReader reader, StringBuilder htmlContent, StringBuilder runText) throws XMLStreamException {
+        RunStyle style = RunStyle.PLAIN;
+        runText.setLength(0);
 
-                    // Закрываем span
-                    htmlContent.append("</span>");
+        while (XmlReaders.nextChild(reader)) {
+            if (!W.equals(reader.getNamespaceURI())) {
+                XmlReaders.skipElement(reader);
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "rPr" -> style = readRunStyle(reader);
+                case "t" -> runText.append(reader.getElementText());
+                case "tab", "ptab" -> {
+                    runText.append('\t');
+                    XmlReaders.skipElement(reader);
                 }
+                case "br", "cr" -> {
+                    runText.append('\n');
+                    XmlReaders.skipElement(reader);
+                }
+                case "noBreakHyphen" -> {
+                    runText.append('‑');
+                    XmlReaders.skipElement(reader);
+                }
+                default -> XmlReaders.skipElement(reader);
+            }
+        }
+
+        String fontSizeStyle = style.fontSize() > 0 ? "font-size: " + style.fontSize() + "px;" : "";
+        // Открываем теги стиля для текущего фрагмента
+        htmlContent.append("<span style=\"").append(fontSizeStyle).append("\">");
+        if (style.bold()) {
+            htmlContent.append("<strong>");
+        }
+        if (style.italic()) {
+            htmlContent.append("<i>");
+        }
+
+        HtmlEscaper.appendEscaped(htmlContent, runText);
+
+        if (style.italic()) {
+            htmlContent.append("</i>");
+        }
+        if (style.bold()) {
+            htmlContent.append("</strong>");
+        }
+        htmlContent.append("</span>");
+    }
+
+    // Учитываются только свойства, заданные у самого фрагмента, без наследования от стилей
+    private RunStyle readRunStyle(XMLStreamReader reader) throws XMLStreamException {
+        boolean bold = false;
+        boolean italic = false;
+        int fontSize = -1;
 
-                // Close paragraph div
-                htmlContent.append("</p>");
+        while (XmlReaders.nextChild(reader)) {
+            if (W.equals(reader.getNamespaceURI())) {
+                String value = reader.getAttributeValue(W, "val");
+                switch (reader.getLocalName()) {
+                    case "b" -> bold = isOn(value);
+                    case "i" -> italic = isOn(value);
+                    // Размер задается в половинах пункта
+                    case "sz" -> fontSize = parseHalfPoints(value);
+                    default -> {
+                    }
+                }
             }
-        } catch (IOException e) {
-            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения файла");
+            XmlReaders.skipElement(reader);
         }
-        return htmlContent.toString();
+        return new RunStyle(bold, italic, fontSize);
+    }
+
+    private static boolean isOn(String value) {
+        return value == null || value.equals("true") || value.equals("1") || value.equals("on");
+    }
+
+    private static int parseHalfPoints(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value) / 2;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isW(XMLStreamReader reader, String localName) {
+        return localName.equals(reader.getLocalName()) && W.equals(reader.getNamespaceURI());
+    }
+
+    private record RunStyle(boolean bold, boolean italic, int fontSize) {
+        private static final RunStyle PLAIN = new RunStyle(false, false, -1);
     }
 }
@@ -0,0 +1,95 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.TextFileDecoder;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.safety.Cleaner;
+import org.jsoup.safety.Safelist;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Чтение html: документ очищается от скриптов, форм и прочей разметки, которую нельзя показывать в редакторе.
+// Остаются форматирование текста, списки, таблицы, ссылки и inline-стили абзацев.
+// Из стилей остаются только свойства оформления текста с простыми значениями: без url(), expression() и т.п.
+@Component
+public class HTMLFileReader implements FileReader {
+    private static final Safelist SAFELIST = Safelist.relaxed()
+            .addAttributes("p", "style")
+            .addAttributes("span", "style")
+            .addAttributes("td", "style")
+            .addAttributes("h1", "style")
+            .addAttributes("h2", "style")
+            .addAttributes("h3", "style")
+            .addAttributes("h4", "style")
+            .addAttributes("h5", "style")
+            .addAttributes("h6", "style");
+    private static final Set<String> STYLE_PROPERTIES = Set.of(
+            "text-align", "font-size", "font-weight", "font-style", "text-decoration",
+            "color", "background-color", "text-indent", "line-height"
+    );
+    // Слова, числа с единицами, цвета #rrggbb и rgb(...)
+    private static final Pattern STYLE_VALUE = Pattern.compile("[\\w\\s#%.,-]+|rgba?\\([\\d\\s.,%]+\\)");
+
+    @Override
+    public Set<String> mimeTypes() {
+        return Set.of("text/html");
+    }
+
+    @Override
+    public Set<String> extensions() {
+        return Set.of("html", "htm");
+    }
+
+    @Override
+    public String readFile(MultipartFile file) {
+        Document document;
+        try (TextFileDecoder decoder = TextFileDecoder.open(file)) {
+            // Разбор прямо из потока, без промежуточной строки с исходным текстом
+            document = Parser.htmlParser().parseInput(new BufferedReader(decoder.reader()), "");
+        } catch (IOException | UncheckedIOException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения html файла");
+        }
+
+        Document clean = new Cleaner(SAFELIST).clean(document);
+        for (Element element : clean.select("[style]")) {
+            String style = filterStyle(element.attr("style"));
+            if (style.isEmpty()) {
+                element.removeAttr("style");
+            } else {
+                element.attr("style", style);
+            }
+        }
+        clean.outputSettings().prettyPrint(false);
+        return clean.body().html();
+    }
+
+    private static String filterStyle(String style) {
+        StringBuilder filtered = new StringBuilder();
+        for (String declaration : style.split(";")) {
+            int colon = declaration.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String property = declaration.substring(0, colon).strip().toLowerCase(Locale.ROOT);
+            String value = declaration.substring(colon + 1).strip();
+            if (STYLE_PROPERTIES.contains(property) && STYLE_VALUE.matcher(value).matches()) {
+                if (!filtered.isEmpty()) {
+                    filtered.append(' ');
+                }
+                filtered.append(property).append(": ").append(value).append(';');
+            }
+        }
+        return filtered.toString();
+    }
+}
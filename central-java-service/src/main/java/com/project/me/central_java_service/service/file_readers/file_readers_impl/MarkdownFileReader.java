@@ -0,0 +1,334 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.TextFileDecoder;
+import com.project.me.central_java_service.util.HtmlEscaper;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Чтение markdown построчно, с преобразованием в HTML на лету.
+// Поддерживается основная разметка: заголовки, абзацы, списки, цитаты, блоки кода, горизонтальная линия,
+// ссылки, жирный, курсив и код в тексте. Вложенные списки и таблицы выводятся как обычный текст
+@Component
+public class MarkdownFileReader implements FileReader {
+    private static final Pattern HEADING = Pattern.compile("(#{1,6})(?:[ \\t]+(.*?))?(?:[ \\t]+#+)?[ \\t]*");
+    private static final Pattern RULE = Pattern.compile("([-*_])(?:[ \\t]*\\1){2,}[ \\t]*");
+    private static final Pattern BULLET_ITEM = Pattern.compile("[-*+][ \\t]+(.*)");
+    private static final Pattern ORDERED_ITEM = Pattern.compile("\\d{1,9}[.)][ \\t]+(.*)");
+    private static final Pattern LINK = Pattern.compile("\\[([^\\]]+)]\\(([^()\\s\"]+)\\)");
+    private static final Pattern STRONG = Pattern.compile("\\*\\*(.+?)\\*\\*|__(.+?)__");
+    private static final Pattern EMPHASIS = Pattern.compile("\\*([^*]+)\\*|(?<![\\p{L}\\d])_([^_]+)_(?![\\p{L}\\d])");
+    // Символы, которые можно экранировать обратной косой чертой
+    private static final String ESCAPABLE = "\\`*_{}[]()#+-.!>~|";
+    // Экранированные символы на время разбора заменяются символами из области для частного использования
+    private static final char ESCAPE_BASE = '\uE000';
+    private static final Set<String> ALLOWED_SCHEMES = Set.of("http", "https", "mailto");
+
+    @Override
+    public Set<String> mimeTypes() {
+        return Set.of("text/markdown", "text/x-markdown");
+    }
+
+    @Override
+    public Set<String> extensions() {
+        return Set.of("md", "markdown");
+    }
+
+    @Override
+    public String readFile(MultipartFile file) {
+        try (TextFileDecoder decoder = TextFileDecoder.open(file)) {
+            BufferedReader reader = new BufferedReader(decoder.reader());
+            StringBuilder htmlContent = new StringBuilder(decoder.expectedLength(file.getSize()));
+            BlockWriter blocks = new BlockWriter(htmlContent);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blocks.line(line);
+            }
+            blocks.finish();
+            return htmlContent.toString();
+        } catch (IOException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения markdown файла");
+        }
+    }
+
+    // Разбор блоков. Абзац или пункт списка копится, пока не закончится; цитата разбирается вложенным BlockWriter
+    private static final class BlockWriter {
+        private final StringBuilder html;
+        private final StringBuilder paragraph = new StringBuilder();
+        // Открытый блок кода и его ограничитель (``` или ~~~)
+        private String fence;
+        // Открытый список: ul или ol
+        private String listTag;
+        private BlockWriter quote;
+
+        private BlockWriter(StringBuilder html) {
+            this.html = html;
+        }
+
+        private void line(String line) {
+            if (fence != null) {
+                if (line.strip().startsWith(fence)) {
+                    html.append("</code></pre>");
+                    fence = null;
+                } else {
+                    HtmlEscaper.appendEscaped(html, line);
+                    html.append('\n');
+                }
+                return;
+            }
+
+            String trimmed = line.strip();
+            int indent = line.length() - line.stripLeading().length();
+
+            if (trimmed.startsWith(">")) {
+                flushParagraph();
+                closeList();
+                if (quote == null) {
+                    html.append("<blockquote>");
+                    quote = new BlockWriter(html);
+                }
+                String inner = trimmed.substring(1);
+                quote.line(inner.startsWith(" ") ? inner.substring(1) : inner);
+                return;
+            }
+            closeQuote();
+
+            if (trimmed.isEmpty()) {
+                closeBlocks();
+                return;
+            }
+            if (indent < 4 && (trimmed.startsWith("```") || trimmed.startsWith("~~~"))) {
+                closeBlocks();
+                fence = trimmed.substring(0, 3);
+                html.append("<pre><code>");
+                return;
+            }
+
+            Matcher matcher = HEADING.matcher(trimmed);
+            if (matcher.matches()) {
+                closeBlocks();
+                String level = String.valueOf(matcher.group(1).length());
+                html.append("<h").append(level).append('>');
+                appendInline(html, matcher.group(2) == null ? "" : matcher.group(2));
+                html.append("</h").append(level).append('>');
+                return;
+            }
+            if (RULE.matcher(trimmed).matches()) {
+                closeBlocks();
+                html.append("<hr>");
+                return;
+            }
+
+            String tag = null;
+            matcher = BULLET_ITEM.matcher(trimmed);
+            if (matcher.matches()) {
+                tag = "ul";
+            } else {
+                matcher = ORDERED_ITEM.matcher(trimmed);
+                if (matcher.matches()) {
+                    tag = "ol";
+                }
+            }
+            if (tag != null) {
+                flushParagraph();
+                if (!tag.equals(listTag)) {
+                    closeList();
+                    html.append('<').append(tag).append('>');
+                    listTag = tag;
+                } else {
+                    html.append("</li>");
+                }
+                html.append("<li>");
+                appendLine(matcher.group(1));
+                return;
+            }
+
+            // Текст без отступа после списка начинает новый абзац, с отступом - продолжает пункт
+            if (listTag != null && indent == 0) {
+                closeBlocks();
+            }
+            appendLine(trimmed);
+        }
+
+        private void finish() {
+            closeQuote();
+            closeBlocks();
+            if (fence != null) {
+                html.append("</code></pre>");
+                fence = null;
+            }
+        }
+
+        private void appendLine(String text) {
+            if (!paragraph.isEmpty()) {
+                paragraph.append(' ');
+            }
+            paragraph.append(text);
+        }
+
+        // Текст пункта списка выводится внутри li, остальной - абзацем
+        private void flushParagraph() {
+            if (paragraph.isEmpty()) {
+                return;
+            }
+            if (listTag == null) {
+                html.append("<p>");
+                appendInline(html, paragraph);
+                html.append("</p>");
+            } else {
+                appendInline(html, paragraph);
+            }
+            paragraph.setLength(0);
+        }
+
+        private void closeList() {
+            flushParagraph();
+            if (listTag != null) {
+                html.append("</li></").append(listTag).append('>');
+                listTag = null;
+            }
+        }
+
+        private void closeQuote() {
+            if (quote != null) {
+                quote.finish();
+                html.append("</blockquote>");
+                quote = null;
+            }
+        }
+
+        private void closeBlocks() {
+            flushParagraph();
+            closeList();
+        }
+    }
+
+    // Разметка внутри строки. Код в обратных кавычках выводится как есть, в остальном тексте
+    // обрабатываются экранирование, ссылки, жирный и курсив
+    private static void appendInline(StringBuilder html, CharSequence text) {
+        String source = text.toString();
+        int start = 0;
+        while (start < source.length()) {
+            int open = source.indexOf('`', start);
+            if (open < 0) {
+                break;
+            }
+            int ticks = countTicks(source, open);
+            String delimiter = source.substring(open, open + ticks);
+            int close = source.indexOf(delimiter, open + ticks);
+            if (close < 0) {
+                break;
+            }
+            appendFormatted(html, source.substring(start, open));
+            html.append("<code>");
+            HtmlEscaper.appendEscaped(html, source.substring(open + ticks, close).strip());
+            html.append("</code>");
+            start = close + ticks;
+        }
+        appendFormatted(html, source.substring(start));
+    }
+
+    private static void appendFormatted(StringBuilder html, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        HtmlEscaper.appendEscaped(escaped, hideEscapes(text));
+
+        // Ссылки разбираются первыми, чтобы разметка не применялась к адресу
+        Matcher link = LINK.matcher(escaped);
+        StringBuilder result = new StringBuilder(escaped.length() + 16);
+        int last = 0;
+        while (link.find()) {
+            result.append(emphasis(escaped.substring(last, link.start())));
+            String url = link.group(2);
+            if (isSafeUrl(showEscapes(url))) {
+                result.append("<a href=\"").append(url).append("\">")
+                        .append(emphasis(link.group(1))).append("</a>");
+            } else {
+                result.append(emphasis(link.group(1)));
+            }
+            last = link.end();
+        }
+        result.append(emphasis(escaped.substring(last)));
+
+        restoreEscapes(html, result);
+    }
+
+    private static String emphasis(String text) {
+        String strong = STRONG.matcher(text).replaceAll(match ->
+                Matcher.quoteReplacement("<strong>" + (match.group(1) != null ? match.group(1) : match.group(2)) + "</strong>"));
+        return EMPHASIS.matcher(strong).replaceAll(match ->
+                Matcher.quoteReplacement("<i>" + (match.group(1) != null ? match.group(1) : match.group(2)) + "</i>"));
+    }
+
+    // Разрешены только http, https и mailto, а также адреса без схемы (относительные и якоря).
+    // Схема - все до первого двоеточия, если перед ним нет /, ? или #
+    private static boolean isSafeUrl(String url) {
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                return true;
+            }
+            if (c == ':') {
+                return ALLOWED_SCHEMES.contains(url.substring(0, i).toLowerCase(Locale.ROOT));
+            }
+        }
+        return true;
+    }
+
+    private static String hideEscapes(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length() && ESCAPABLE.indexOf(text.charAt(i + 1)) >= 0) {
+                result.append((char) (ESCAPE_BASE + text.charAt(++i)));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    // Адрес с восстановленными экранированными символами: javascript\: - тоже схема
+    private static String showEscapes(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            result.append(c >= ESCAPE_BASE && c < ESCAPE_BASE + 128 ? (char) (c - ESCAPE_BASE) : c);
+        }
+        return result.toString();
+    }
+
+    private static void restoreEscapes(StringBuilder html, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= ESCAPE_BASE && c < ESCAPE_BASE + 128) {
+                HtmlEscaper.appendEscaped(html, (char) (c - ESCAPE_BASE));
+            } else {
+                html.append(c);
+            }
+        }
+    }
+
+    private static int countTicks(String text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) == '`') {
+            i++;
+        }
+        return i - from;
+    }
+}
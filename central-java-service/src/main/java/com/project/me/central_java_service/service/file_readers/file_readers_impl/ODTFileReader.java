@@ -0,0 +1,296 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.MagicSignature;
+import com.project.me.central_java_service.service.file_readers.StyledHtmlBuilder;
+import com.project.me.central_java_service.service.file_readers.XmlReaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipInputStream;
+
+// Чтение odt: content.xml читается из архива потоком (StAX).
+// Автоматические стили (выравнивание, размер, жирный, курсив) идут в content.xml раньше текста,
+// поэтому документ читается за один проход. Общие стили из styles.xml не учитываются
+@Component
+public class ODTFileReader implements FileReader {
+    private static final String MIME_TYPE = "application/vnd.oasis.opendocument.text";
+    private static final String CONTENT_PART = "content.xml";
+
+    private static final String OFFICE = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+    private static final String STYLE = "urn:oasis:names:tc:opendocument:xmlns:style:1.0";
+    private static final String TEXT = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    private static final String FO = "urn:oasis:names:tc:opendocument:xmlns:xsl-fo-compatible:1.0";
+    private static final String DRAW = "urn:oasis:names:tc:opendocument:xmlns:drawing:1.0";
+
+    // Внутри абзаца: фрагменты, текст которых выводится
+    private static final Set<String> INLINE_CONTAINERS = Set.of("span", "a", "ruby", "ruby-base", "meta");
+    // Вне абзацев: элементы, которые не содержат текста документа
+    private static final Set<String> SKIPPED_BLOCKS = Set.of("tracked-changes", "sequence-decls", "variable-decls", "user-field-decls");
+
+    @Override
+    public Set<String> mimeTypes() {
+        return Set.of(MIME_TYPE);
+    }
+
+    // Первый файл архива odt - несжатый mimetype с MIME-типом документа
+    @Override
+    public List<MagicSignature> signatures() {
+        return List.of(MagicSignature.of(0, 0x50, 0x4B, 0x03, 0x04).andAscii(30, "mimetype" + MIME_TYPE));
+    }
+
+    // Архивы, собранные без mimetype первым файлом. content.xml есть и у ods и odp,
+    // такие документы отклоняются при чтении: в них нет office:text
+    @Override
+    public String archiveEntry() {
+        return CONTENT_PART;
+    }
+
+    @Override
+    public String readFile(MultipartFile file) {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            if (XmlReaders.seekEntry(zip, CONTENT_PART)) {
+                return readContent(zip);
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения odt файла");
+        }
+        throw new BaseCoreServiceException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Неподдерживаемый формат файла");
+    }
+
+    private String readContent(InputStream contentXml) throws XMLStreamException {
+        Map<String, OdtStyle> styles = new HashMap<>();
+        StyledHtmlBuilder html = new StyledHtmlBuilder();
+        boolean textDocument = false;
+
+        XMLStreamReader reader = XmlReaders.createReader(contentXml);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (is(reader, OFFICE, "automatic-styles")) {
+                    readStyles(reader, styles);
+                } else if (is(reader, OFFICE, "text")) {
+                    textDocument = true;
+                    readBlocks(reader, styles, html);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (!textDocument) {
+            // Таблица, презентация или другой документ OpenDocument
+            throw new BaseCoreServiceException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Неподдерживаемый формат файла");
+        }
+        return html.build();
+    }
+
+    private void readStyles(XMLStreamReader reader, Map<String, OdtStyle> styles) throws XMLStreamException {
+        while (XmlReaders.nextChild(reader)) {
+            if (!is(reader, STYLE, "style")) {
+                XmlReaders.skipElement(reader);
+                continue;
+            }
+            String name = reader.getAttributeValue(STYLE, "name");
+            OdtStyle style = OdtStyle.EMPTY;
+            while (XmlReaders.nextChild(reader)) {
+                if (is(reader, STYLE, "paragraph-properties")) {
+                    style = style.withAlignment(alignment(reader.getAttributeValue(FO, "text-align")));
+                } else if (is(reader, STYLE, "text-properties")) {
+                    style = style.withText(
+                            fontSize(reader.getAttributeValue(FO, "font-size")),
+                            bold(reader.getAttributeValue(FO, "font-weight")),
+                            italic(reader.getAttributeValue(FO, "font-style"))
+                    );
+                }
+                XmlReaders.skipElement(reader);
+            }
+            if (name != null) {
+                styles.put(name, style);
+            }
+        }
+    }
+
+    // Абзацы и заголовки на любом уровне вложенности: в списках, таблицах, разделах
+    private void readBlocks(XMLStreamReader reader, Map<String, OdtStyle> styles, StyledHtmlBuilder html) throws XMLStreamException {
+        while (XmlReaders.nextChild(reader)) {
+            if (is(reader, TEXT, "p") || is(reader, TEXT, "h")) {
+                OdtStyle style = styles.getOrDefault(reader.getAttributeValue(TEXT, "style-name"), OdtStyle.EMPTY);
+                html.alignment(style.alignment() == null ? StyledHtmlBuilder.LEFT : style.alignment());
+                readInline(reader, style, styles, html);
+                html.endParagraph();
+            } else if (DRAW.equals(reader.getNamespaceURI())
+                    || (TEXT.equals(reader.getNamespaceURI()) && SKIPPED_BLOCKS.contains(reader.getLocalName()))
+                    || is(reader, OFFICE, "annotation")) {
+                XmlReaders.skipElement(reader);
+            } else {
+                readBlocks(reader, styles, html);
+            }
+        }
+    }
+
+    private void readInline(XMLStreamReader reader, OdtStyle style, Map<String, OdtStyle> styles, StyledHtmlBuilder html) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                html.text(collapseWhitespace(reader.getText()), style.fontSize(), style.bold(), style.italic());
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            if (TEXT.equals(reader.getNamespaceURI())) {
+                switch (reader.getLocalName()) {
+                    case "s" -> {
+                        String count = reader.getAttributeValue(TEXT, "c");
+                        html.text(" ".repeat(parseCount(count)), style.fontSize(), style.bold(), style.italic());
+                        XmlReaders.skipElement(reader);
+                    }
+                    case "tab" -> {
+                        html.text('\t', style.fontSize(), style.bold(), style.italic());
+                        XmlReaders.skipElement(reader);
+                    }
+                    case "line-break" -> {
+                        html.text('\n', style.fontSize(), style.bold(), style.italic());
+                        XmlReaders.skipElement(reader);
+                    }
+                    default -> {
+                        if (INLINE_CONTAINERS.contains(reader.getLocalName())) {
+                            OdtStyle spanStyle = styles.get(reader.getAttributeValue(TEXT, "style-name"));
+                            readInline(reader, spanStyle == null ? style : style.merge(spanStyle), styles, html);
+                        } else {
+                            // Сноски, закладки, поля оглавления и т.п.
+                            XmlReaders.skipElement(reader);
+                        }
+                    }
+                }
+            } else {
+                XmlReaders.skipElement(reader);
+            }
+        }
+    }
+
+    // Переводы строк и повторяющиеся пробелы в тексте ODF не значимы (для них есть text:s, text:line-break)
+    private static String collapseWhitespace(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                if (!space) {
+                    result.append(' ');
+                }
+                space = true;
+            } else {
+                result.append(c);
+                space = false;
+            }
+        }
+        return result.toString();
+    }
+
+    private static int parseCount(String count) {
+        try {
+            return count == null ? 1 : Math.clamp(Integer.parseInt(count), 1, 1000);
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private static String alignment(String textAlign) {
+        if (textAlign == null) {
+            return null;
+        }
+        return switch (textAlign) {
+            case "center" -> StyledHtmlBuilder.CENTER;
+            case "end", "right" -> StyledHtmlBuilder.RIGHT;
+            case "justify" -> StyledHtmlBuilder.JUSTIFY;
+            default -> StyledHtmlBuilder.LEFT;
+        };
+    }
+
+    // Размер в пунктах, например "12pt". Относительные размеры не учитываются
+    private static Integer fontSize(String value) {
+        if (value == null || !value.endsWith("pt")) {
+            return null;
+        }
+        try {
+            return (int) Double.parseDouble(value.substring(0, value.length() - 2));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Boolean bold(String fontWeight) {
+        if (fontWeight == null) {
+            return null;
+        }
+        if (fontWeight.equals("bold")) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(fontWeight) >= 600;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static Boolean italic(String fontStyle) {
+        return fontStyle == null ? null : fontStyle.equals("italic") || fontStyle.equals("oblique");
+    }
+
+    private static boolean is(XMLStreamReader reader, String namespace, String localName) {
+        return localName.equals(reader.getLocalName()) && namespace.equals(reader.getNamespaceURI());
+    }
+
+    // Свойства стиля; null - свойство в стиле не задано
+    private record OdtStyle(String alignment, Integer size, Boolean isBold, Boolean isItalic) {
+        private static final OdtStyle EMPTY = new OdtStyle(null, null, null, null);
+
+        private OdtStyle withAlignment(String alignment) {
+            return new OdtStyle(alignment, size, isBold, isItalic);
+        }
+
+        private OdtStyle withText(Integer size, Boolean bold, Boolean italic) {
+            return new OdtStyle(alignment, size, bold, italic);
+        }
+
+        // Свойства фрагмента перекрывают свойства абзаца
+        private OdtStyle merge(OdtStyle inner) {
+            return new OdtStyle(
+                    alignment,
+                    inner.size != null ? inner.size : size,
+                    inner.isBold != null ? inner.isBold : isBold,
+                    inner.isItalic != null ? inner.isItalic : isItalic
+            );
+        }
+
+        private int fontSize() {
+            return size == null ? 0 : size;
+        }
+
+        private boolean bold() {
+            return Boolean.TRUE.equals(isBold);
+        }
+
+        private boolean italic() {
+            return Boolean.TRUE.equals(isItalic);
+        }
+    }
+}
@@ -2,32 +2,172 @@ package com.project.me.central_java_service.service.file_readers.file_readers_im
 
 import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.MagicSignature;
+import com.project.me.central_java_service.util.HtmlEscaper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
-import org.springframework.context.annotation.Scope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+// Извлечение текста из PDF по диапазонам страниц в общем ограниченном пуле.
+// Файл сохраняется во временный файл, и каждый диапазон открывает его отдельно
+// (PDDocument не потокобезопасен); разобранные объекты хранятся во временных файлах, а не в heap.
+// Документ, открытый в потоке запроса для подсчета страниц, сразу читает первый диапазон,
+// остальные читаются в пуле. Диапазонов не больше, чем потоков в пуле (плюс поток запроса),
+// и не меньше min-pages-per-slice страниц в каждом, поэтому небольшие документы читаются за один проход.
+// Каждый диапазон в пуле должен быть прочитан за slice-timeout, иначе чтение отменяется
+// Тексты диапазонов объединяются в порядке страниц, каждая строка - отдельный абзац
+@Slf4j
 @Component
 public class PDFFileReader implements FileReader {
+    private final ThreadPoolTaskExecutor pdfTextExecutor;
+    private final int minPagesPerSlice;
+    private final long sliceTimeoutNanos;
+
+    @Autowired
+    public PDFFileReader(@Qualifier("pdfTextExecutor") ThreadPoolTaskExecutor pdfTextExecutor,
+                         @Value("${documents.import.pdf.min-pages-per-slice:20}") int minPagesPerSlice,
+                         @Value("${documents.import.pdf.slice-timeout:60s}") Duration sliceTimeout) {
+        this.pdfTextExecutor = pdfTextExecutor;
+        this.minPagesPerSlice = Math.max(1, minPagesPerSlice);
+        this.sliceTimeoutNanos = sliceTimeout.toNanos();
+    }
+
     @Override
-    public String readFile(MultipartFile file) {
-        StringBuilder htmlContent = new StringBuilder("<html><body>");
+    public Set<String> mimeTypes() {
+        return Set.of("application/pdf");
+    }
 
-        try (InputStream inputStream = file.getInputStream();
-             PDDocument document = PDDocument.load(inputStream)) {
+    @Override
+    public List<MagicSignature> signatures() {
+        return List.of(MagicSignature.ofAscii(0, "%PDF-"));
+    }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
+    @Override
+    public String readFile(MultipartFile file) {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("pdf-import-", ".pdf");
+            file.transferTo(tempFile);
 
-            htmlContent.append(text.replace("\n", "<br><br>"));
+            try (PDDocument document = load(tempFile.toFile())) {
+                int pages = document.getNumberOfPages();
+                int sliceCount = Math.min(pdfTextExecutor.getMaxPoolSize() + 1, pages / minPagesPerSlice);
+                if (sliceCount <= 1) {
+                    return toHtml(List.of(extract(document, 1, pages)));
+                }
+                return toHtml(extractParallel(document, tempFile.toFile(), pages, sliceCount));
+            }
         } catch (IOException e) {
             throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения pdf файла");
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    private List<String> extractParallel(PDDocument document, File file, int pages, int sliceCount) throws IOException {
+        int sliceSize = (pages + sliceCount - 1) / sliceCount;
+        List<Slice> slices = new ArrayList<>(sliceCount - 1);
+        try {
+            for (int start = sliceSize + 1; start <= pages; start += sliceSize) {
+                int from = start;
+                int to = Math.min(pages, start + sliceSize - 1);
+                long deadline = System.nanoTime() + sliceTimeoutNanos;
+                slices.add(new Slice(pdfTextExecutor.submit(() -> {
+                    try (PDDocument sliceDocument = load(file)) {
+                        return extract(sliceDocument, from, to);
+                    }
+                }), deadline));
+            }
+
+            List<String> texts = new ArrayList<>(sliceCount);
+            texts.add(extract(document, 1, sliceSize));
+            for (Slice slice : slices) {
+                texts.add(slice.future().get(slice.deadline() - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            return texts;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            log.warn("PDFFileReader. Диапазон страниц не прочитан за {} мс, чтение отменено",
+                    TimeUnit.NANOSECONDS.toMillis(sliceTimeoutNanos));
+            throw new BaseCoreServiceException(HttpStatus.SERVICE_UNAVAILABLE, "Превышено время чтения pdf файла");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            slices.forEach(slice -> slice.future().cancel(true));
+        }
+    }
+
+    private static PDDocument load(File file) throws IOException {
+        return PDDocument.load(file, MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    private static String extract(PDDocument document, int startPage, int endPage) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setLineSeparator("\n");
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(endPage);
+        return stripper.getText(document);
+    }
+
+    private static String toHtml(List<String> texts) {
+        StringBuilder htmlContent = new StringBuilder("<html><body>");
+        for (String text : texts) {
+            int lineStart = 0;
+            while (lineStart < text.length()) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+                String line = text.substring(lineStart, lineEnd).strip();
+                if (!line.isEmpty()) {
+                    htmlContent.append("<p>");
+                    HtmlEscaper.appendEscaped(htmlContent, line);
+                    htmlContent.append("</p>");
+                }
+                lineStart = lineEnd + 1;
+            }
         }
         return htmlContent.toString();
     }
+
+    private static void deleteTempFile(Path tempFile) {
+        if (tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("PDFFileReader. Не удалось удалить временный файл {}: {}", tempFile, e.getMessage());
+        }
+    }
+
+    // Срок отсчитывается с постановки диапазона в пул
+    private record Slice(Future<String> future, long deadline) {
+    }
 }
@@ -0,0 +1,345 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.MagicSignature;
+import com.project.me.central_java_service.service.file_readers.StyledHtmlBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Чтение rtf собственным потоковым разбором управляющих слов, без javax.swing.text.rtf
+// (тот не поддерживает \\uN и кодовые страницы шрифтов и не годится для кириллицы).
+// Учитываются абзацы, выравнивание, жирный, курсив, размер шрифта; служебные группы пропускаются
+@Component
+public class RTFFileReader implements FileReader {
+    private static final int MAX_WORD_LENGTH = 32;
+
+    // Группы, текст которых не относится к документу
+    private static final Set<String> SKIPPED_DESTINATIONS = Set.of(
+            "colortbl", "stylesheet", "info", "pict", "object", "header", "headerl", "headerr", "headerf",
+            "footer", "footerl", "footerr", "footerf", "footnote", "listtable", "listoverridetable",
+            "themedata", "colorschememapping", "latentstyles", "datastore", "rsidtbl", "xmlnstbl",
+            "generator", "filetbl", "revtbl", "fldinst", "shppict", "nonshppict", "bkmkstart", "bkmkend"
+    );
+    // \fcharsetN -> кодовая страница Windows
+    private static final Map<Integer, String> FONT_CHARSETS = Map.of(
+            204, "windows-1251",
+            238, "windows-1250",
+            161, "windows-1253",
+            162, "windows-1254",
+            186, "windows-1257",
+            177, "windows-1255",
+            178, "windows-1256",
+            163, "windows-1258"
+    );
+
+    @Override
+    public Set<String> mimeTypes() {
+        return Set.of("application/rtf", "text/rtf");
+    }
+
+    @Override
+    public List<MagicSignature> signatures() {
+        return List.of(MagicSignature.ofAscii(0, "{\\rtf"));
+    }
+
+    @Override
+    public Set<String> extensions() {
+        return Set.of("rtf");
+    }
+
+    @Override
+    public String readFile(MultipartFile file) {
+        try (InputStream inputStream = new BufferedInputStream(file.getInputStream())) {
+            return new RtfParser(inputStream).parse();
+        } catch (IOException | RuntimeException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения rtf файла");
+        }
+    }
+
+    // Состояние символов, сохраняемое и восстанавливаемое вместе с группой
+    private static final class CharState {
+        private boolean bold;
+        private boolean italic;
+        // В половинах пункта, 0 - не задан
+        private int halfPoints;
+        private Charset charset;
+        // Сколько символов замены пропускать после \\uN
+        private int unicodeSkip = 1;
+        private boolean skipped;
+        private boolean fontTable;
+
+        private void plain() {
+            bold = false;
+            italic = false;
+            halfPoints = 0;
+        }
+
+        private CharState copy() {
+            CharState copy = new CharState();
+            copy.bold = bold;
+            copy.italic = italic;
+            copy.halfPoints = halfPoints;
+            copy.charset = charset;
+            copy.unicodeSkip = unicodeSkip;
+            copy.skipped = skipped;
+            copy.fontTable = fontTable;
+            return copy;
+        }
+    }
+
+    private static final class RtfParser {
+        private final InputStream in;
+        private final StyledHtmlBuilder html = new StyledHtmlBuilder();
+        private final Deque<CharState> groups = new ArrayDeque<>();
+        private final Map<Integer, Charset> fontCharsets = new HashMap<>();
+        private final StringBuilder word = new StringBuilder(MAX_WORD_LENGTH);
+        // Подряд идущие байты \'hh декодируются вместе (многобайтовые кодировки)
+        private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+
+        private CharState state = new CharState();
+        private Charset defaultCharset = Charset.forName("windows-1252");
+        private int pushedBack = -2;
+        // Номер шрифта, описываемого в таблице шрифтов
+        private int tableFont = -1;
+        // Сколько символов осталось пропустить после \\uN
+        private int skipFallback;
+
+        private RtfParser(InputStream in) {
+            this.in = in;
+            state.charset = defaultCharset;
+        }
+
+        private String parse() throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                switch (c) {
+                    case '{' -> {
+                        flushBytes();
+                        groups.push(state);
+                        state = state.copy();
+                    }
+                    case '}' -> {
+                        flushBytes();
+                        skipFallback = 0;
+                        if (groups.isEmpty()) {
+                            return html.build();
+                        }
+                        state = groups.pop();
+                    }
+                    case '\\' -> readControl();
+                    case '\r', '\n' -> {
+                        // Переводы строк в исходнике не значимы
+                    }
+                    default -> {
+                        if (skipFallback > 0) {
+                            skipFallback--;
+                        } else if (c >= 0x80) {
+                            // Байты вне ASCII без экранирования - в кодировке текущего шрифта
+                            pendingBytes.write(c);
+                        } else {
+                            flushBytes();
+                            character((char) c);
+                        }
+                    }
+                }
+            }
+            flushBytes();
+            return html.build();
+        }
+
+        private void readControl() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return;
+            }
+            if (!isLetter(c)) {
+                readSymbol(c);
+                return;
+            }
+
+            word.setLength(0);
+            while (isLetter(c) && word.length() < MAX_WORD_LENGTH) {
+                word.append((char) c);
+                c = read();
+            }
+
+            boolean hasParameter = false;
+            boolean negative = false;
+            int parameter = 0;
+            if (c == '-') {
+                negative = true;
+                c = read();
+            }
+            while (c >= '0' && c <= '9') {
+                hasParameter = true;
+                // Параметр по спецификации 16-битный; переполнение не допускаем
+                if (parameter < 100_000_000) {
+                    parameter = parameter * 10 + (c - '0');
+                }
+                c = read();
+            }
+            if (negative) {
+                parameter = -parameter;
+            }
+            // Пробел после управляющего слова - его часть
+            if (c != ' ') {
+                unread(c);
+            }
+
+            String name = word.toString();
+            if (!name.equals("u") && skipFallback > 0) {
+                // Управляющее слово считается одним символом замены
+                skipFallback--;
+                return;
+            }
+            flushBytes();
+            controlWord(name, hasParameter, parameter);
+        }
+
+        private void readSymbol(int c) throws IOException {
+            if (c == '\'') {
+                int value = Character.digit(read(), 16) << 4 | Character.digit(read(), 16);
+                if (skipFallback > 0) {
+                    skipFallback--;
+                } else if (value >= 0) {
+                    pendingBytes.write(value);
+                }
+                return;
+            }
+            flushBytes();
+            if (skipFallback > 0) {
+                skipFallback--;
+                return;
+            }
+            switch (c) {
+                case '\\', '{', '}' -> character((char) c);
+                case '~' -> character(' ');
+                case '_' -> character('‑');
+                case '-' -> {
+                    // Мягкий перенос
+                }
+                case '*' -> state.skipped = true;
+                case '\r', '\n' -> html.endParagraph();
+                default -> {
+                }
+            }
+        }
+
+        private void controlWord(String name, boolean hasParameter, int parameter) {
+            // Внутри служебных групп управляющие слова не влияют на документ
+            if (state.skipped) {
+                return;
+            }
+            switch (name) {
+                case "par", "row", "sect", "page" -> html.endParagraph();
+                case "line" -> character('\n');
+                case "tab", "cell" -> character('\t');
+                case "pard" -> html.alignment(StyledHtmlBuilder.LEFT);
+                case "ql" -> html.alignment(StyledHtmlBuilder.LEFT);
+                case "qc" -> html.alignment(StyledHtmlBuilder.CENTER);
+                case "qr" -> html.alignment(StyledHtmlBuilder.RIGHT);
+                case "qj" -> html.alignment(StyledHtmlBuilder.JUSTIFY);
+                case "plain" -> state.plain();
+                case "b" -> state.bold = !hasParameter || parameter != 0;
+                case "i" -> state.italic = !hasParameter || parameter != 0;
+                case "fs" -> state.halfPoints = hasParameter ? Math.max(parameter, 0) : 24;
+                case "ansicpg" -> {
+                    Charset charset = codePage(parameter);
+                    if (charset != null) {
+                        defaultCharset = charset;
+                        state.charset = charset;
+                    }
+                }
+                case "fonttbl" -> state.fontTable = true;
+                case "f" -> {
+                    if (state.fontTable) {
+                        tableFont = parameter;
+                    } else {
+                        state.charset = fontCharsets.getOrDefault(parameter, defaultCharset);
+                    }
+                }
+                case "fcharset" -> {
+                    if (state.fontTable && tableFont >= 0) {
+                        String charset = FONT_CHARSETS.get(parameter);
+                        fontCharsets.put(tableFont, charset == null ? defaultCharset : Charset.forName(charset));
+                    }
+                }
+                case "uc" -> state.unicodeSkip = Math.max(parameter, 0);
+                case "u" -> {
+                    // Значение задается знаковым 16-битным числом
+                    character((char) (parameter < 0 ? parameter + 65536 : parameter));
+                    skipFallback = state.unicodeSkip;
+                }
+                case "emdash" -> character('—');
+                case "endash" -> character('–');
+                case "bullet" -> character('•');
+                case "lquote" -> character('‘');
+                case "rquote" -> character('’');
+                case "ldblquote" -> character('“');
+                case "rdblquote" -> character('”');
+                default -> {
+                    if (SKIPPED_DESTINATIONS.contains(name)) {
+                        state.skipped = true;
+                    }
+                }
+            }
+        }
+
+        private void character(char c) {
+            if (!state.skipped && !state.fontTable) {
+                html.text(c, state.halfPoints / 2, state.bold, state.italic);
+            }
+        }
+
+        private void flushBytes() {
+            if (pendingBytes.size() == 0) {
+                return;
+            }
+            String text = new String(pendingBytes.toByteArray(), state.charset);
+            pendingBytes.reset();
+            if (!state.skipped && !state.fontTable) {
+                html.text(text, state.halfPoints / 2, state.bold, state.italic);
+            }
+        }
+
+        private static Charset codePage(int codePage) {
+            try {
+                return Charset.forName(codePage == 65001 ? StandardCharsets.UTF_8.name() : "windows-" + codePage);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static boolean isLetter(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private void unread(int c) {
+            pushedBack = c;
+        }
+    }
+}
@@ -2,22 +2,60 @@ package com.project.me.central_java_service.service.file_readers.file_readers_im
 
 import com.project.me.central_java_service.exception.BaseCoreServiceException;
 import com.project.me.central_java_service.service.file_readers.FileReader;
+import com.project.me.central_java_service.service.file_readers.TextFileDecoder;
+import com.project.me.central_java_service.util.HtmlEscaper;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
+import java.util.Set;
 
+// Чтение txt с определением кодировки (BOM, UTF-8, UTF-16, CP1251, KOI8-R) по началу файла.
+// Файл декодируется потоком по частям и сразу экранируется в HTML, поэтому в памяти
+// находится только результат. Переводы строк (\n, \r\n, \r) заменяются на <br>
 @Component
 public class TXTFileReader implements FileReader {
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    @Override
+    public Set<String> mimeTypes() {
+        return Set.of("text/plain");
+    }
+
+    @Override
+    public Set<String> extensions() {
+        return Set.of("txt", "text", "log");
+    }
+
     @Override
     public String readFile(MultipartFile file) {
-        try {
-            String text = new String(file.getBytes(), StandardCharsets.UTF_8);
-            return text.replace("\n", "<br>");
+        try (TextFileDecoder decoder = TextFileDecoder.open(file)) {
+            return toHtml(decoder.reader(), decoder.expectedLength(file.getSize()));
         } catch (IOException e) {
             throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Ошибка чтения TXT файла");
         }
     }
+
+    private static String toHtml(Reader reader, int expectedLength) throws IOException {
+        StringBuilder htmlContent = new StringBuilder(expectedLength);
+        char[] chunk = new char[CHUNK_SIZE];
+        boolean afterCarriageReturn = false;
+
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = chunk[i];
+                // \r\n - один перевод строки
+                if (c == '\n' && afterCarriageReturn) {
+                    afterCarriageReturn = false;
+                    continue;
+                }
+                afterCarriageReturn = c == '\r';
+                HtmlEscaper.appendEscaped(htmlContent, c);
+            }
+        }
+        return htmlContent.toString();
+    }
 }
@@ -0,0 +1,302 @@
+package com.project.me.central_java_service.service.history;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.project.me.central_java_service.model.entity.TextAiRequest;
+import com.project.me.central_java_service.service.UserRevisionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+// Отложенная запись истории запросов к нейросети.
+// Записи копятся в ограниченном буфере и сохраняются пачками: когда набралось batch-size записей
+// или прошло flush-interval-ms. Каждая пачка - одна bulk-вставка в коллекцию ai_requests.
+// За один вызов flush сохраняется только то, что было в буфере на момент вызова. Если база недоступна,
+// записи ждут в списке повтора, а следующая попытка откладывается с растущей паузой.
+// Записи, которые база отклонила (ошибка самого документа), не повторяются и пишутся в лог history-dead-letter
+@Slf4j
+@Component
+public class RequestHistoryAppender {
+    private static final int DUPLICATE_KEY = 11000;
+    private static final Logger deadLetter = LoggerFactory.getLogger("history-dead-letter");
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRevisionService revisionService;
+    private final BlockingQueue<TextAiRequest> buffer;
+    private final int batchSize;
+    private final int bufferCapacity;
+    private final long retryInitialNanos;
+    private final long retryMaxNanos;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Записи, которые не удалось сохранить из-за ошибки базы. Доступ только под flushLock
+    private final Deque<TextAiRequest> retry = new ArrayDeque<>();
+    // Записи, извлеченные из буфера, но еще не сохраненные: для чтения без блокировки
+    private volatile List<TextAiRequest> unsaved = List.of();
+    // Количество несохраненных записей по пользователям. Пользователя без таких записей в карте нет
+    private final Map<String, Integer> pendingByUser = new ConcurrentHashMap<>();
+    private long retryDelayNanos;
+    private long retryAt;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("history-flusher").daemon().factory()
+    );
+
+    private final Timer flushLatency;
+    private final Counter flushed;
+    private final Counter dropped;
+    private final Counter deadLettered;
+
+    @Autowired
+    public RequestHistoryAppender(MongoTemplate mongoTemplate,
+                                  UserRevisionService revisionService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${ai.history.buffer-capacity:10000}") int bufferCapacity,
+                                  @Value("${ai.history.batch-size:100}") int batchSize,
+                                  @Value("${ai.history.retry-initial-delay:1s}") Duration retryInitialDelay,
+                                  @Value("${ai.history.retry-max-delay:60s}") Duration retryMaxDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.revisionService = revisionService;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.bufferCapacity = bufferCapacity;
+        this.retryInitialNanos = retryInitialDelay.toNanos();
+        this.retryMaxNanos = retryMaxDelay.toNanos();
+
+        Gauge.builder("ai.history.buffered", buffer, BlockingQueue::size)
+                .description("Записи истории, ожидающие сохранения")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("ai.history.flush_latency")
+                .description("Время сохранения пачки записей истории")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushed = Counter.builder("ai.history.flushed")
+                .description("Сохраненные записи истории")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("ai.history.dropped")
+                .description("Записи истории, потерянные из-за переполнения буфера")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("ai.history.dead_lettered")
+                .description("Записи истории, отклоненные базой и записанные в лог history-dead-letter")
+                .register(meterRegistry);
+    }
+
+    // Добавить запись в буфер. Если буфер заполнен, запись теряется: поток Kafka не ждет базу,
+    // а сохранение накопленного передается потоку сохранения
+    public void append(String userEmail, TextAiRequest request) {
+        request.setUserEmail(userEmail);
+        if (request.getRequestTime() != null) {
+            // База хранит время с точностью до миллисекунд: курсор по записи из буфера
+            // должен совпадать с курсором по той же записи после сохранения
+            request.setRequestTime(request.getRequestTime().truncatedTo(ChronoUnit.MILLIS));
+        }
+        pendingByUser.merge(userEmail, 1, Integer::sum);
+        if (!buffer.offer(request)) {
+            done(userEmail, 1);
+            dropped.increment();
+            log.warn("RequestHistoryAppender. Буфер истории переполнен, запись потеряна. email={}", userEmail);
+            scheduleFlush();
+            return;
+        }
+
+        if (buffer.size() >= batchSize) {
+            scheduleFlush();
+        }
+    }
+
+    // Запустить сохранение в потоке сохранения, если оно еще не запланировано
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    // Есть ли у пользователя записи, еще не сохраненные в базу
+    public boolean hasBuffered(String userEmail) {
+        return pendingByUser.containsKey(userEmail);
+    }
+
+    // Записи пользователя, еще не сохраненные в базу. Буфер просматривается, только если такие записи есть.
+    // Запись, которую сохраняют во время просмотра, может попасть в результат дважды.
+    // Чтобы не пропустить запись, сохраненную во время чтения из базы, вызывать до запроса к базе
+    public List<TextAiRequest> buffered(String userEmail) {
+        if (!hasBuffered(userEmail)) {
+            return List.of();
+        }
+        List<TextAiRequest> found = new ArrayList<>();
+        for (TextAiRequest request : buffer) {
+            if (userEmail.equals(request.getUserEmail())) {
+                found.add(request);
+            }
+        }
+        for (TextAiRequest request : unsaved) {
+            if (userEmail.equals(request.getUserEmail())) {
+                found.add(request);
+            }
+        }
+        return found;
+    }
+
+    // Сохранить накопленные записи. Во время паузы после ошибки базы ничего не делает
+    @Scheduled(fixedDelayString = "${ai.history.flush-interval-ms:1000}")
+    public void flush() {
+        flush(false);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // Последняя попытка сохранить записи, даже если пауза после ошибки еще не прошла
+        flush(true);
+    }
+
+    private void flush(boolean ignoreBackoff) {
+        flushLock.lock();
+        try {
+            long now = System.nanoTime();
+            if (!ignoreBackoff && !retry.isEmpty() && now - retryAt < 0) {
+                return;
+            }
+
+            // Только то, что есть сейчас: записи, добавленные во время сохранения, ждут следующего вызова
+            List<TextAiRequest> pending = new ArrayList<>(retry);
+            retry.clear();
+            int taken = 0;
+            for (TextAiRequest request : buffer) {
+                if (taken == bufferCapacity) {
+                    break;
+                }
+                pending.add(request);
+                taken++;
+            }
+            // Сначала записи публикуются в unsaved и только потом удаляются из буфера:
+            // buffered в любой момент видит запись хотя бы в одном из мест.
+            // Из буфера удаляет только flush под flushLock, поэтому в голове очереди лежат именно эти записи
+            unsaved = List.copyOf(pending);
+            for (int i = 0; i < taken; i++) {
+                buffer.poll();
+            }
+
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<TextAiRequest> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+                if (!writeBatch(batch)) {
+                    retry.addAll(pending.subList(from, pending.size()));
+                    break;
+                }
+            }
+            scheduleRetry(now);
+            unsaved = List.copyOf(retry);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Пауза перед следующей попыткой удваивается после каждой неудачной попытки подряд
+    private void scheduleRetry(long now) {
+        if (retry.isEmpty()) {
+            retryDelayNanos = 0;
+            return;
+        }
+        while (retry.size() > bufferCapacity) {
+            done(List.of(retry.pollFirst()));
+            dropped.increment();
+        }
+        retryDelayNanos = retryDelayNanos == 0 ? retryInitialNanos : Math.min(retryDelayNanos * 2, retryMaxNanos);
+        retryAt = now + retryDelayNanos;
+        log.warn("RequestHistoryAppender. {} записей истории ждут повтора через {} мс",
+                retry.size(), TimeUnit.NANOSECONDS.toMillis(retryDelayNanos));
+    }
+
+    // false - база недоступна, пачку нужно повторить
+    private boolean writeBatch(List<TextAiRequest> batch) {
+        Timer.Sample sample = Timer.start();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TextAiRequest.class)
+                    .insert(batch)
+                    .execute();
+            flushed.increment(batch.size());
+            incrementRevisions(batch);
+            done(batch);
+            return true;
+        } catch (BulkOperationException e) {
+            // Повторная вставка уже сохраненной записи не считается ошибкой.
+            // Остальные ошибки относятся к самому документу и при повторе не исчезнут
+            int rejected = 0;
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    TextAiRequest request = batch.get(error.getIndex());
+                    deadLetter.error("aiRequestId={} email={} requestTime={} code={} error={}",
+                            request.getAiRequestId(), request.getUserEmail(), request.getRequestTime(),
+                            error.getCode(), error.getMessage());
+                    rejected++;
+                }
+            }
+            flushed.increment(batch.size() - rejected);
+            deadLettered.increment(rejected);
+            log.error("RequestHistoryAppender. База отклонила {} записей истории: {}", rejected, e.getMessage());
+            incrementRevisions(batch);
+            done(batch);
+            return true;
+        } catch (DataAccessException e) {
+            log.error("RequestHistoryAppender. Ошибка сохранения истории: {}", e.getMessage());
+            return false;
+        } finally {
+            sample.stop(flushLatency);
+        }
+    }
+
+    // Записи больше не ждут сохранения: сохранены, отклонены базой или потеряны
+    private void done(List<TextAiRequest> requests) {
+        requests.stream()
+                .collect(Collectors.groupingBy(TextAiRequest::getUserEmail, Collectors.counting()))
+                .forEach((userEmail, count) -> done(userEmail, count.intValue()));
+    }
+
+    private void done(String userEmail, int count) {
+        pendingByUser.computeIfPresent(userEmail, (key, pending) -> pending > count ? pending - count : null);
+    }
+
+    private void incrementRevisions(List<TextAiRequest> batch) {
+        revisionService.increment(
+                batch.stream().map(TextAiRequest::getUserEmail).collect(Collectors.toSet()),
+                UserRevisionService.HISTORY
+        );
+    }
+}
@@ -0,0 +1,109 @@
+package com.project.me.central_java_service.service.history;
+
+import com.project.me.central_java_service.model.entity.TextAiRequest;
+import com.project.me.central_java_service.model.entity.User;
+import com.project.me.central_java_service.service.UserRevisionService;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+// Перенос истории запросов из users.requests в коллекцию ai_requests.
+// Пользователи читаются курсором по одному. Записи вставляются upsert'ом по aiRequestId,
+// после чего поле requests удаляется, поэтому прерванную миграцию можно безопасно запустить повторно
+@Slf4j
+@Component
+public class RequestHistoryMigration {
+    private final MongoTemplate mongoTemplate;
+    private final UserRevisionService revisionService;
+    private final boolean enabled;
+
+    @Autowired
+    public RequestHistoryMigration(MongoTemplate mongoTemplate,
+                                   UserRevisionService revisionService,
+                                   @Value("${ai.history.migration.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.revisionService = revisionService;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+
+        Query query = query(where("requests").exists(true));
+        query.fields().include("userEmail", "requests");
+        query.cursorBatchSize(10);
+
+        int users = 0;
+        long requests = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(User.class))) {
+            for (Document user : (Iterable<Document>) stream::iterator) {
+                requests += migrateUser(user);
+                users++;
+            }
+        } catch (DataAccessException e) {
+            log.error("RequestHistoryMigration. Миграция истории прервана: {}", e.getMessage());
+            return;
+        }
+
+        if (users > 0) {
+            log.info("RequestHistoryMigration. История перенесена: пользователей {}, запросов {}", users, requests);
+        }
+    }
+
+    private int migrateUser(Document user) {
+        String userEmail = user.getString("userEmail");
+        List<Document> embedded = user.getList("requests", Document.class, List.of());
+
+        if (!embedded.isEmpty()) {
+            List<Pair<Query, Update>> upserts = new ArrayList<>(embedded.size());
+            for (Document request : embedded) {
+                String aiRequestId = request.getString("aiRequestId");
+                if (aiRequestId == null) {
+                    aiRequestId = UUID.randomUUID().toString();
+                }
+                upserts.add(Pair.of(
+                        query(where("_id").is(aiRequestId)),
+                        new Update()
+                                .setOnInsert("userEmail", userEmail)
+                                .setOnInsert("requestText", request.get("requestText"))
+                                .setOnInsert("responseText", request.get("responseText"))
+                                .setOnInsert("prompt", request.get("prompt"))
+                                .setOnInsert("requestTime", request.get("requestTime"))
+                ));
+            }
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TextAiRequest.class)
+                    .upsert(upserts)
+                    .execute();
+            revisionService.increment(userEmail, UserRevisionService.HISTORY);
+        }
+
+        // Если за это время в историю добавились записи (старая версия сервиса), поле остается до следующего запуска
+        mongoTemplate.updateFirst(
+                query(where("_id").is(user.get("_id")).and("requests").size(embedded.size())),
+                new Update().unset("requests"),
+                User.class
+        );
+        return embedded.size();
+    }
+}
@@ -0,0 +1,141 @@
+package com.project.me.central_java_service.service.history;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.model.dto.RequestHistoryItemDTO;
+import com.project.me.central_java_service.model.dto.RequestHistoryPageDTO;
+import com.project.me.central_java_service.model.entity.TextAiRequest;
+import com.project.me.central_java_service.service.UserRevisionService;
+import com.project.me.central_java_service.util.KeysetCursor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// История запросов к нейросети в коллекции ai_requests.
+// Список отдается страницами по курсору (requestTime, _id) от новых к старым:
+// следующая страница начинается сразу после последней записи предыдущей, без skip.
+// Тексты запроса и ответа в список не входят и загружаются только для одной записи.
+// Записи, которые еще ждут отложенного сохранения, добавляются к результату из буфера RequestHistoryAppender
+@Slf4j
+@Service
+public class RequestHistoryService {
+    private static final Comparator<TextAiRequest> NEWEST_FIRST = Comparator
+            .comparing(TextAiRequest::getRequestTime)
+            .thenComparing(TextAiRequest::getAiRequestId)
+            .reversed();
+
+    private final MongoTemplate mongoTemplate;
+    private final RequestHistoryAppender historyAppender;
+    private final UserRevisionService revisionService;
+    private final int maxPageSize;
+
+    @Autowired
+    public RequestHistoryService(MongoTemplate mongoTemplate,
+                                 RequestHistoryAppender historyAppender,
+                                 UserRevisionService revisionService,
+                                 @Value("${ai.history.max-page-size:100}") int maxPageSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.historyAppender = historyAppender;
+        this.revisionService = revisionService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(TextAiRequest.class).ensureIndex(new Index()
+                .on("userEmail", Sort.Direction.ASC)
+                .on("requestTime", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("userEmail_requestTime"));
+    }
+
+    // ETag страницы истории. Пустой результат - у пользователя есть еще не сохраненные записи
+    // или ревизия истории отстает от данных
+    public Optional<String> getPageETag(String userEmail, String cursor, int limit) {
+        if (historyAppender.hasBuffered(userEmail)) {
+            return Optional.empty();
+        }
+        return revisionService.currentETag(userEmail, UserRevisionService.HISTORY, cursor, limit);
+    }
+
+    // Получить страницу истории после курсора. Пустой курсор - первая страница
+    public RequestHistoryPageDTO getPage(String userEmail, String cursor, int limit) {
+        log.info("RequestHistoryService. Получение страницы истории запросов для пользователя с email={}", userEmail);
+        int pageSize = Math.clamp(limit, 1, maxPageSize);
+        KeysetCursor after = cursor != null && !cursor.isBlank() ? KeysetCursor.decode(cursor) : null;
+        Query query = new Query(where("userEmail").is(userEmail));
+        if (after != null) {
+            query.addCriteria(after.after("requestTime"));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "requestTime", "_id")).limit(pageSize + 1);
+        query.fields().include("prompt", "requestTime");
+
+        // Несохраненные записи читаются до базы: запись, сохраненная между двумя чтениями, попадет хотя бы в одно
+        List<TextAiRequest> buffered = historyAppender.buffered(userEmail);
+        List<TextAiRequest> found = withBuffered(mongoTemplate.find(query, TextAiRequest.class), buffered, after, pageSize + 1);
+        boolean hasMore = found.size() > pageSize;
+        List<TextAiRequest> page = hasMore ? found.subList(0, pageSize) : found;
+
+        String nextCursor = null;
+        if (hasMore) {
+            TextAiRequest last = page.getLast();
+            nextCursor = new KeysetCursor(last.getRequestTime(), last.getAiRequestId()).encode();
+        }
+        return new RequestHistoryPageDTO(
+                page.stream()
+                        .map(request -> new RequestHistoryItemDTO(request.getAiRequestId(), request.getPrompt(), request.getRequestTime()))
+                        .toList(),
+                nextCursor
+        );
+    }
+
+    // Получить одну запись истории с текстами запроса и ответа
+    public TextAiRequest getEntry(String userEmail, String aiRequestId) {
+        log.info("RequestHistoryService. Получение записи истории aiRequestId={} для пользователя с email={}", aiRequestId, userEmail);
+        List<TextAiRequest> buffered = historyAppender.buffered(userEmail);
+        TextAiRequest request = mongoTemplate.findOne(
+                Query.query(where("_id").is(aiRequestId).and("userEmail").is(userEmail)), TextAiRequest.class
+        );
+        if (request != null) {
+            return request;
+        }
+        return buffered.stream()
+                .filter(unsaved -> aiRequestId.equals(unsaved.getAiRequestId()))
+                .findFirst()
+                .orElseThrow(() -> new BaseCoreServiceException(HttpStatus.NOT_FOUND, "Запись истории не найдена"));
+    }
+
+    // Добавить к записям из базы несохраненные записи пользователя после курсора, сохранив порядок и лимит.
+    // Запись может оказаться и в базе, и в списке несохраненных, если ее сохранили во время чтения
+    private List<TextAiRequest> withBuffered(List<TextAiRequest> found, List<TextAiRequest> buffered, KeysetCursor after, int limit) {
+        if (buffered.isEmpty()) {
+            return found;
+        }
+        List<TextAiRequest> merged = new ArrayList<>(found);
+        Set<String> ids = new HashSet<>();
+        found.forEach(request -> ids.add(request.getAiRequestId()));
+        for (TextAiRequest request : buffered) {
+            if ((after == null || after.isAfter(request.getRequestTime(), request.getAiRequestId()))
+                    && ids.add(request.getAiRequestId())) {
+                merged.add(request);
+            }
+        }
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.me.central_java_service.util;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.springframework.http.HttpStatus;
+
+// ETag документа - его версия в кавычках, например "12"
+public final class DocumentETag {
+    private DocumentETag() {
+    }
+
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // Версия из заголовка If-Match. null - заголовка нет или он равен *, версия не проверяется
+    public static Long parse(String header) {
+        if (header == null || header.isBlank() || header.trim().equals("*")) {
+            return null;
+        }
+        String value = header.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Некорректный заголовок If-Match");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.project.me.central_java_service.util;
+
+// Экранирование текста для HTML документа. Переводы строк заменяются на <br>,
+// остальные управляющие символы (кроме табуляции) отбрасываются
+public final class HtmlEscaper {
+    private HtmlEscaper() {
+    }
+
+    public static void appendEscaped(StringBuilder out, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            appendEscaped(out, text.charAt(i));
+        }
+    }
+
+    public static void appendEscaped(StringBuilder out, char c) {
+        switch (c) {
+            case '&' -> out.append("&amp;");
+            case '<' -> out.append("&lt;");
+            case '>' -> out.append("&gt;");
+            case '\n', '\r', '\u000B' -> out.append("<br>");
+            case '\t' -> out.append(c);
+            default -> {
+                if (c >= ' ') {
+                    out.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.project.me.central_java_service.util;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Курсор постраничной выдачи по паре (время, _id) в порядке от новых к старым.
+// Следующая страница начинается сразу после последней записи предыдущей, без skip
+public record KeysetCursor(LocalDateTime time, String id) {
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = time.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Условие "после курсора" для сортировки (timeField desc, _id desc)
+    public Criteria after(String timeField) {
+        return new Criteria().orOperator(
+                where(timeField).lt(time),
+                where(timeField).is(time).and("_id").lt(id)
+        );
+    }
+
+    // То же условие для записи, которая еще не сохранена в базу
+    public boolean isAfter(LocalDateTime otherTime, String otherId) {
+        int byTime = otherTime.compareTo(time);
+        return byTime < 0 || (byTime == 0 && otherId.compareTo(id) < 0);
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Нет разделителя");
+            }
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BaseCoreServiceException(HttpStatus.BAD_REQUEST, "Некорректный курсор");
+        }
+    }
+}
@@ -3,10 +3,75 @@ package com.project.me.central_java_service.util;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class PreMadePrompts {
-    public HashMap<String, String> getOptions() {
+    // Опции, которые преобразуют текст абзац за абзацем. Для них большой текст можно
+    // обрабатывать частями: результат не зависит от соседних абзацев
+    private static final Set<String> CHUNKABLE_OPTIONS = Set.of(
+            "Повысить ясность",
+            "Исправить ошибки",
+            "Формальный тон",
+            "Неформальный тон",
+            "Упростить язык",
+            "Добавить Эмодзи",
+            "Перевести на Английский",
+            "Перевести на Немецкий",
+            "Перевести на Французский"
+    );
+
+    // Опции с ответом ограниченного размера, не зависящего от длины текста (примерное число символов)
+    private static final Map<String, Integer> FIXED_OUTPUT_CHARS = Map.of(
+            "Определить язык", 50,
+            "Придумать заголовок", 150,
+            "Сделать твит", 280,
+            "Извлечь ключевые слова", 400,
+            "Определить тональность", 600,
+            "Связанный факт", 600,
+            "Пересказать", 800
+    );
+
+    // Во сколько раз ответ опции длиннее исходного текста. Для остальных опций - примерно той же длины
+    private static final Map<String, Double> OUTPUT_RATIO = Map.of(
+            "Сделать короче", 0.3,
+            "Найти задачи", 0.5,
+            "Написать введение", 0.3,
+            "Написать заключение", 0.3,
+            "Развить мысль", 2.0,
+            "Продолжить писать", 2.0,
+            "Форматировать как Отчет", 1.5
+    );
+
+    // Неизменяемая карта: ее отдают наружу, а isChunkable и expectedOutputChars читают из нее же
+    private final Map<String, String> options = Map.copyOf(buildOptions());
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    // Можно ли обрабатывать текст с этой инструкцией по частям
+    public boolean isChunkable(String instruction) {
+        // Set.of не принимает null в contains: своя инструкция пользователя не найдена среди опций
+        String option = options.get(instruction);
+        return option != null && CHUNKABLE_OPTIONS.contains(option);
+    }
+
+    // Ожидаемый размер ответа нейросети для инструкции и текста заданной длины
+    public int expectedOutputChars(String instruction, int textLength) {
+        String option = options.get(instruction);
+        if (option == null) {
+            return textLength;
+        }
+        Integer fixed = FIXED_OUTPUT_CHARS.get(option);
+        if (fixed != null) {
+            return fixed;
+        }
+        return (int) (textLength * OUTPUT_RATIO.getOrDefault(option, 1.0));
+    }
+
+    private static HashMap<String, String> buildOptions() {
         HashMap<String, String> options = new HashMap<>();
 
         options.put("Перепешите текст понятным языком как для тупого.", "Повысить ясность");
@@ -0,0 +1,113 @@
+package com.project.me.central_java_service.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Определение кодировки текстового файла по его началу.
+// Порядок проверки: BOM, UTF-16 без BOM (по старшим байтам символов), строгая проверка UTF-8,
+// и для однобайтовых текстов выбор между CP1251 и KOI8-R по частоте типичных русских букв
+public final class TextCharsetDetector {
+    public static final Charset CP1251 = Charset.forName("windows-1251");
+    public static final Charset KOI8_R = Charset.forName("KOI8-R");
+
+    // Самые частые строчные буквы русского текста
+    private static final String FREQUENT_LETTERS = "оеаинтсрвлкмдпу";
+
+    private TextCharsetDetector() {
+    }
+
+    // Кодировка и длина BOM, который нужно пропустить
+    public record Detection(Charset charset, int bomLength) {
+    }
+
+    public static Detection detect(byte[] sample, int length) {
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF)) {
+            return new Detection(StandardCharsets.UTF_8, 3);
+        }
+        if (startsWith(sample, length, 0xFE, 0xFF)) {
+            return new Detection(StandardCharsets.UTF_16BE, 2);
+        }
+        if (startsWith(sample, length, 0xFF, 0xFE)) {
+            return new Detection(StandardCharsets.UTF_16LE, 2);
+        }
+
+        Charset utf16 = detectUtf16(sample, length);
+        if (utf16 != null) {
+            return new Detection(utf16, 0);
+        }
+        if (isUtf8(sample, length)) {
+            return new Detection(StandardCharsets.UTF_8, 0);
+        }
+        return new Detection(
+                russianScore(sample, length, KOI8_R) > russianScore(sample, length, CP1251) ? KOI8_R : CP1251, 0
+        );
+    }
+
+    private static boolean startsWith(byte[] sample, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((sample[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // В латинском и русском тексте в UTF-16 старший байт почти всегда 0x00 или 0x04,
+    // а в однобайтовых кодировках и UTF-8 такие байты на одной четности почти не встречаются
+    private static Charset detectUtf16(byte[] sample, int length) {
+        int pairs = length / 2;
+        if (pairs < 2) {
+            return null;
+        }
+        int evenHigh = 0;
+        int oddHigh = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            if (isUtf16HighByte(sample[i])) {
+                evenHigh++;
+            }
+            if (isUtf16HighByte(sample[i + 1])) {
+                oddHigh++;
+            }
+        }
+        if (oddHigh * 10 >= pairs * 7 && evenHigh * 10 < pairs * 3) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (evenHigh * 10 >= pairs * 7 && oddHigh * 10 < pairs * 3) {
+            return StandardCharsets.UTF_16BE;
+        }
+        return null;
+    }
+
+    private static boolean isUtf16HighByte(byte b) {
+        return b == 0x00 || b == 0x04;
+    }
+
+    // Незавершенная последовательность в конце образца ошибкой не считается
+    private static boolean isUtf8(byte[] sample, int length) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(length);
+        CoderResult result = decoder.decode(ByteBuffer.wrap(sample, 0, length), out, false);
+        return !result.isError();
+    }
+
+    private static int russianScore(byte[] sample, int length, Charset charset) {
+        String text = new String(sample, 0, length, charset);
+        int score = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (FREQUENT_LETTERS.indexOf(text.charAt(i)) >= 0) {
+                score++;
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,93 @@
+package com.project.me.central_java_service.util;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Сжатие текста документов. Алгоритм хранится рядом со сжатыми данными, поэтому
+// документы, сжатые разными алгоритмами, читаются одинаково
+public final class TextCompression {
+    public static final String ZSTD = "zstd";
+    public static final String DEFLATE = "deflate";
+    // Наибольший размер распакованного текста в байтах UTF-8. Защищает от поврежденного размера в кадре zstd
+    // и от данных, которые распаковываются в гигабайты
+    public static final int MAX_TEXT_BYTES = 256 * 1024 * 1024;
+
+    private TextCompression() {
+    }
+
+    public static byte[] compress(String text, String codec, int level) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return switch (codec) {
+            case ZSTD -> Zstd.compress(data, level);
+            case DEFLATE -> {
+                Deflater deflater = new Deflater(Math.clamp(level, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION));
+                try {
+                    deflater.setInput(data);
+                    deflater.finish();
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+                    byte[] buffer = new byte[8192];
+                    while (!deflater.finished()) {
+                        out.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                    yield out.toByteArray();
+                } finally {
+                    deflater.end();
+                }
+            }
+            default -> throw new IllegalArgumentException("Неизвестный алгоритм сжатия: " + codec);
+        };
+    }
+
+    public static String decompress(byte[] data, String codec) {
+        return decompress(data, codec, MAX_TEXT_BYTES);
+    }
+
+    static String decompress(byte[] data, String codec, int maxBytes) {
+        return switch (codec) {
+            case ZSTD -> {
+                long size = Zstd.getFrameContentSize(data);
+                if (size < 0) {
+                    throw new IllegalStateException("Размер сжатого текста не записан в кадре zstd");
+                }
+                if (size > maxBytes) {
+                    throw new IllegalStateException("Размер сжатого текста превышает допустимый: " + size);
+                }
+                try {
+                    yield new String(Zstd.decompress(data, (int) size), StandardCharsets.UTF_8);
+                } catch (ZstdException e) {
+                    throw new IllegalStateException("Сжатый текст поврежден", e);
+                }
+            }
+            case DEFLATE -> {
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(data);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min((long) data.length * 4, maxBytes));
+                    byte[] buffer = new byte[8192];
+                    while (!inflater.finished()) {
+                        int read = inflater.inflate(buffer);
+                        if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new IllegalStateException("Сжатый текст поврежден");
+                        }
+                        if (out.size() + read > maxBytes) {
+                            throw new IllegalStateException("Размер сжатого текста превышает допустимый");
+                        }
+                        out.write(buffer, 0, read);
+                    }
+                    yield out.toString(StandardCharsets.UTF_8);
+                } catch (DataFormatException e) {
+                    throw new IllegalStateException("Сжатый текст поврежден", e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            default -> throw new IllegalArgumentException("Неизвестный алгоритм сжатия: " + codec);
+        };
+    }
+}
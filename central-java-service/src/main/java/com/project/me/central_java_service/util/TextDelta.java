@@ -0,0 +1,64 @@
+package com.project.me.central_java_service.util;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.model.dto.TextEditOperation;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+// Применение операций retain/insert/delete к тексту.
+// Операции идут от начала текста; текст после последней операции остается без изменений.
+// Длины считаются в единицах UTF-16, как в Quill: символ вне BMP занимает две единицы и не может быть разделен
+public final class TextDelta {
+    private TextDelta() {
+    }
+
+    public static String apply(String base, List<TextEditOperation> ops) {
+        StringBuilder result = new StringBuilder(base.length() + 64);
+        int position = 0;
+
+        for (TextEditOperation op : ops) {
+            if (op == null || countFields(op) != 1) {
+                throw invalid("Операция должна содержать ровно одно из полей retain, insert, delete");
+            }
+            if (op.insert() != null) {
+                result.append(op.insert());
+                continue;
+            }
+
+            int length = op.retain() != null ? op.retain() : op.delete();
+            if (length < 0 || length > base.length() - position) {
+                throw invalid("Операция выходит за границы текста");
+            }
+            if (op.retain() != null) {
+                result.append(base, position, position + length);
+            }
+            position += length;
+            if (splitsSurrogatePair(base, position)) {
+                throw invalid("Операция разделяет символ из суррогатной пары");
+            }
+        }
+
+        result.append(base, position, base.length());
+        return result.toString();
+    }
+
+    // Позиция между старшей и младшей половинами символа вне BMP (например, эмодзи)
+    private static boolean splitsSurrogatePair(String text, int position) {
+        return position > 0 && position < text.length()
+                && Character.isHighSurrogate(text.charAt(position - 1))
+                && Character.isLowSurrogate(text.charAt(position));
+    }
+
+    private static int countFields(TextEditOperation op) {
+        int count = 0;
+        if (op.retain() != null) count++;
+        if (op.insert() != null) count++;
+        if (op.delete() != null) count++;
+        return count;
+    }
+
+    private static BaseCoreServiceException invalid(String message) {
+        return new BaseCoreServiceException(HttpStatus.BAD_REQUEST, message);
+    }
+}
@@ -0,0 +1,161 @@
+package com.project.me.central_java_service.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SseEventStreamTest {
+
+    // Emitter, который запоминает события и позволяет вызвать обработчики отключения клиента
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new ArrayList<>();
+        private final CountDownLatch release;
+        private Runnable timeoutCallback;
+        private Consumer<Throwable> errorCallback;
+        private boolean completed;
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public synchronized void send(SseEventBuilder builder) throws IOException {
+            try {
+                // Медленный клиент: отправка ждет, пока тест не разрешит
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder event = new StringBuilder();
+            builder.build().forEach(part -> event.append(part.getData()));
+            sent.add(event.toString());
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+
+        @Override
+        public synchronized void onTimeout(Runnable callback) {
+            this.timeoutCallback = callback;
+        }
+
+        @Override
+        public synchronized void onError(Consumer<Throwable> callback) {
+            this.errorCallback = callback;
+        }
+
+        private synchronized List<String> sent() {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    @Test
+    void deltaDoesNotBlockOnSlowClient() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(release);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SseEventStream stream = new SseEventStream(emitter, executor, 2);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                stream.delta("d" + i);
+            }
+            stream.finish("done", "full");
+            // Вызывающий поток (Kafka) не ждал клиента
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+            release.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+            List<String> sent = emitter.sent();
+            // Лишние части отброшены, итог доставлен последним
+            assertThat(sent.size()).isLessThanOrEqualTo(4);
+            assertThat(sent.get(sent.size() - 1)).contains("full");
+            assertThat(sent.get(0)).contains("d0");
+            assertThat(emitter.completed).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void eventsAreSentInOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(0);
+        RecordingEmitter emitter = new RecordingEmitter(release);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SseEventStream stream = new SseEventStream(emitter, executor, 1000);
+            for (int i = 0; i < 200; i++) {
+                stream.delta(i);
+            }
+            stream.finish("done", "end");
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+            List<String> sent = emitter.sent();
+            assertThat(sent).hasSize(201);
+            for (int i = 0; i < 200; i++) {
+                assertThat(sent.get(i)).contains(String.valueOf(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void clientTimeoutCancelsUpstream() {
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        SseEventStream stream = new SseEventStream(emitter, Runnable::run, 10);
+        AtomicInteger cancelled = new AtomicInteger();
+        stream.onClientGone(cancelled::incrementAndGet);
+
+        emitter.timeoutCallback.run();
+        stream.delta("late");
+        stream.finish("done", "late");
+
+        assertThat(cancelled).hasValue(1);
+        assertThat(emitter.sent()).isEmpty();
+    }
+
+    @Test
+    void clientErrorBeforeRegistrationStillCancels() {
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        SseEventStream stream = new SseEventStream(emitter, Runnable::run, 10);
+
+        emitter.errorCallback.accept(new IOException("broken pipe"));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        stream.onClientGone(() -> cancelled.set(true));
+
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void normalCompletionDoesNotCancel() {
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        SseEventStream stream = new SseEventStream(emitter, Runnable::run, 10);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        stream.onClientGone(() -> cancelled.set(true));
+
+        stream.finish("done", "result");
+        emitter.timeoutCallback.run();
+
+        assertThat(cancelled).isFalse();
+        assertThat(emitter.sent()).hasSize(1);
+    }
+}
@@ -0,0 +1,178 @@
+package com.project.me.central_java_service.service;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.model.dto.TextRequestDTO;
+import com.project.me.central_java_service.model.dto.TextResponseDTO;
+import com.project.me.central_java_service.service.ai_pipeline.AiLane;
+import com.project.me.central_java_service.service.ai_pipeline.AiLaneRouter;
+import com.project.me.central_java_service.service.ai_pipeline.AiResultCache;
+import com.project.me.central_java_service.service.ai_pipeline.ClaimCheckStore;
+import com.project.me.central_java_service.service.ai_pipeline.FairDispatchScheduler;
+import com.project.me.central_java_service.service.ai_pipeline.InstanceReplyTopic;
+import com.project.me.central_java_service.service.ai_pipeline.PendingRequestRegistry;
+import com.project.me.central_java_service.service.ai_pipeline.TextChunker;
+import com.project.me.central_java_service.service.ai_pipeline.codec.AiMessageEnvelope;
+import com.project.me.central_java_service.service.ai_pipeline.codec.AiReplyMessage;
+import com.project.me.central_java_service.util.PreMadePrompts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CoreServiceTest {
+    private static final String USER = "user@example.com";
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+    private final AiMessageEnvelope envelope = mock(AiMessageEnvelope.class);
+    private final AiResultCache resultCache = mock(AiResultCache.class);
+    private final PreMadePrompts preMadePrompts = mock(PreMadePrompts.class);
+    private final AiLaneRouter laneRouter = mock(AiLaneRouter.class);
+    private final FairDispatchScheduler fairScheduler = mock(FairDispatchScheduler.class);
+    private final ClaimCheckStore claimCheckStore = mock(ClaimCheckStore.class);
+    private PendingRequestRegistry pendingRequests;
+    private CoreService coreService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        pendingRequests = new PendingRequestRegistry(60, 100, 5, meterRegistry);
+        coreService = new CoreService(kafkaTemplate, envelope, pendingRequests, new InstanceReplyTopic("test", ""), resultCache,
+                new TextChunker(10), preMadePrompts, laneRouter, fairScheduler, claimCheckStore, meterRegistry);
+
+        when(resultCache.key(anyString(), anyString())).thenAnswer(call -> call.getArgument(0) + "|" + call.getArgument(1));
+        when(resultCache.get(anyString())).thenReturn(Optional.empty());
+        when(preMadePrompts.isChunkable(anyString())).thenReturn(true);
+        when(laneRouter.classify(anyString(), anyString())).thenReturn(AiLane.SHORT);
+        when(claimCheckStore.offload(anyString())).thenReturn(Optional.empty());
+        when(envelope.wrap(anyString(), any())).thenAnswer(call -> new ProducerRecord<String, byte[]>(call.getArgument(0), new byte[0]));
+    }
+
+    // Future запросов, отправленных воркеру, в порядке отправки
+    @SuppressWarnings("unchecked")
+    private List<CompletableFuture<TextResponseDTO>> dispatched(int count) {
+        ArgumentCaptor<CompletableFuture<TextResponseDTO>> captor = ArgumentCaptor.forClass(CompletableFuture.class);
+        verify(fairScheduler, times(count)).submit(eq(USER), anyInt(), captor.capture(), any());
+        return captor.getAllValues();
+    }
+
+    @Test
+    void chunkedResultIsJoinedWithoutSeparator() throws Exception {
+        CompletableFuture<TextResponseDTO> result = coreService.processText(new TextRequestDTO("aaaaaa\nbbbbbb\n", "fix"), USER);
+
+        List<CompletableFuture<TextResponseDTO>> parts = dispatched(2);
+        parts.get(0).complete(new TextResponseDTO("AAAAAA\n"));
+        parts.get(1).complete(new TextResponseDTO("BBBBBB\n"));
+
+        assertThat(result.get().result()).isEqualTo("AAAAAA\nBBBBBB\n");
+    }
+
+    @Test
+    void failedChunkFailsTheWholeRequest() {
+        CompletableFuture<TextResponseDTO> result = coreService.processText(new TextRequestDTO("aaaaaa\nbbbbbb\n", "fix"), USER);
+
+        List<CompletableFuture<TextResponseDTO>> parts = dispatched(2);
+        parts.get(0).complete(new TextResponseDTO("AAAAAA\n"));
+        parts.get(1).completeExceptionally(new IllegalStateException("worker failed"));
+
+        assertThatThrownBy(result::get)
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(BaseCoreServiceException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY));
+        // Обработанная часть закэширована и не уйдет к нейросети при повторе
+        verify(resultCache).put(eq("fix|aaaaaa\n"), eq(new TextResponseDTO("AAAAAA\n")));
+    }
+
+    @Test
+    void cancellingStreamReleasesPendingRequest() {
+        CompletableFuture<TextResponseDTO> result = coreService.processTextStream(new TextRequestDTO("text", "fix"), USER, delta -> {
+        });
+        CompletableFuture<TextResponseDTO> request = dispatched(1).get(0);
+        assertThat(pendingRequests.inFlight()).isEqualTo(1);
+
+        result.cancel(false);
+
+        assertThat(request).isCancelled();
+        assertThat(pendingRequests.inFlight()).isZero();
+    }
+
+    @Test
+    void identicalRequestsAreCoalescedPerUserOnly() {
+        CompletableFuture<TextResponseDTO> first = coreService.processText(new TextRequestDTO("text", "fix"), USER);
+        CompletableFuture<TextResponseDTO> repeat = coreService.processText(new TextRequestDTO("text", "fix"), USER);
+        coreService.processText(new TextRequestDTO("text", "fix"), "other@example.com");
+
+        // Повтор того же пользователя присоединился к первому запросу, другой пользователь отправил свой
+        CompletableFuture<TextResponseDTO> sent = dispatched(1).get(0);
+        verify(fairScheduler).submit(eq("other@example.com"), anyInt(), any(), any());
+
+        sent.complete(new TextResponseDTO("done"));
+        assertThat(first).isCompletedWithValue(new TextResponseDTO("done"));
+        assertThat(repeat).isCompletedWithValue(new TextResponseDTO("done"));
+    }
+
+    @Test
+    void fullLaneRejectsRequestAndReleasesPendingSlot() {
+        doThrow(new AiOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, "Сервис перегружен, повторите запрос позже", 5))
+                .when(laneRouter).track(any(), any());
+
+        CompletableFuture<TextResponseDTO> result = coreService.processText(new TextRequestDTO("text", "fix"), USER);
+
+        assertThatThrownBy(result::get)
+                .cause()
+                .isInstanceOfSatisfying(AiOverloadedException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(pendingRequests.inFlight()).isZero();
+        verify(fairScheduler, never()).submit(anyString(), anyInt(), any(), any());
+    }
+
+    private void receiveStoredReply(String requestId) throws Exception {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(InstanceReplyTopic.SHARED_RESPONSE_TOPIC, 0, 0, requestId, new byte[0]);
+        when(envelope.unwrap(record)).thenReturn(new AiReplyMessage(requestId, null, null, 0, null, "ref", "sha"));
+        coreService.listener(record);
+    }
+
+    @Test
+    void foreignStoredReplyIsNotReadOrDeleted() throws Exception {
+        receiveStoredReply("other-instance-request");
+
+        // Текст читает и удаляет только экземпляр, который ждет ответ
+        verify(claimCheckStore, never()).load(anyString(), anyString());
+        verify(claimCheckStore, never()).delete(anyString());
+    }
+
+    @Test
+    void ownStoredReplyIsReadAndDeleted() throws Exception {
+        CompletableFuture<TextResponseDTO> request = pendingRequests.register("own-request");
+        when(claimCheckStore.load("ref", "sha")).thenReturn("large result");
+
+        receiveStoredReply("own-request");
+
+        assertThat(request).isCompletedWithValue(new TextResponseDTO("large result"));
+        verify(claimCheckStore).delete("ref");
+    }
+}
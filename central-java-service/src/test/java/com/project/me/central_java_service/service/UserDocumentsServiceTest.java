@@ -0,0 +1,210 @@
+package com.project.me.central_java_service.service;
+
+import com.project.me.central_java_service.exception.DocumentVersionConflictException;
+import com.project.me.central_java_service.model.dto.DocumentPageDTO;
+import com.project.me.central_java_service.model.dto.DocumentSummaryDTO;
+import com.project.me.central_java_service.model.dto.PatchDocumentDTO;
+import com.project.me.central_java_service.model.entity.Document;
+import com.project.me.central_java_service.repository.DocumentRepository;
+import com.project.me.central_java_service.repository.UserRepository;
+import com.project.me.central_java_service.service.documents.DocumentMigration;
+import com.project.me.central_java_service.service.documents.DocumentTextCodec;
+import com.project.me.central_java_service.service.documents.DocumentWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserDocumentsServiceTest {
+    private static final String USER = "user@example.com";
+    private static final String DOCUMENT = "doc";
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final DocumentWriteBuffer writeBuffer = mock(DocumentWriteBuffer.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDocumentsService service = new UserDocumentsService(userRepository, documentRepository,
+            mongoTemplate, mock(DocumentMigration.class), writeBuffer, mock(UserRevisionService.class),
+            new DocumentTextCodec(new SimpleMeterRegistry(), DocumentTextCodec.NONE, 4096, 3), 100);
+
+    private static Document document(long version, long textVersion, long pendingTextVersion) {
+        Document document = new Document();
+        document.setDocumentId(DOCUMENT);
+        document.setText("stored text");
+        document.setVersion(version);
+        document.setTextVersion(textVersion);
+        document.setPendingTextVersion(pendingTextVersion);
+        return document;
+    }
+
+    private void stored(Document document) {
+        when(mongoTemplate.findOne(any(Query.class), eq(Document.class))).thenReturn(document);
+        when(documentRepository.findByUserEmailAndDocumentId(USER, DOCUMENT)).thenReturn(Optional.of(document));
+    }
+
+    @Test
+    void textNotYetWrittenByAnotherInstanceHasItsOwnVersion() {
+        // Версия 6 принята другим экземпляром, в базе текст версии 5
+        stored(document(6, 5, 6));
+        when(writeBuffer.pendingVersion(USER, DOCUMENT)).thenReturn(Optional.empty());
+
+        assertThat(service.getDocumentVersion(USER, DOCUMENT)).isEqualTo(5);
+        assertThat(service.getDocument(USER, DOCUMENT).getVersion()).isEqualTo(5);
+    }
+
+    @Test
+    void textPendingOnThisInstanceKeepsLatestVersion() {
+        stored(document(6, 5, 6));
+        when(writeBuffer.pendingVersion(USER, DOCUMENT)).thenReturn(Optional.of(6L));
+
+        assertThat(service.getDocumentVersion(USER, DOCUMENT)).isEqualTo(6);
+    }
+
+    @Test
+    void renameAfterWrittenTextIsVisible() {
+        stored(document(7, 6, 6));
+        when(writeBuffer.pendingVersion(USER, DOCUMENT)).thenReturn(Optional.empty());
+
+        assertThat(service.getDocumentVersion(USER, DOCUMENT)).isEqualTo(7);
+    }
+
+    @Test
+    void patchIsRejectedWhileLatestTextIsNotWritten() {
+        stored(document(6, 5, 6));
+
+        assertThatThrownBy(() -> service.patchDocument(new PatchDocumentDTO(DOCUMENT, 6L, List.of()), USER))
+                .isInstanceOfSatisfying(DocumentVersionConflictException.class,
+                        e -> assertThat(e.getHeaders().getFirst(DocumentVersionConflictException.VERSION_HEADER)).isEqualTo("5"));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Document.class));
+    }
+
+    // Документы списка в памяти: find выполняет фильтр, сортировку и лимит запроса так же, как MongoDB
+    // для используемых в списке операторов (равенство, $lt, $or, регулярное выражение)
+    @SuppressWarnings("unchecked")
+    private void listed(Document... documents) {
+        when(userRepository.existsByUserEmail(USER)).thenReturn(true);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class))).thenAnswer(call -> {
+            Query query = call.getArgument(0);
+            Comparator<Document> order = null;
+            for (Map.Entry<String, Object> sort : query.getSortObject().entrySet()) {
+                Comparator<Document> byField = Comparator.comparing(document -> (Comparable<Object>) field(document, sort.getKey()));
+                byField = ((Number) sort.getValue()).intValue() < 0 ? byField.reversed() : byField;
+                order = order == null ? byField : order.thenComparing(byField);
+            }
+            return Arrays.stream(documents)
+                    .filter(document -> matches(document, query.getQueryObject()))
+                    .sorted(order)
+                    .limit(query.getLimit())
+                    .toList();
+        });
+    }
+
+    private static Object field(Document document, String name) {
+        return switch (name) {
+            case "_id" -> document.getDocumentId();
+            case "userEmail" -> document.getUserEmail();
+            case "documentName" -> document.getDocumentName();
+            case "updatedAt" -> document.getUpdatedAt();
+            default -> throw new IllegalArgumentException("Поле не поддерживается: " + name);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(Document document, org.bson.Document filter) {
+        for (Map.Entry<String, Object> condition : filter.entrySet()) {
+            Object expected = condition.getValue();
+            boolean matched;
+            if (condition.getKey().equals("$or")) {
+                matched = ((List<org.bson.Document>) expected).stream().anyMatch(branch -> matches(document, branch));
+            } else if (expected instanceof Pattern pattern) {
+                matched = pattern.matcher((String) field(document, condition.getKey())).find();
+            } else if (expected instanceof org.bson.Document operator && operator.containsKey("$lt")) {
+                matched = ((Comparable<Object>) field(document, condition.getKey())).compareTo(operator.get("$lt")) < 0;
+            } else {
+                matched = expected.equals(field(document, condition.getKey()));
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Document listedDocument(String id, String name, LocalDateTime updatedAt) {
+        Document document = new Document();
+        document.setDocumentId(id);
+        document.setUserEmail(USER);
+        document.setDocumentName(name);
+        document.setUpdatedAt(updatedAt);
+        return document;
+    }
+
+    // Все страницы списка по курсору
+    private List<List<String>> pages(int limit, String namePrefix) {
+        List<List<String>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            DocumentPageDTO page = service.getDocumentsPage(USER, cursor, limit, namePrefix);
+            pages.add(page.items().stream().map(DocumentSummaryDTO::documentId).toList());
+            cursor = page.nextCursor();
+        } while (cursor != null && pages.size() < 20);
+        return pages;
+    }
+
+    @Test
+    void pagesWithEqualUpdatedAtAreSplitById() {
+        LocalDateTime time = LocalDateTime.of(2026, 1, 1, 12, 0);
+        Document other = listedDocument("o1", "чужой", time);
+        other.setUserEmail("other@example.com");
+        listed(
+                listedDocument("d2", "b", time), listedDocument("n1", "новый", time.plusSeconds(1)),
+                listedDocument("d5", "e", time), listedDocument("d1", "a", time), other,
+                listedDocument("s1", "старый", time.minusSeconds(1)), listedDocument("d4", "d", time),
+                listedDocument("d3", "c", time)
+        );
+
+        // Границы страниц проходят внутри группы с одинаковым updatedAt: ни один документ не пропущен и не повторен
+        assertThat(pages(2, null)).containsExactly(
+                List.of("n1", "d5"), List.of("d4", "d3"), List.of("d2", "d1"), List.of("s1"));
+        assertThat(pages(3, null)).containsExactly(
+                List.of("n1", "d5", "d4"), List.of("d3", "d2", "d1"), List.of("s1"));
+        // Страница ровно по числу документов: курсора на пустую страницу нет
+        assertThat(pages(7, null)).containsExactly(List.of("n1", "d5", "d4", "d3", "d2", "d1", "s1"));
+    }
+
+    @Test
+    void namePrefixIsMatchedLiterally() {
+        LocalDateTime time = LocalDateTime.of(2026, 1, 1, 12, 0);
+        listed(
+                listedDocument("d1", "a.b(1)", time), listedDocument("d2", "axb(2)", time),
+                listedDocument("d3", "a.b(3)", time), listedDocument("d4", "x a.b(", time),
+                listedDocument("d5", "A.B(5)", time), listedDocument("d6", ".*[", time)
+        );
+
+        // Точка и скобка в префиксе - обычные символы, префикс ищется только с начала имени
+        assertThat(pages(10, "a.b(")).containsExactly(List.of("d3", "d1"));
+        assertThat(pages(1, "a.b(")).containsExactly(List.of("d3"), List.of("d1"));
+        assertThat(pages(10, ".*[")).containsExactly(List.of("d6"));
+        assertThat(pages(10, "\\E.*")).containsExactly(List.of());
+        assertThat(pages(10, "")).singleElement().asList().hasSize(6);
+    }
+}
@@ -0,0 +1,71 @@
+package com.project.me.central_java_service.service;
+
+import com.project.me.central_java_service.model.entity.UserRevision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserRevisionServiceTest {
+    private static final String USER = "user@example.com";
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final UserRevisionService service = new UserRevisionService(mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        UserRevision revision = new UserRevision();
+        revision.setDocuments(4);
+        when(mongoTemplate.findOne(any(Query.class), eq(UserRevision.class))).thenReturn(revision);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(UserRevision.class))).thenReturn(bulk);
+    }
+
+    @Test
+    void eTagDependsOnRevisionAndParams() {
+        assertThat(service.currentETag(USER, UserRevisionService.DOCUMENTS, "page", 20))
+                .contains(UserRevisionService.eTag(4, "page", 20));
+        assertThat(UserRevisionService.eTag(4, "page", 20))
+                .isNotEqualTo(UserRevisionService.eTag(5, "page", 20))
+                .isNotEqualTo(UserRevisionService.eTag(4, "page", 50))
+                .startsWith("W/\"4-");
+    }
+
+    @Test
+    void failedIncrementWithholdsETagUntilRetried() {
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+
+        service.increment(List.of(USER), UserRevisionService.DOCUMENTS);
+
+        // Ревизия не увеличена: 304 по ней вернул бы устаревший список
+        assertThat(service.currentETag(USER, UserRevisionService.DOCUMENTS, "all")).isEmpty();
+        assertThat(service.currentETag(USER, UserRevisionService.HISTORY, "all")).isPresent();
+
+        service.retryFailed();
+
+        assertThat(service.currentETag(USER, UserRevisionService.DOCUMENTS, "all")).isPresent();
+    }
+
+    @Test
+    void failedRetryKeepsETagWithheld() {
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), eq(UserRevision.class)))
+                .thenThrow(new DataAccessResourceFailureException("still down"));
+
+        service.increment(USER, UserRevisionService.HISTORY);
+        service.retryFailed();
+
+        assertThat(service.currentETag(USER, UserRevisionService.HISTORY)).isEmpty();
+    }
+}
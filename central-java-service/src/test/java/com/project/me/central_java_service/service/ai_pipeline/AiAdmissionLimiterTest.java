@@ -0,0 +1,128 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiAdmissionLimiterTest {
+
+    @Test
+    void rejectsOverLimitWithRetryAfter() {
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 2, false, 1, 7);
+        limiter.execute(CompletableFuture::new);
+        limiter.execute(CompletableFuture::new);
+
+        assertThatThrownBy(() -> limiter.execute(CompletableFuture::new))
+                .isInstanceOfSatisfying(AiOverloadedException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+                });
+    }
+
+    @Test
+    void slotIsReleasedOnCompletion() {
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 1, false, 1, 5);
+        CompletableFuture<String> first = limiter.execute(CompletableFuture::new);
+
+        first.complete("done");
+
+        CompletableFuture<String> second = limiter.execute(CompletableFuture::new);
+        second.completeExceptionally(new IllegalStateException());
+        assertThat(limiter.execute(() -> CompletableFuture.completedFuture("ok"))).isCompletedWithValue("ok");
+    }
+
+    @Test
+    void slotIsReleasedWhenActionThrows() {
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 1, false, 1, 5);
+
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new IllegalStateException("queue full");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(limiter.execute(() -> CompletableFuture.completedFuture("ok"))).isCompletedWithValue("ok");
+    }
+
+    @Test
+    void adaptiveLimitGrowsUnderSteadyLatency() {
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 50, true, 2, 5);
+        assertThat(limiter.limit()).isEqualTo(2);
+
+        // Сервис загружен полностью, задержка не растет - лимит должен расти
+        Deque<CompletableFuture<String>> running = new ArrayDeque<>();
+        for (int i = 0; i < 200; i++) {
+            while (running.size() < limiter.limit()) {
+                running.add(limiter.execute(CompletableFuture::new));
+            }
+            running.poll().complete("ok");
+        }
+
+        assertThat(limiter.limit()).isGreaterThan(2).isLessThanOrEqualTo(50);
+    }
+
+    // Поднять адаптивный лимит до максимума: полная загрузка, каждый запрос выполняется ровно 1 мс
+    private static void grow(AiAdmissionLimiter limiter, AtomicLong clock) {
+        Deque<CompletableFuture<String>> running = new ArrayDeque<>();
+        for (int i = 0; i < 1000 && limiter.limit() < 50; i++) {
+            while (running.size() < limiter.limit()) {
+                running.add(limiter.execute(CompletableFuture::new));
+            }
+            clock.addAndGet(1_000_000);
+            running.poll().complete("ok");
+        }
+        assertThat(limiter.limit()).isEqualTo(50);
+        running.forEach(future -> future.completeExceptionally(new IllegalStateException("остановлен")));
+    }
+
+    @Test
+    void timeoutsAndOverloadDecreaseLimitMultiplicatively() {
+        AtomicLong clock = new AtomicLong();
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 50, true, 2, 5, clock::get);
+        grow(limiter, clock);
+
+        limiter.execute(CompletableFuture::new).completeExceptionally(new TimeoutException());
+        assertThat(limiter.limit()).isEqualTo(45);
+
+        limiter.execute(CompletableFuture::new).completeExceptionally(new CompletionException(
+                new AiOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, "Сервис перегружен, повторите запрос позже", 5)));
+        assertThat(limiter.limit()).isEqualTo(40);
+
+        // Серия таймаутов опускает лимит до минимума, но не ниже
+        for (int i = 0; i < 100; i++) {
+            limiter.execute(CompletableFuture::new).completeExceptionally(new TimeoutException());
+        }
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void workerErrorsAndCancellationDoNotDecreaseLimit() {
+        AtomicLong clock = new AtomicLong();
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 50, true, 2, 5, clock::get);
+        grow(limiter, clock);
+
+        limiter.execute(CompletableFuture::new).completeExceptionally(new IllegalStateException("ошибка нейросети"));
+        limiter.execute(CompletableFuture::new).cancel(false);
+
+        assertThat(limiter.limit()).isEqualTo(50);
+    }
+
+    @Test
+    void fixedLimitIgnoresTimeouts() {
+        AiAdmissionLimiter limiter = new AiAdmissionLimiter(new SimpleMeterRegistry(), 10, false, 2, 5);
+
+        limiter.execute(CompletableFuture::new).completeExceptionally(new TimeoutException());
+
+        assertThat(limiter.limit()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,122 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import com.project.me.central_java_service.util.PreMadePrompts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiLaneRouterTest {
+    private static final int MAX_INPUT = 4000;
+    private static final int MAX_OUTPUT = 1000;
+
+    private final PreMadePrompts prompts = new PreMadePrompts();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AiLaneRouter router = new AiLaneRouter(prompts, registry, MAX_INPUT, MAX_OUTPUT, 2, 1, 5);
+
+    // Текст инструкции по названию опции
+    private String instruction(String option) {
+        return prompts.getOptions().entrySet().stream()
+                .filter(entry -> entry.getValue().equals(option))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private double depth(AiLane lane) {
+        return registry.get("ai.lane.queue_depth").tag("lane", lane.name().toLowerCase()).gauge().value();
+    }
+
+    @Test
+    void textLengthBoundary() {
+        // Ответ опции примерно той же длины, что и текст
+        String fixErrors = instruction("Исправить ошибки");
+
+        assertThat(router.classify(fixErrors, "а".repeat(MAX_OUTPUT))).isEqualTo(AiLane.SHORT);
+        assertThat(router.classify(fixErrors, "а".repeat(MAX_OUTPUT + 1))).isEqualTo(AiLane.LONG);
+    }
+
+    @Test
+    void inputLengthBoundaryWithFixedOutput() {
+        // Ответ фиксированного размера: решает только длина текста
+        String language = instruction("Определить язык");
+
+        assertThat(router.classify(language, "а".repeat(MAX_INPUT))).isEqualTo(AiLane.SHORT);
+        assertThat(router.classify(language, "а".repeat(MAX_INPUT + 1))).isEqualTo(AiLane.LONG);
+    }
+
+    @Test
+    void expectedOutputBoundary() {
+        // Ответ в 0.3 длины текста: 3333 * 0.3 = 999, 3334 * 0.3 = 1000, 3337 * 0.3 = 1001
+        String shorten = instruction("Сделать короче");
+        assertThat(router.classify(shorten, "а".repeat(3334))).isEqualTo(AiLane.SHORT);
+        assertThat(router.classify(shorten, "а".repeat(3337))).isEqualTo(AiLane.LONG);
+
+        // Ответ вдвое длиннее текста
+        String expand = instruction("Развить мысль");
+        assertThat(router.classify(expand, "а".repeat(MAX_OUTPUT / 2))).isEqualTo(AiLane.SHORT);
+        assertThat(router.classify(expand, "а".repeat(MAX_OUTPUT / 2 + 1))).isEqualTo(AiLane.LONG);
+    }
+
+    @Test
+    void unknownInstructionExpectsOutputOfTextLength() {
+        assertThat(router.classify("Своя инструкция", "а".repeat(MAX_OUTPUT))).isEqualTo(AiLane.SHORT);
+        assertThat(router.classify("Своя инструкция", "а".repeat(MAX_OUTPUT + 1))).isEqualTo(AiLane.LONG);
+        assertThat(router.classify("Своя инструкция", "")).isEqualTo(AiLane.SHORT);
+    }
+
+    @Test
+    void queueDepthFollowsCompletion() {
+        CompletableFuture<String> succeeded = new CompletableFuture<>();
+        CompletableFuture<String> failed = new CompletableFuture<>();
+
+        router.track(AiLane.SHORT, succeeded);
+        router.track(AiLane.SHORT, failed);
+        assertThat(depth(AiLane.SHORT)).isEqualTo(2);
+        assertThat(depth(AiLane.LONG)).isZero();
+
+        succeeded.complete("ok");
+        assertThat(depth(AiLane.SHORT)).isEqualTo(1);
+        failed.completeExceptionally(new IllegalStateException("ошибка"));
+        assertThat(depth(AiLane.SHORT)).isZero();
+        assertThat(registry.get("ai.lane.latency").tag("lane", "short").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelledRequestLeavesQueue() {
+        CompletableFuture<String> cancelled = new CompletableFuture<>();
+        router.track(AiLane.LONG, cancelled);
+        assertThat(depth(AiLane.LONG)).isEqualTo(1);
+
+        cancelled.cancel(false);
+
+        assertThat(depth(AiLane.LONG)).isZero();
+    }
+
+    @Test
+    void fullLaneIsRejectedWithoutAffectingOtherLane() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        router.track(AiLane.LONG, first);
+
+        assertThatThrownBy(() -> router.track(AiLane.LONG, new CompletableFuture<>()))
+                .isInstanceOfSatisfying(AiOverloadedException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(depth(AiLane.LONG)).isEqualTo(1);
+        assertThat(registry.get("ai.lane.rejected").tag("lane", "long").counter().count()).isEqualTo(1);
+
+        // Короткая полоса ограничена отдельно
+        router.track(AiLane.SHORT, new CompletableFuture<>());
+        router.track(AiLane.SHORT, new CompletableFuture<>());
+
+        // Место освобождается по завершении запроса
+        first.complete("ok");
+        router.track(AiLane.LONG, new CompletableFuture<>());
+        assertThat(depth(AiLane.LONG)).isEqualTo(1);
+    }
+}
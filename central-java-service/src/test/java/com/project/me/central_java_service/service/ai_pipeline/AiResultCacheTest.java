@@ -0,0 +1,157 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.model.dto.TextResponseDTO;
+import com.project.me.central_java_service.model.entity.AiResultCacheEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AiResultCacheTest {
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private AiResultCache cache(long localMaxBytes) {
+        return cache(Runnable::run, localMaxBytes);
+    }
+
+    private AiResultCache cache(Executor writeExecutor, long localMaxBytes) {
+        return new AiResultCache(mongoTemplate, writeExecutor, new SimpleMeterRegistry(), true, localMaxBytes, Duration.ofDays(7), "model");
+    }
+
+    @Test
+    void mongoOutageOnReadIsAMiss() {
+        when(mongoTemplate.findById(anyString(), eq(AiResultCacheEntry.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThat(cache(1 << 20).get("key")).isEmpty();
+    }
+
+    @Test
+    void mongoOutageOnWriteKeepsLocalCopy() {
+        when(mongoTemplate.save(any(AiResultCacheEntry.class))).thenThrow(new DataAccessResourceFailureException("down"));
+        AiResultCache cache = cache(1 << 20);
+
+        cache.put("key", new TextResponseDTO("result"));
+
+        assertThat(cache.get("key")).contains(new TextResponseDTO("result"));
+        verify(mongoTemplate, never()).findById(anyString(), eq(AiResultCacheEntry.class));
+    }
+
+    @Test
+    void persistentHitIsServed() {
+        when(mongoTemplate.findById("key", AiResultCacheEntry.class))
+                .thenReturn(new AiResultCacheEntry("key", "stored", new Date(), Date.from(Instant.now().plusSeconds(60))));
+
+        assertThat(cache(1 << 20).get("key")).contains(new TextResponseDTO("stored"));
+    }
+
+    @Test
+    void expiredEntryIsAMiss() {
+        Date created = Date.from(Instant.now().minus(Duration.ofDays(1)));
+        when(mongoTemplate.findById("new", AiResultCacheEntry.class))
+                .thenReturn(new AiResultCacheEntry("new", "stored", created, Date.from(Instant.now().minusSeconds(1))));
+        // Запись прежней схемы: срок считается от создания
+        when(mongoTemplate.findById("legacy", AiResultCacheEntry.class))
+                .thenReturn(new AiResultCacheEntry("legacy", "stored", Date.from(Instant.now().minus(Duration.ofDays(8))), null));
+
+        AiResultCache cache = cache(1 << 20);
+
+        assertThat(cache.get("new")).isEmpty();
+        assertThat(cache.get("legacy")).isEmpty();
+    }
+
+    @Test
+    void persistentWriteCarriesExpiry() {
+        cache(1 << 20).put("key", new TextResponseDTO("result"));
+
+        ArgumentCaptor<AiResultCacheEntry> saved = ArgumentCaptor.forClass(AiResultCacheEntry.class);
+        verify(mongoTemplate).save(saved.capture());
+        assertThat(Duration.between(saved.getValue().getCreatedAt().toInstant(), saved.getValue().getExpireAt().toInstant()))
+                .isEqualTo(Duration.ofDays(7));
+    }
+
+    @Test
+    void persistentWriteRunsOffCallerThread() {
+        List<Runnable> queued = new ArrayList<>();
+        AiResultCache cache = cache(queued::add, 1 << 20);
+
+        cache.put("key", new TextResponseDTO("result"));
+
+        // Поток Kafka не ждал MongoDB, результат уже доступен из памяти
+        verify(mongoTemplate, never()).save(any(AiResultCacheEntry.class));
+        assertThat(cache.get("key")).contains(new TextResponseDTO("result"));
+        queued.forEach(Runnable::run);
+        verify(mongoTemplate).save(any(AiResultCacheEntry.class));
+    }
+
+    @Test
+    void saturatedWriterDropsPersistentWrite() {
+        AiResultCache cache = cache(task -> {
+            throw new RejectedExecutionException("full");
+        }, 1 << 20);
+
+        cache.put("key", new TextResponseDTO("result"));
+
+        assertThat(cache.get("key")).contains(new TextResponseDTO("result"));
+        verify(mongoTemplate, never()).save(any(AiResultCacheEntry.class));
+    }
+
+    @Test
+    void ttlIndexIsOnExpireAtAndLegacyIndexIsDropped() {
+        IndexOperations indexOps = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(AiResultCacheEntry.class)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(IndexField.create("createdAt", Sort.Direction.ASC)), "createdAt_1", false, false, "")
+        ));
+
+        cache(1 << 20).ensureIndexes();
+
+        verify(indexOps).dropIndex("createdAt_1");
+        ArgumentCaptor<IndexDefinition> index = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexOps).ensureIndex(index.capture());
+        assertThat(index.getValue().getIndexKeys()).containsKey("expireAt");
+        assertThat(index.getValue().getIndexOptions().get("expireAfterSeconds")).isEqualTo(0L);
+    }
+
+    @Test
+    void localTierIsBoundedByTextSize() {
+        // Бюджет на ~4 текста по 100 000 символов
+        AiResultCache cache = cache(4 * 200_256L);
+        String large = "x".repeat(100_000);
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, new TextResponseDTO(large + i));
+        }
+
+        assertThat(cache.localWeightedSize()).isLessThanOrEqualTo(4 * 200_256L);
+    }
+
+    @Test
+    void keyDependsOnInstructionAndText() {
+        AiResultCache cache = cache(1 << 20);
+
+        assertThat(cache.key("a", "b")).isNotEqualTo(cache.key("ab", "")).isEqualTo(cache.key("a", "b"));
+    }
+}
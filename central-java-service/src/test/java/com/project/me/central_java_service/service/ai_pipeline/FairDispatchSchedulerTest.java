@@ -0,0 +1,151 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FairDispatchSchedulerTest {
+
+    // Исполнитель, который копит задачи до явного запуска - как отдельный поток отправки
+    private static class ManualExecutor implements Executor {
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        private void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private FairDispatchScheduler scheduler(Executor executor, int slots, int slotsPerUser, int maxQueued, int quantum) {
+        return new FairDispatchScheduler(new SimpleMeterRegistry(), executor, slots, slotsPerUser, maxQueued, quantum, 5);
+    }
+
+    @Test
+    void lightUserIsNotStarvedByHeavyUser() {
+        ManualExecutor executor = new ManualExecutor();
+        FairDispatchScheduler scheduler = scheduler(executor, 1, 1, 100, 1000);
+        List<String> sent = new ArrayList<>();
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+
+        for (int i = 0; i < 10; i++) {
+            String name = "heavy-" + i;
+            CompletableFuture<String> future = new CompletableFuture<>();
+            futures.put(name, future);
+            scheduler.submit("heavy", 1000, future, () -> sent.add(name));
+        }
+        for (int i = 0; i < 2; i++) {
+            String name = "light-" + i;
+            CompletableFuture<String> future = new CompletableFuture<>();
+            futures.put(name, future);
+            scheduler.submit("light", 100, future, () -> sent.add(name));
+        }
+
+        // Воркер обрабатывает по одному запросу за раз
+        executor.runAll();
+        while (sent.size() < futures.size()) {
+            String last = sent.get(sent.size() - 1);
+            futures.get(last).complete("ok");
+            executor.runAll();
+        }
+
+        // Легкий пользователь получает место через один запрос тяжелого, а не после всех десяти
+        assertThat(sent.indexOf("light-0")).isLessThanOrEqualTo(2);
+        assertThat(sent.indexOf("light-1")).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void sendRunsOnDispatcherNotOnCompletingThread() {
+        ManualExecutor executor = new ManualExecutor();
+        FairDispatchScheduler scheduler = scheduler(executor, 1, 4, 100, 1000);
+        List<String> sent = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        scheduler.submit("user", 10, first, () -> sent.add("first"));
+        scheduler.submit("user", 10, new CompletableFuture<>(), () -> sent.add("second"));
+        assertThat(sent).isEmpty();
+
+        executor.runAll();
+        assertThat(sent).containsExactly("first");
+
+        // Ответ пришел в потоке Kafka: место освобождается, но отправка ждет поток отправки
+        first.complete("ok");
+        assertThat(sent).containsExactly("first");
+
+        executor.runAll();
+        assertThat(sent).containsExactly("first", "second");
+    }
+
+    @Test
+    void perUserSlotLimitLeavesRoomForOthers() {
+        FairDispatchScheduler scheduler = scheduler(Runnable::run, 10, 2, 100, 1000);
+        List<String> sent = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("heavy", 10, new CompletableFuture<>(), () -> sent.add("heavy"));
+        }
+        scheduler.submit("light", 10, new CompletableFuture<>(), () -> sent.add("light"));
+
+        assertThat(sent).containsExactly("heavy", "heavy", "light");
+    }
+
+    @Test
+    void fullUserQueueIsRejected() {
+        FairDispatchScheduler scheduler = scheduler(new ManualExecutor(), 1, 1, 2, 1000);
+        scheduler.submit("user", 10, new CompletableFuture<>(), () -> {
+        });
+        scheduler.submit("user", 10, new CompletableFuture<>(), () -> {
+        });
+
+        assertThatThrownBy(() -> scheduler.submit("user", 10, new CompletableFuture<>(), () -> {
+        })).isInstanceOfSatisfying(AiOverloadedException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+    }
+
+    @Test
+    void requestCompletedWhileQueuedIsNotSent() {
+        ManualExecutor executor = new ManualExecutor();
+        FairDispatchScheduler scheduler = scheduler(executor, 1, 1, 10, 1000);
+        List<String> sent = new ArrayList<>();
+        CompletableFuture<String> expired = new CompletableFuture<>();
+        scheduler.submit("user", 10, expired, () -> sent.add("expired"));
+
+        expired.completeExceptionally(new IllegalStateException("ttl"));
+        executor.runAll();
+
+        assertThat(sent).isEmpty();
+    }
+
+    @Test
+    void sendFailureCompletesRequestAndFreesSlot() {
+        FairDispatchScheduler scheduler = scheduler(Runnable::run, 1, 1, 10, 1000);
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        List<String> sent = new ArrayList<>();
+
+        scheduler.submit("user", 10, failing, () -> {
+            throw new IllegalStateException("kafka down");
+        });
+        scheduler.submit("user", 10, new CompletableFuture<>(), () -> sent.add("next"));
+
+        assertThat(failing).isCompletedExceptionally();
+        assertThat(sent).containsExactly("next");
+    }
+}
@@ -0,0 +1,91 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.DeleteConsumerGroupsResult;
+import org.apache.kafka.clients.admin.DeleteTopicsResult;
+import org.apache.kafka.clients.admin.DescribeConsumerGroupsResult;
+import org.apache.kafka.clients.admin.ListTopicsResult;
+import org.apache.kafka.clients.admin.MemberAssignment;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.common.ConsumerGroupState;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InstanceReplyTopicJanitorTest {
+    private static final String OWN = "text-processing-response.own";
+    private static final String LIVE = "text-processing-response.live";
+    private static final String GONE = "text-processing-response.gone";
+
+    private final Admin admin = mock(Admin.class);
+    private final InstanceReplyTopicJanitor janitor =
+            new InstanceReplyTopicJanitor(mock(KafkaAdmin.class), new InstanceReplyTopic("own", ""), true);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ListTopicsResult topics = mock(ListTopicsResult.class);
+        when(topics.names()).thenReturn(KafkaFuture.completedFuture(
+                Set.of(OWN, LIVE, GONE, "text-processing-response", "new-user")));
+        when(admin.listTopics()).thenReturn(topics);
+
+        when(admin.describeConsumerGroups(anyCollection())).thenAnswer(invocation -> {
+            Map<String, ConsumerGroupDescription> groups = new HashMap<>();
+            for (String group : (Collection<String>) invocation.getArgument(0)) {
+                boolean live = group.equals("core-response-live");
+                List<MemberDescription> members = live
+                        ? List.of(new MemberDescription("m", "c", "h", new MemberAssignment(Set.of())))
+                        : List.of();
+                groups.put(group, new ConsumerGroupDescription(group, false, members, "range",
+                        live ? ConsumerGroupState.STABLE : ConsumerGroupState.EMPTY, Node.noNode()));
+            }
+            DescribeConsumerGroupsResult result = mock(DescribeConsumerGroupsResult.class);
+            when(result.all()).thenReturn(KafkaFuture.completedFuture(groups));
+            return result;
+        });
+
+        DeleteTopicsResult deleteTopics = mock(DeleteTopicsResult.class);
+        when(deleteTopics.all()).thenReturn(KafkaFuture.completedFuture(null));
+        when(admin.deleteTopics(anyCollection())).thenReturn(deleteTopics);
+        DeleteConsumerGroupsResult deleteGroups = mock(DeleteConsumerGroupsResult.class);
+        when(deleteGroups.deletedGroups()).thenReturn(Map.of("core-response-gone", KafkaFuture.completedFuture(null)));
+        when(admin.deleteConsumerGroups(anyCollection())).thenReturn(deleteGroups);
+    }
+
+    @Test
+    void idleTopicIsDeletedOnSecondSweepOnly() throws Exception {
+        janitor.cleanUp(admin);
+        verify(admin, never()).deleteTopics(anyCollection());
+
+        janitor.cleanUp(admin);
+        verify(admin).deleteTopics(Set.of(GONE));
+        verify(admin).deleteConsumerGroups(List.of("core-response-gone"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ownAndSharedTopicsAreNeverChecked() throws Exception {
+        janitor.cleanUp(admin);
+
+        ArgumentCaptor<Collection<String>> groups = ArgumentCaptor.forClass(Collection.class);
+        verify(admin).describeConsumerGroups(groups.capture());
+        assertThat(groups.getValue()).containsExactlyInAnyOrder("core-response-live", "core-response-gone");
+    }
+}
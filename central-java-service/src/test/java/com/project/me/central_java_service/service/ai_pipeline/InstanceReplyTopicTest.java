@@ -0,0 +1,33 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstanceReplyTopicTest {
+
+    @Test
+    void configuredIdWinsOverHostname() {
+        InstanceReplyTopic topic = new InstanceReplyTopic("core-1", "pod-abc");
+
+        assertThat(topic.getName()).isEqualTo("text-processing-response.core-1");
+        assertThat(topic.getGroupId()).isEqualTo("core-response-core-1");
+    }
+
+    @Test
+    void hostnameIsUsedAndSanitized() {
+        InstanceReplyTopic topic = new InstanceReplyTopic("", "pod:abc/1");
+
+        assertThat(topic.getInstanceId()).isEqualTo("pod-abc-1");
+        assertThat(InstanceReplyTopic.groupOf(topic.getName())).isEqualTo(topic.getGroupId());
+    }
+
+    @Test
+    void instancesWithoutIdDoNotShareTopic() {
+        InstanceReplyTopic first = new InstanceReplyTopic("", "");
+        InstanceReplyTopic second = new InstanceReplyTopic(" ", "");
+
+        assertThat(first.getName()).startsWith("text-processing-response.central-").isNotEqualTo(second.getName());
+        assertThat(first.getGroupId()).isNotEqualTo(second.getGroupId());
+    }
+}
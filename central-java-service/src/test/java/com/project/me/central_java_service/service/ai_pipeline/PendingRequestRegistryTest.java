@@ -0,0 +1,84 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import com.project.me.central_java_service.exception.AiOverloadedException;
+import com.project.me.central_java_service.model.dto.TextResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PendingRequestRegistryTest {
+
+    private PendingRequestRegistry registry(long ttlSeconds, int capacity) {
+        return new PendingRequestRegistry(ttlSeconds, capacity, 5, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void completedRequestIsRemovedImmediately() throws Exception {
+        PendingRequestRegistry registry = registry(60, 10);
+        CompletableFuture<TextResponseDTO> first = registry.register("a");
+        registry.register("b");
+
+        // Запрос за первым в очереди завершается раньше - он не должен ждать истечения срока головы
+        assertThat(registry.complete("b", new TextResponseDTO("ok"))).isTrue();
+        assertThat(registry.trackedCount()).isEqualTo(1);
+        assertThat(registry.inFlight()).isEqualTo(1);
+
+        first.complete(new TextResponseDTO("external"));
+        assertThat(registry.trackedCount()).isZero();
+        assertThat(registry.inFlight()).isZero();
+        assertThat(registry.oldestAgeSeconds()).isZero();
+        assertThat(registry.complete("a", new TextResponseDTO("late"))).isFalse();
+    }
+
+    @Test
+    void expiredRequestFailsWithTimeout() {
+        PendingRequestRegistry registry = registry(0, 10);
+        CompletableFuture<TextResponseDTO> future = registry.register("a");
+
+        registry.evictExpired();
+
+        assertThat(future).isCompletedExceptionally();
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(registry.trackedCount()).isZero();
+        assertThat(registry.inFlight()).isZero();
+    }
+
+    @Test
+    void sweepStopsAtFirstLiveRequest() {
+        PendingRequestRegistry registry = registry(60, 10);
+        CompletableFuture<TextResponseDTO> future = registry.register("a");
+
+        registry.evictExpired();
+
+        assertThat(future).isNotDone();
+        assertThat(registry.oldestAgeSeconds()).isGreaterThanOrEqualTo(0).isLessThan(60);
+    }
+
+    @Test
+    void rejectsOverCapacity() {
+        PendingRequestRegistry registry = registry(60, 1);
+        registry.register("a");
+
+        assertThatThrownBy(() -> registry.register("b")).isInstanceOf(AiOverloadedException.class);
+        assertThat(registry.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void partialsAreDeliveredInOrderOnly() {
+        PendingRequestRegistry registry = registry(60, 10);
+        StringBuilder received = new StringBuilder();
+        registry.register("a", received::append);
+
+        assertThat(registry.publishPartial("a", 0, "x")).isTrue();
+        assertThat(registry.publishPartial("a", 0, "dup")).isFalse();
+        assertThat(registry.publishPartial("a", 2, "z")).isTrue();
+        assertThat(registry.publishPartial("a", 1, "late")).isFalse();
+        assertThat(received).hasToString("xz");
+    }
+}
@@ -0,0 +1,43 @@
+package com.project.me.central_java_service.service.ai_pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextChunkerTest {
+    private final TextChunker chunker = new TextChunker(10);
+
+    @Test
+    void splitsOnParagraphBoundariesWithoutLosingText() {
+        String text = "<p>first</p><p>second</p>\nthird line\n<p>fourth</p>";
+
+        List<String> chunks = chunker.split(text);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(String.join("", chunks)).isEqualTo(text);
+        assertThat(chunks.get(0)).endsWith("</p>");
+    }
+
+    @Test
+    void longParagraphIsKeptWhole() {
+        String text = "x".repeat(30) + "\nshort";
+
+        assertThat(chunker.split(text)).containsExactly("x".repeat(30) + "\n", "short");
+    }
+
+    @Test
+    void joinAddsNoSeparator() {
+        List<String> chunks = List.of("<p>a</p>", "<p>b</p>");
+
+        assertThat(chunker.join(chunks, List.of("<p>A</p>", "<p>B</p>"))).isEqualTo("<p>A</p><p>B</p>");
+    }
+
+    @Test
+    void joinRestoresDroppedTrailingNewline() {
+        List<String> chunks = List.of("one\n", "two\n", "three");
+
+        assertThat(chunker.join(chunks, List.of("ONE", "TWO\n", "THREE"))).isEqualTo("ONE\nTWO\nTHREE");
+    }
+}
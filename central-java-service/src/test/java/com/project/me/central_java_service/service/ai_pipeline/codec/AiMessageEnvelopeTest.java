@@ -0,0 +1,173 @@
+package com.project.me.central_java_service.service.ai_pipeline.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiMessageEnvelopeTest {
+
+    private AiMessageEnvelope envelope(String codec, String compression) {
+        return new AiMessageEnvelope(new SimpleMeterRegistry(), codec, compression, 1024, 64 * 1024);
+    }
+
+    private static ConsumerRecord<String, byte[]> compressedReply(byte[] payload, String compression) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("topic", 0, 0, "id", payload);
+        record.headers().add(AiMessageEnvelope.COMPRESSION_HEADER, compression.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private static String header(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] reply(JsonFactory factory, String requestId, String processedText) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("requestId", requestId);
+            generator.writeStringField("processedText", processedText);
+            generator.writeStringField("unknown", "skipped");
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void smallRequestIsNotCompressed() throws IOException {
+        ProducerRecord<String, byte[]> record = envelope("json", "zstd")
+                .wrap("topic", new AiRequestMessage("id", "fix", "short text", false));
+
+        assertThat(header(record.headers(), AiMessageEnvelope.COMPRESSION_HEADER)).isEqualTo("none");
+        assertThat(header(record.headers(), AiMessageEnvelope.CODEC_HEADER)).isEqualTo("json");
+        assertThat(new String(record.value(), StandardCharsets.UTF_8)).contains("\"text\":\"short text\"");
+        assertThat(record.key()).isEqualTo("id");
+    }
+
+    @Test
+    void largeRequestIsCompressedWhenEnabled() throws IOException {
+        String text = "Повторяющийся текст документа. ".repeat(2000);
+        ProducerRecord<String, byte[]> record = envelope("cbor", "zstd")
+                .wrap("topic", new AiRequestMessage("id", "fix", text, false));
+
+        assertThat(header(record.headers(), AiMessageEnvelope.COMPRESSION_HEADER)).isEqualTo("zstd");
+        assertThat(record.value().length).isLessThan(text.length() / 10);
+        assertThat(new String(Zstd.decompress(record.value(), (int) Zstd.getFrameContentSize(record.value())),
+                StandardCharsets.UTF_8)).contains("Повторяющийся");
+    }
+
+    @Test
+    void compressionIsDisabledByDefaultSetting() throws IOException {
+        String text = "x".repeat(100_000);
+        ProducerRecord<String, byte[]> record = envelope("json", "none")
+                .wrap("topic", new AiRequestMessage("id", "fix", text, false));
+
+        assertThat(header(record.headers(), AiMessageEnvelope.COMPRESSION_HEADER)).isEqualTo("none");
+    }
+
+    @Test
+    void replyWithoutHeadersIsReadAsJson() throws IOException {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("topic", 0, 0, "id",
+                reply(new JsonFactory(), "id", "готово"));
+
+        AiReplyMessage message = envelope("json", "none").unwrap(record);
+
+        assertThat(message.requestId()).isEqualTo("id");
+        assertThat(message.processedText()).isEqualTo("готово");
+        assertThat(message.isError()).isFalse();
+    }
+
+    @Test
+    void compressedCborReplyIsDecoded() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream lz4 = new LZ4FrameOutputStream(compressed)) {
+            lz4.write(reply(new CBORFactory(), "id", "результат"));
+        }
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("topic", 0, 0, "id", compressed.toByteArray());
+        record.headers().add(AiMessageEnvelope.CODEC_HEADER, "cbor".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(AiMessageEnvelope.COMPRESSION_HEADER, "lz4".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(envelope("json", "none").unwrap(record).processedText()).isEqualTo("результат");
+    }
+
+    @Test
+    void codecUnknownToWorkerIsRejected() {
+        // Воркер понимает только json и cbor
+        assertThatThrownBy(() -> envelope("smile", "none")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void zstdFrameSizeAboveLimitIsRejected() {
+        // Размер в заголовке кадра больше int: без проверки приведение к int дало бы неверный размер
+        byte[] frame = ByteBuffer.allocate(14).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0xFD2FB528)
+                .put((byte) 0xE0)
+                .putLong(1L << 40)
+                .array();
+
+        assertThatThrownBy(() -> envelope("json", "none").unwrap(compressedReply(frame, "zstd")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("превышает");
+    }
+
+    @Test
+    void zstdReplyAboveLimitIsRejected() throws IOException {
+        byte[] payload = reply(new JsonFactory(), "id", "x".repeat(100 * 1024));
+
+        assertThatThrownBy(() -> envelope("json", "none").unwrap(compressedReply(Zstd.compress(payload), "zstd")))
+                .isInstanceOf(IOException.class);
+
+        // Кадр без размера в заголовке читается потоком с тем же ограничением
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (OutputStream zstd = new ZstdOutputStream(streamed)) {
+            zstd.write(payload);
+        }
+        assertThat(Zstd.getFrameContentSize(streamed.toByteArray())).isNegative();
+        assertThatThrownBy(() -> envelope("json", "none").unwrap(compressedReply(streamed.toByteArray(), "zstd")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("превышает");
+    }
+
+    @Test
+    void lz4ReplyAboveLimitIsRejected() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream lz4 = new LZ4FrameOutputStream(compressed)) {
+            lz4.write(reply(new JsonFactory(), "id", "x".repeat(100 * 1024)));
+        }
+
+        assertThatThrownBy(() -> envelope("json", "none").unwrap(compressedReply(compressed.toByteArray(), "lz4")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("превышает");
+    }
+
+    @Test
+    void replyAtLimitIsAccepted() throws IOException {
+        String text = "x".repeat(60 * 1024);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (OutputStream zstd = new ZstdOutputStream(streamed)) {
+            zstd.write(reply(new JsonFactory(), "id", text));
+        }
+
+        assertThat(envelope("json", "none").unwrap(compressedReply(streamed.toByteArray(), "zstd")).processedText())
+                .isEqualTo(text);
+    }
+}
@@ -0,0 +1,146 @@
+package com.project.me.central_java_service.service.documents;
+
+import com.mongodb.client.result.UpdateResult;
+import com.project.me.central_java_service.model.entity.User;
+import com.project.me.central_java_service.service.UserRevisionService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentMigrationTest {
+    private static final String USER = "user@example.com";
+    private static final String USERS = "users";
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final DocumentMigration migration = new DocumentMigration(mongoTemplate, mock(UserRevisionService.class), true);
+    // Коллекция documents по _id
+    private final Map<String, Document> documents = new LinkedHashMap<>();
+    // Запись пользователя со старым полем documents, null - поле удалено
+    private Document legacyUser;
+    // Сколько следующих удалений поля documents завершатся ошибкой базы
+    private int failingUnsets;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(mongoTemplate.getCollectionName(User.class)).thenReturn(USERS);
+        when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq(USERS))).thenAnswer(call -> legacyUser);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(com.project.me.central_java_service.model.entity.Document.class)))
+                .thenReturn(bulk);
+        // upsert с $setOnInsert: поля записываются только при вставке нового документа
+        when(bulk.upsert(anyList())).thenAnswer(call -> {
+            for (Pair<Query, Update> upsert : call.<List<Pair<Query, Update>>>getArgument(0)) {
+                Document update = upsert.getSecond().getUpdateObject();
+                assertThat(update.keySet()).containsOnly("$setOnInsert");
+                String id = upsert.getFirst().getQueryObject().getString("_id");
+                documents.computeIfAbsent(id, ignored -> new Document("_id", id).append("fields", update.get("$setOnInsert")));
+            }
+            return bulk;
+        });
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(User.class))).thenAnswer(call -> {
+            if (failingUnsets > 0) {
+                failingUnsets--;
+                throw new DataAccessResourceFailureException("down");
+            }
+            legacyUser = null;
+            return UpdateResult.acknowledged(1, 1L, null);
+        });
+    }
+
+    private static Document legacyDocument(String documentId, String name, String text) {
+        Document document = new Document("documentName", name)
+                .append("createdAt", LocalDateTime.of(2025, 1, 1, 12, 0))
+                .append("updatedAt", LocalDateTime.of(2025, 1, 2, 12, 0))
+                .append("text", text);
+        if (documentId != null) {
+            document.append("documentId", documentId);
+        }
+        return document;
+    }
+
+    private Document fields(String id) {
+        return documents.get(id).get("fields", Document.class);
+    }
+
+    @Test
+    void rerunAfterInterruptedMigrationDoesNotDuplicateOrOverwrite() {
+        List<Document> embedded = new ArrayList<>(List.of(
+                legacyDocument("doc1", "Первый", "текст"),
+                legacyDocument(null, "Без идентификатора", "старый 😀")
+        ));
+        legacyUser = new Document("_id", "u1").append("userEmail", USER).append("documents", embedded);
+        failingUnsets = 1;
+
+        // Документы вставлены, но поле documents удалить не удалось
+        assertThatThrownBy(() -> migration.migrateUser(USER)).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(documents).hasSize(2);
+        List<String> ids = List.copyOf(documents.keySet());
+        assertThat(fields("doc1").getString("userEmail")).isEqualTo(USER);
+        assertThat(fields(ids.get(1)).get("textLength")).isEqualTo(8);
+        assertThat(fields(ids.get(1)).get("version")).isEqualTo(0L);
+
+        // Пользователь успел изменить перенесенный документ
+        fields("doc1").put("text", "изменено");
+
+        migration.migrateUser(USER);
+
+        // Те же документы под теми же идентификаторами, изменения не перезаписаны
+        assertThat(documents.keySet()).containsExactlyElementsOf(ids);
+        assertThat(fields("doc1").getString("text")).isEqualTo("изменено");
+        assertThat(legacyUser).isNull();
+
+        // Поле documents удалено: следующий вызов ничего не переносит
+        migration.migrateUser(USER);
+        verify(bulk, times(2)).upsert(anyList());
+        assertThat(documents).hasSize(2);
+    }
+
+    @Test
+    void documentWithoutIdGetsSameIdOnEveryRun() {
+        legacyUser = new Document("_id", "u1").append("userEmail", USER)
+                .append("documents", List.of(legacyDocument(null, "a", "x"), legacyDocument(null, "b", "y")));
+        failingUnsets = 2;
+
+        assertThatThrownBy(() -> migration.migrateUser(USER)).isInstanceOf(DataAccessResourceFailureException.class);
+        List<String> firstRun = List.copyOf(documents.keySet());
+        documents.clear();
+        assertThatThrownBy(() -> migration.migrateUser(USER)).isInstanceOf(DataAccessResourceFailureException.class);
+
+        assertThat(firstRun).hasSize(2).doesNotHaveDuplicates();
+        assertThat(documents.keySet()).containsExactlyElementsOf(firstRun);
+    }
+
+    @Test
+    void userWithoutLegacyDocumentsOnlyDropsTheField() {
+        legacyUser = new Document("_id", "u1").append("userEmail", USER).append("documents", List.of());
+
+        migration.migrateUser(USER);
+
+        verify(mongoTemplate, times(0)).bulkOps(any(BulkOperations.BulkMode.class), eq(com.project.me.central_java_service.model.entity.Document.class));
+        assertThat(legacyUser).isNull();
+    }
+}
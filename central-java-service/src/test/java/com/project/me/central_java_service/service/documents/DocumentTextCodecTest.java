@@ -0,0 +1,124 @@
+package com.project.me.central_java_service.service.documents;
+
+import com.project.me.central_java_service.model.entity.Document;
+import com.project.me.central_java_service.util.TextCompression;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class DocumentTextCodecTest {
+    private static final int THRESHOLD = 100;
+
+    private static DocumentTextCodec codec(String codec) {
+        return new DocumentTextCodec(new SimpleMeterRegistry(), codec, THRESHOLD, 3);
+    }
+
+    // Текст длиной ровно bytes байт UTF-8 из двухбайтовых символов
+    private static String cyrillic(int bytes) {
+        return "ж".repeat(bytes / 2);
+    }
+
+    @Test
+    void textBelowThresholdIsStoredAsIs() {
+        Document document = new Document();
+        String text = cyrillic(THRESHOLD - 2);
+
+        codec(TextCompression.ZSTD).apply(document, text);
+
+        assertThat(document.getCompressedText()).isNull();
+        assertThat(document.getTextCodec()).isNull();
+        assertThat(document.getText()).isEqualTo(text);
+    }
+
+    @Test
+    void textAtThresholdIsCompressed() {
+        Document document = new Document();
+        String text = cyrillic(THRESHOLD);
+        assertThat(text.getBytes(StandardCharsets.UTF_8)).hasSize(THRESHOLD);
+
+        codec(TextCompression.ZSTD).apply(document, text);
+
+        assertThat(document.getCompressedText()).isNotNull();
+        assertThat(document.getTextCodec()).isEqualTo(TextCompression.ZSTD);
+        assertThat(document.getText()).isEqualTo(text);
+    }
+
+    @Test
+    void textThatDoesNotShrinkIsStoredAsIs() {
+        // Заголовок кадра длиннее самого текста: сжатие не уменьшает размер
+        DocumentTextCodec codec = new DocumentTextCodec(new SimpleMeterRegistry(), TextCompression.ZSTD, 1, 3);
+        Document document = new Document();
+
+        codec.apply(document, "ок");
+
+        assertThat(document.getCompressedText()).isNull();
+        assertThat(document.getTextCodec()).isNull();
+        assertThat(document.getText()).isEqualTo("ок");
+    }
+
+    @Test
+    void codecNoneNeverCompresses() {
+        Document document = new Document();
+        String text = cyrillic(THRESHOLD * 10);
+
+        codec(DocumentTextCodec.NONE).apply(document, text);
+
+        assertThat(document.getCompressedText()).isNull();
+        assertThat(document.getText()).isEqualTo(text);
+    }
+
+    @Test
+    void unknownCodecIsRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> codec("lzma"));
+    }
+
+    @Test
+    void updateSwitchesBetweenPlainAndCompressedFields() {
+        DocumentTextCodec codec = codec(TextCompression.ZSTD);
+
+        org.bson.Document compressed = codec.apply(new Update(), cyrillic(THRESHOLD * 10)).getUpdateObject();
+        assertThat(compressed.get("$set", org.bson.Document.class))
+                .containsKeys("compressedText", "textCodec")
+                .doesNotContainKey("text");
+        assertThat(compressed.get("$set", org.bson.Document.class).get("textCodec")).isEqualTo(TextCompression.ZSTD);
+        assertThat(compressed.get("$unset", org.bson.Document.class)).containsOnlyKeys("text");
+
+        org.bson.Document plain = codec.apply(new Update(), "короткий").getUpdateObject();
+        assertThat(plain.get("$set", org.bson.Document.class)).containsOnlyKeys("text");
+        assertThat(plain.get("$unset", org.bson.Document.class)).containsOnlyKeys("compressedText", "textCodec");
+    }
+
+    @Test
+    void textIsDecompressedOnFirstAccessOnly() {
+        Document document = new Document();
+        String text = "Привет, мир! ".repeat(100);
+        codec(TextCompression.DEFLATE).apply(document, text);
+        byte[] compressed = document.getCompressedText();
+        assertThat(compressed).isNotNull();
+
+        assertThat(document.getText()).isEqualTo(text);
+        // После распаковки сжатые данные освобождаются, повторное обращение возвращает тот же текст
+        assertThat(document.getCompressedText()).isNull();
+        assertThat(document.getText()).isSameAs(document.getText());
+    }
+
+    @Test
+    void documentWithoutTextReturnsNull() {
+        assertThat(new Document().getText()).isNull();
+    }
+
+    @Test
+    void corruptedStoredTextFailsOnAccess() {
+        Document document = new Document();
+        document.setCompressedText(new byte[]{1, 2, 3});
+        document.setTextCodec(TextCompression.ZSTD);
+
+        assertThatIllegalStateException().isThrownBy(document::getText);
+    }
+}
@@ -0,0 +1,180 @@
+package com.project.me.central_java_service.service.documents;
+
+import com.mongodb.client.result.UpdateResult;
+import com.project.me.central_java_service.exception.DocumentVersionConflictException;
+import com.project.me.central_java_service.model.entity.Document;
+import com.project.me.central_java_service.service.UserRevisionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentWriteBufferTest {
+    private static final String USER = "user@example.com";
+    private static final String DOCUMENT = "doc";
+
+    @TempDir
+    Path dir;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final UserRevisionService revisionService = mock(UserRevisionService.class);
+    private final DocumentTextCodec textCodec = new DocumentTextCodec(new SimpleMeterRegistry(), DocumentTextCodec.NONE, 4096, 3);
+    // Версии, которые выдаст база при следующих сохранениях
+    private final Deque<Long> reservedVersions = new ArrayDeque<>();
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(Document.class)))
+                .thenAnswer(call -> {
+                    Long version = reservedVersions.poll();
+                    if (version == null) {
+                        return null;
+                    }
+                    Document document = new Document();
+                    document.setVersion(version);
+                    return document;
+                });
+    }
+
+    private DocumentWriteBuffer buffer() throws IOException {
+        DocumentWriteBuffer buffer = new DocumentWriteBuffer(mongoTemplate, revisionService, textCodec, new SimpleMeterRegistry(),
+                0, 0, dir.resolve("journal.log").toString(), 1 << 20);
+        buffer.recover();
+        return buffer;
+    }
+
+    private void writesMatch(long... matchedCounts) {
+        var stub = when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Document.class)));
+        for (long matched : matchedCounts) {
+            stub = stub.thenReturn(UpdateResult.acknowledged(matched, matched, null));
+        }
+    }
+
+    private static org.bson.Document fieldsSet(Update update) {
+        return update.getUpdateObject().get("$set", org.bson.Document.class);
+    }
+
+    @Test
+    void versionIsReservedInDatabaseOnSave() throws IOException {
+        reservedVersions.add(6L);
+        DocumentWriteBuffer buffer = buffer();
+
+        long version = buffer.save(USER, DOCUMENT, "name", "text", 5L, () -> 5L);
+
+        assertThat(version).isEqualTo(6);
+        assertThat(buffer.pendingVersion(USER, DOCUMENT)).contains(6L);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(Document.class));
+        assertThat(query.getValue().getQueryObject().get("version")).isEqualTo(5L);
+    }
+
+    @Test
+    void conflictIsReportedToClientOnSave() throws IOException {
+        DocumentWriteBuffer buffer = buffer();
+
+        // Версия в базе уже 7: другой экземпляр принял сохранение раньше
+        assertThatThrownBy(() -> buffer.save(USER, DOCUMENT, "name", "text", 5L, () -> 7L))
+                .isInstanceOfSatisfying(DocumentVersionConflictException.class,
+                        e -> assertThat(e.getHeaders().getFirst(DocumentVersionConflictException.VERSION_HEADER)).isEqualTo("7"));
+        assertThat(buffer.pendingVersion(USER, DOCUMENT)).isEmpty();
+    }
+
+    @Test
+    void saveDuringWriteIsNotDropped() throws IOException {
+        reservedVersions.add(6L);
+        reservedVersions.add(7L);
+        DocumentWriteBuffer buffer = buffer();
+        buffer.save(USER, DOCUMENT, "name", "first", null, () -> 5L);
+        // Пока записывается версия 6, пользователь сохраняет версию 7
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Document.class)))
+                .thenAnswer(call -> {
+                    if (reservedVersions.size() == 1) {
+                        buffer.save(USER, DOCUMENT, "name", "second", 6L, () -> 6L);
+                    }
+                    return UpdateResult.acknowledged(0, 0L, null);
+                });
+
+        buffer.flush(USER, DOCUMENT);
+
+        assertThat(buffer.pendingVersion(USER, DOCUMENT)).contains(7L);
+    }
+
+    @Test
+    void renamedDocumentGetsTextOnly() throws IOException {
+        reservedVersions.add(6L);
+        DocumentWriteBuffer buffer = buffer();
+        buffer.save(USER, DOCUMENT, "old name", "text", null, () -> 5L);
+        writesMatch(0, 1);
+
+        buffer.flush(USER, DOCUMENT);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(queries.capture(), updates.capture(), eq(Document.class));
+        // Сначала запись при неизменной версии вместе с именем, затем только текст, если он в базе старше
+        assertThat(queries.getAllValues().get(0).getQueryObject().get("version")).isEqualTo(6L);
+        assertThat(fieldsSet(updates.getAllValues().get(0))).containsEntry("documentName", "old name");
+        assertThat(queries.getAllValues().get(1).getQueryObject()).containsKey("textVersion");
+        assertThat(fieldsSet(updates.getAllValues().get(1))).doesNotContainKey("documentName").containsEntry("textVersion", 6L);
+        assertThat(buffer.pendingVersion(USER, DOCUMENT)).isEmpty();
+        verify(revisionService).increment(USER, UserRevisionService.DOCUMENTS);
+    }
+
+    @Test
+    void supersededWriteIsSkipped() throws IOException {
+        reservedVersions.add(6L);
+        DocumentWriteBuffer buffer = buffer();
+        buffer.save(USER, DOCUMENT, "name", "text", null, () -> 5L);
+        writesMatch(0, 0);
+
+        buffer.flush(USER, DOCUMENT);
+
+        assertThat(buffer.pendingVersion(USER, DOCUMENT)).isEmpty();
+        verify(revisionService, never()).increment(anyString(), anyString());
+    }
+
+    @Test
+    void journalIsReplayedAfterRestart() throws IOException {
+        reservedVersions.add(6L);
+        DocumentWriteBuffer first = buffer();
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Document.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        first.save(USER, DOCUMENT, "name", "text", null, () -> 5L);
+        first.flushDue();
+        // Запись прежнего формата тоже читается
+        Files.writeString(dir.resolve("journal.log"),
+                "{\"userEmail\":\"other\",\"documentId\":\"d2\",\"documentName\":\"n\",\"text\":\"t\",\"savedAt\":1,\"baseVersion\":2,\"version\":3}\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        DocumentWriteBuffer restarted = buffer();
+
+        assertThat(restarted.pendingVersion(USER, DOCUMENT)).contains(6L);
+        assertThat(restarted.pendingVersion("other", "d2")).contains(3L);
+    }
+}
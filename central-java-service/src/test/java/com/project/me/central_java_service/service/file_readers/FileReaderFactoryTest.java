@@ -0,0 +1,94 @@
+package com.project.me.central_java_service.service.file_readers;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.DocFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.DocXFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.HTMLFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.MarkdownFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.ODTFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.OdfFixtures;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.PDFFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.RTFFileReader;
+import com.project.me.central_java_service.service.file_readers.file_readers_impl.TXTFileReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileReaderFactoryTest {
+    private final FileReaderFactory factory = new FileReaderFactory(List.of(
+            new TXTFileReader(), new HTMLFileReader(), new MarkdownFileReader(), new RTFFileReader(),
+            new DocFileReader(), new DocXFileReader(), new ODTFileReader(),
+            new PDFFileReader(new ThreadPoolTaskExecutor(), 20, Duration.ofSeconds(60))
+    ));
+
+    private FileReader readerFor(String fileName, String contentType, byte[] content) {
+        return factory.getFileReader(fileName, new MockMultipartFile("file", fileName, contentType, content));
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertUnsupported(Runnable read) {
+        assertThatThrownBy(read::run)
+                .isInstanceOf(BaseCoreServiceException.class)
+                .satisfies(e -> assertThat(((BaseCoreServiceException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE));
+    }
+
+    @Test
+    void binaryFormatsAreChosenBySignatureNotName() {
+        assertThat(readerFor("report.txt", "text/plain", ascii("%PDF-1.7\n..."))).isInstanceOf(PDFFileReader.class);
+        assertThat(readerFor("report.docx", null, ascii("{\\rtf1\\ansi text}"))).isInstanceOf(RTFFileReader.class);
+        byte[] ole2 = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1, 0, 0};
+        assertThat(readerFor("report.pdf", null, ole2)).isInstanceOf(DocFileReader.class);
+    }
+
+    @Test
+    void zipArchivesAreChosenByEntries() throws IOException {
+        byte[] docx = OdfFixtures.zip(null, "[Content_Types].xml", "<Types/>", "word/document.xml", "<w:document/>");
+
+        assertThat(readerFor("file.bin", null, docx)).isInstanceOf(DocXFileReader.class);
+        assertThat(readerFor("file.docx", null, OdfFixtures.odt("text", true))).isInstanceOf(ODTFileReader.class);
+        assertThat(readerFor("file.docx", null, OdfFixtures.odt("text", false))).isInstanceOf(ODTFileReader.class);
+    }
+
+    @Test
+    void otherZipArchivesAreUnsupported() throws IOException {
+        byte[] xlsx = OdfFixtures.zip(null, "[Content_Types].xml", "<Types/>", "xl/workbook.xml", "<workbook/>");
+        byte[] pptx = OdfFixtures.zip(null, "[Content_Types].xml", "<Types/>", "ppt/presentation.xml", "<presentation/>");
+
+        assertUnsupported(() -> readerFor("table.xlsx", null, xlsx));
+        assertUnsupported(() -> readerFor("slides.docx", null, pptx));
+    }
+
+    @Test
+    void unknownBinaryIsUnsupported() {
+        assertUnsupported(() -> readerFor("image.png", "image/png", new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 13}));
+    }
+
+    @Test
+    void textFormatsAreChosenByExtensionThenMimeTypeThenContent() {
+        assertThat(readerFor("notes.md", "application/octet-stream", ascii("# Title"))).isInstanceOf(MarkdownFileReader.class);
+        assertThat(readerFor("notes", "text/markdown; charset=utf-8", ascii("# Title"))).isInstanceOf(MarkdownFileReader.class);
+        assertThat(readerFor("page", null, ascii("  <!DOCTYPE html><html></html>"))).isInstanceOf(HTMLFileReader.class);
+        assertThat(readerFor("notes", null, ascii("plain text"))).isInstanceOf(TXTFileReader.class);
+        assertThat(readerFor("notes.txt", null, "текст".getBytes(StandardCharsets.UTF_16LE))).isInstanceOf(TXTFileReader.class);
+    }
+
+    @Test
+    void archiveMimeTypeDoesNotSelectArchiveReaderForText() {
+        String docxMime = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+        assertThat(readerFor("file", docxMime, ascii("plain text"))).isInstanceOf(TXTFileReader.class);
+    }
+}
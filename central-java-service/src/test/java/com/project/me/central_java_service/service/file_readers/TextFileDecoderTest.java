@@ -0,0 +1,57 @@
+package com.project.me.central_java_service.service.file_readers;
+
+import com.project.me.central_java_service.util.TextCharsetDetector;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextFileDecoderTest {
+
+    private static TextFileDecoder open(byte[] content) throws IOException {
+        return TextFileDecoder.open(new MockMultipartFile("file", "file.txt", "text/plain", content));
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            text.append(buffer, 0, read);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void bomIsSkipped() throws IOException {
+        byte[] content = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'o', 'k'};
+        try (TextFileDecoder decoder = open(content)) {
+            assertThat(decoder.charset()).isEqualTo(StandardCharsets.UTF_8);
+            assertThat(readAll(decoder.reader())).isEqualTo("ok");
+        }
+    }
+
+    @Test
+    void textBeyondSampleIsDecodedWithDetectedCharset() throws IOException {
+        String text = "съешь же ещё этих мягких французских булок\n".repeat(3000);
+        try (TextFileDecoder decoder = open(text.getBytes(TextCharsetDetector.KOI8_R))) {
+            assertThat(decoder.charset()).isEqualTo(TextCharsetDetector.KOI8_R);
+            assertThat(readAll(decoder.reader())).isEqualTo(text);
+        }
+    }
+
+    @Test
+    void expectedLengthIsCapped() throws IOException {
+        try (TextFileDecoder utf8 = open("a".getBytes(StandardCharsets.UTF_8));
+             TextFileDecoder utf16 = open("текст".getBytes(StandardCharsets.UTF_16LE))) {
+            assertThat(utf8.expectedLength(0)).isEqualTo(16);
+            assertThat(utf8.expectedLength(1000)).isEqualTo(1000);
+            assertThat(utf16.expectedLength(1000)).isEqualTo(500);
+            assertThat(utf8.expectedLength(50L * 1024 * 1024)).isEqualTo(TextFileDecoder.MAX_PRESIZE);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.apache.poi.hwpf.usermodel.CharacterRun;
+import org.apache.poi.hwpf.usermodel.Paragraph;
+import org.apache.poi.hwpf.usermodel.Range;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocFileReaderTest {
+    private final DocFileReader reader = new DocFileReader();
+
+    // Текст документа и абзацы из фрагментов поверх него, как их отдает HWPF
+    private final StringBuilder text = new StringBuilder();
+    private final List<Paragraph> paragraphs = new ArrayList<>();
+    private List<CharacterRun> runs;
+
+    private void paragraph(int justification) {
+        runs = new ArrayList<>();
+        List<CharacterRun> paragraphRuns = runs;
+        Paragraph paragraph = mock(Paragraph.class);
+        when(paragraph.getJustification()).thenReturn(justification);
+        when(paragraph.numCharacterRuns()).thenAnswer(invocation -> paragraphRuns.size());
+        when(paragraph.getCharacterRun(anyInt()))
+                .thenAnswer(invocation -> paragraphRuns.get(invocation.getArgument(0)));
+        paragraphs.add(paragraph);
+    }
+
+    // halfPoints - размер шрифта в половинах пункта, как в HWPF
+    private void run(String runText, int halfPoints, boolean bold, boolean italic) {
+        CharacterRun run = mock(CharacterRun.class);
+        when(run.getStartOffset()).thenReturn(text.length());
+        text.append(runText);
+        when(run.getEndOffset()).thenReturn(text.length());
+        when(run.getFontSize()).thenReturn(halfPoints);
+        when(run.isBold()).thenReturn(bold);
+        when(run.isItalic()).thenReturn(italic);
+        runs.add(run);
+    }
+
+    private String read() {
+        Range range = mock(Range.class);
+        when(range.numParagraphs()).thenReturn(paragraphs.size());
+        for (int i = 0; i < paragraphs.size(); i++) {
+            when(range.getParagraph(i)).thenReturn(paragraphs.get(i));
+        }
+        return reader.read(range, text);
+    }
+
+    @Test
+    void adjacentRunsWithSameStyleAreMerged() {
+        paragraph(0);
+        run("Жирный ", 24, true, false);
+        run("текст", 24, true, false);
+        run(" и обычный\r", 0, false, false);
+
+        assertThat(read()).isEqualTo("<html><body><p style=\"text-align: left;\">"
+                + "<span style=\"font-size: 12px;\"><b>Жирный текст</b></span> и обычный</p>");
+    }
+
+    @Test
+    void styleChangeClosesSegment() {
+        paragraph(3);
+        run("a", 20, false, true);
+        run("b", 20, true, true);
+        run("c\r", 20, false, true);
+
+        assertThat(read()).isEqualTo("<html><body><p style=\"text-align: justify;\">"
+                + "<span style=\"font-size: 10px;\"><i>a</i></span>"
+                + "<span style=\"font-size: 10px;\"><b><i>b</i></b></span>"
+                + "<span style=\"font-size: 10px;\"><i>c</i></span></p>");
+    }
+
+    @Test
+    void alignmentIsMappedAndUnknownFallsBackToLeft() {
+        paragraph(1);
+        run("center\r", 0, false, false);
+        paragraph(2);
+        run("right\r", 0, false, false);
+        paragraph(7);
+        run("distributed\r", 0, false, false);
+
+        assertThat(read()).isEqualTo("<html><body>"
+                + "<p style=\"text-align: center;\">center</p>"
+                + "<p style=\"text-align: right;\">right</p>"
+                + "<p style=\"text-align: left;\">distributed</p>");
+    }
+
+    @Test
+    void paragraphAndCellMarksAreDroppedAndTextIsEscaped() {
+        paragraph(0);
+        run("a < b & c", 0, false, false);
+        run("\u000Bстрока\u0007\r", 0, false, false);
+        paragraph(0);
+        run("\r", 0, false, false);
+
+        assertThat(read()).isEqualTo("<html><body><p style=\"text-align: left;\">a &lt; b &amp; c<br>строка</p>"
+                + "<p style=\"text-align: left;\"></p>");
+    }
+
+    @Test
+    void notADocIsBadRequest() {
+        MockMultipartFile file = new MockMultipartFile("file", "file.doc", "application/msword", new byte[]{1, 2, 3});
+
+        assertThatThrownBy(() -> reader.readFile(file)).isInstanceOf(BaseCoreServiceException.class);
+    }
+}
@@ -0,0 +1,78 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocXFileReaderTest {
+    private final DocXFileReader reader = new DocXFileReader();
+
+    private String read(byte[] docx) {
+        return reader.readFile(new MockMultipartFile("file", "file.docx", null, docx));
+    }
+
+    @Test
+    void outputMatchesXwpfReader() throws IOException {
+        byte[] docx = DocxFixtures.features();
+
+        String html = read(docx);
+
+        assertThat(html).isEqualTo(XwpfDocxReader.read(docx));
+        assertThat(html)
+                .contains("<p style=\"text-align: justify;\">")
+                .contains("<span style=\"font-size: 9px;\"><strong><i>оба</i></strong></span>")
+                .contains("a &lt; b &amp;&amp; c &gt; d\tпосле табуляции<br>новая строка")
+                .contains("<strong>example</strong>")
+                .doesNotContain("в таблице");
+    }
+
+    @Test
+    void largeDocumentMatchesXwpfReader() throws IOException {
+        byte[] docx = DocxFixtures.paragraphs(2_000);
+
+        assertThat(read(docx)).isEqualTo(XwpfDocxReader.read(docx));
+    }
+
+    @Test
+    void deletedTextIsSkipped() throws IOException {
+        String body = "<w:p><w:r><w:t>оставить</w:t></w:r>"
+                + "<w:del><w:r><w:delText>удалить</w:delText></w:r></w:del>"
+                + "<w:ins><w:r><w:t xml:space=\"preserve\"> вставка</w:t></w:r></w:ins></w:p>";
+
+        assertThat(read(docx(body)))
+                .isEqualTo("<p style=\"text-align: left;\"><span style=\"\">оставить</span><span style=\"\"> вставка</span></p>");
+    }
+
+    @Test
+    void externalEntitiesAreNotResolved() throws IOException {
+        String xml = "<?xml version=\"1.0\"?><!DOCTYPE d [<!ENTITY x SYSTEM \"file:///etc/hostname\">]>"
+                + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\">"
+                + "<w:body><w:p><w:r><w:t>&x;</w:t></w:r></w:p></w:body></w:document>";
+
+        assertThatThrownBy(() -> read(zip(xml))).isInstanceOf(BaseCoreServiceException.class);
+    }
+
+    private static byte[] docx(String body) throws IOException {
+        return zip("<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>"
+                + body + "</w:body></w:document>");
+    }
+
+    private static byte[] zip(String documentXml) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(documentXml.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return out.toByteArray();
+    }
+}
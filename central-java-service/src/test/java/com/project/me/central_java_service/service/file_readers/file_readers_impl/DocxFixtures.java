@@ -0,0 +1,93 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHyperlinkRun;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Тестовые docx, собранные через XWPFDocument
+final class DocxFixtures {
+    private static final ParagraphAlignment[] ALIGNMENTS = {
+            ParagraphAlignment.LEFT, ParagraphAlignment.CENTER, ParagraphAlignment.RIGHT, ParagraphAlignment.BOTH
+    };
+
+    private DocxFixtures() {
+    }
+
+    // Документ со всем, что различает reader: выравнивание, стили фрагментов, спецсимволы,
+    // табуляция и переносы, гиперссылка, пустой абзац и таблица (в вывод не попадает)
+    static byte[] features() throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (ParagraphAlignment alignment : ALIGNMENTS) {
+                XWPFParagraph paragraph = document.createParagraph();
+                paragraph.setAlignment(alignment);
+                paragraph.createRun().setText("Абзац " + alignment);
+            }
+
+            XWPFParagraph styled = document.createParagraph();
+            XWPFRun bold = styled.createRun();
+            bold.setBold(true);
+            bold.setText("жирный ");
+            XWPFRun italic = styled.createRun();
+            italic.setItalic(true);
+            italic.setFontSize(14);
+            italic.setText("курсив ");
+            XWPFRun both = styled.createRun();
+            both.setBold(true);
+            both.setItalic(true);
+            both.setFontSize(9);
+            both.setText("оба");
+
+            XWPFParagraph special = document.createParagraph();
+            XWPFRun escaped = special.createRun();
+            escaped.setText("a < b && c > d");
+            escaped.addTab();
+            escaped.setText("после табуляции");
+            escaped.addBreak();
+            escaped.setText("новая строка");
+
+            XWPFParagraph linked = document.createParagraph();
+            linked.createRun().setText("ссылка: ");
+            XWPFHyperlinkRun link = linked.createHyperlinkRun("https://example.com");
+            link.setText("example");
+            link.setBold(true);
+
+            document.createParagraph();
+
+            XWPFTable table = document.createTable(1, 1);
+            table.getRow(0).getCell(0).setText("в таблице");
+
+            document.createParagraph().createRun().setText("после таблицы");
+            return write(document);
+        }
+    }
+
+    // Большой документ для сравнения скорости и памяти
+    static byte[] paragraphs(int count) throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int i = 0; i < count; i++) {
+                XWPFParagraph paragraph = document.createParagraph();
+                paragraph.setAlignment(ALIGNMENTS[i % ALIGNMENTS.length]);
+                XWPFRun plain = paragraph.createRun();
+                plain.setText("Абзац " + i + ": стороны обязуются выполнить работы в срок ");
+                XWPFRun styled = paragraph.createRun();
+                styled.setBold(i % 2 == 0);
+                styled.setItalic(i % 3 == 0);
+                styled.setFontSize(10 + i % 8);
+                styled.setText("согласно приложению & <условиям> договора.");
+            }
+            return write(document);
+        }
+    }
+
+    private static byte[] write(XWPFDocument document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.write(out);
+        return out.toByteArray();
+    }
+}
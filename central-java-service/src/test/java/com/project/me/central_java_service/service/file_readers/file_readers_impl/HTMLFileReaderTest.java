@@ -0,0 +1,37 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HTMLFileReaderTest {
+    private final HTMLFileReader reader = new HTMLFileReader();
+
+    private String read(String html) {
+        return reader.readFile(new MockMultipartFile("file", "file.html", "text/html", html.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void scriptsAndHandlersAreRemoved() {
+        assertThat(read("<p onclick=\"x()\">текст<script>alert(1)</script></p><a href=\"javascript:x\">ссылка</a>"))
+                .isEqualTo("<p>текст</p><a>ссылка</a>");
+    }
+
+    @Test
+    void textStylesAreKept() {
+        assertThat(read("<p style=\"TEXT-ALIGN: center; font-size: 12pt;color: rgb(10, 20, 30)\">a</p>"))
+                .isEqualTo("<p style=\"text-align: center; font-size: 12pt; color: rgb(10, 20, 30);\">a</p>");
+    }
+
+    @Test
+    void unsafeStylesAreRemoved() {
+        assertThat(read("<p style=\"background: url(https://tracker.example/x.png); color: red\">a</p>"))
+                .isEqualTo("<p style=\"color: red;\">a</p>");
+        assertThat(read("<span style=\"background-color: url(&quot;x&quot;); position: fixed; width: expression(alert(1))\">b</span>"))
+                .isEqualTo("<span>b</span>");
+        assertThat(read("<h1 style=\"color: red;background:url(x)\">c</h1>")).isEqualTo("<h1 style=\"color: red;\">c</h1>");
+    }
+}
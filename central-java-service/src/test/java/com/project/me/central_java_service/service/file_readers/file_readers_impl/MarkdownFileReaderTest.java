@@ -0,0 +1,53 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarkdownFileReaderTest {
+    private final MarkdownFileReader reader = new MarkdownFileReader();
+
+    private String read(String markdown) {
+        return reader.readFile(new MockMultipartFile("file", "file.md", "text/markdown", markdown.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void blocksAreConverted() {
+        assertThat(read("# Заголовок #\n\nПервая строка\nвторая строка\n\n- один\n- два\n\n1. раз\n\n> цитата\n\n---"))
+                .isEqualTo("<h1>Заголовок</h1><p>Первая строка вторая строка</p>"
+                        + "<ul><li>один</li><li>два</li></ul><ol><li>раз</li></ol>"
+                        + "<blockquote><p>цитата</p></blockquote><hr>");
+    }
+
+    @Test
+    void codeIsEscapedAndNotFormatted() {
+        assertThat(read("```\n<b>**x**</b>\n```\nтекст `a<b` и **жирный** и _курсив_"))
+                .isEqualTo("<pre><code>&lt;b&gt;**x**&lt;/b&gt;\n</code></pre>"
+                        + "<p>текст <code>a&lt;b</code> и <strong>жирный</strong> и <i>курсив</i></p>");
+    }
+
+    @Test
+    void backslashEscapesAreLiteral() {
+        assertThat(read("\\*не курсив\\* snake_case_name")).isEqualTo("<p>*не курсив* snake_case_name</p>");
+    }
+
+    @Test
+    void allowedLinksAreKept() {
+        assertThat(read("[a](https://example.com/path?q=1&x=2) [b](http://example.com) [c](mailto:me@example.com)"))
+                .isEqualTo("<p><a href=\"https://example.com/path?q=1&amp;x=2\">a</a> "
+                        + "<a href=\"http://example.com\">b</a> <a href=\"mailto:me@example.com\">c</a></p>");
+        assertThat(read("[d](docs/readme.md) [e](#section) [f](/root:path)"))
+                .isEqualTo("<p><a href=\"docs/readme.md\">d</a> <a href=\"#section\">e</a> <a href=\"/root:path\">f</a></p>");
+    }
+
+    @Test
+    void otherSchemesAreDropped() {
+        assertThat(read("[a](javascript:alert(1)) [b](JavaScript:x) [c](data:text/html,x) [d](vbscript:x) [e](file:///etc/passwd)"))
+                .doesNotContain("<a ");
+        // Экранированное двоеточие не скрывает схему
+        assertThat(read("[a](javascript\\:alert)")).isEqualTo("<p>a</p>");
+    }
+}
@@ -0,0 +1,35 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ODTFileReaderTest {
+    private final ODTFileReader reader = new ODTFileReader();
+
+    private String read(byte[] content) {
+        return reader.readFile(new MockMultipartFile("file", "file.odt", null, content));
+    }
+
+    @Test
+    void paragraphsAreRead() throws IOException {
+        assertThat(read(OdfFixtures.odt("Текст &amp; <text:span>фрагмент</text:span>", true)))
+                .isEqualTo("<p style=\"text-align: left;\">Текст &amp; фрагмент</p>");
+        assertThat(read(OdfFixtures.odt("без mimetype", false)))
+                .isEqualTo("<p style=\"text-align: left;\">без mimetype</p>");
+    }
+
+    @Test
+    void spreadsheetIsUnsupported() {
+        assertThatThrownBy(() -> read(OdfFixtures.ods()))
+                .isInstanceOf(BaseCoreServiceException.class)
+                .satisfies(e -> assertThat(((BaseCoreServiceException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE));
+    }
+}
@@ -0,0 +1,61 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Тестовые zip-архивы OpenDocument и других форматов
+public final class OdfFixtures {
+    public static final String ODT = "application/vnd.oasis.opendocument.text";
+    public static final String ODS = "application/vnd.oasis.opendocument.spreadsheet";
+
+    private static final String OFFICE_NS = "xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\" "
+            + "xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\" "
+            + "xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\"";
+
+    private OdfFixtures() {
+    }
+
+    // odt с абзацем текста. mimetypeFirst = false - архив собран без несжатого mimetype в начале
+    public static byte[] odt(String text, boolean mimetypeFirst) throws IOException {
+        String content = "<office:document-content " + OFFICE_NS + "><office:body><office:text>"
+                + "<text:p>" + text + "</text:p></office:text></office:body></office:document-content>";
+        return mimetypeFirst
+                ? zip(ODT, "content.xml", content)
+                : zip(null, "content.xml", content, "mimetype", ODT);
+    }
+
+    public static byte[] ods() throws IOException {
+        String content = "<office:document-content " + OFFICE_NS + "><office:body><office:spreadsheet>"
+                + "<table:table table:name=\"Лист1\"/></office:spreadsheet></office:body></office:document-content>";
+        return zip(ODS, "content.xml", content);
+    }
+
+    // Пары имя файла - содержимое. storedMimetype - несжатый mimetype первым файлом, как в OpenDocument
+    public static byte[] zip(String storedMimetype, String... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            if (storedMimetype != null) {
+                byte[] mimetype = storedMimetype.getBytes(StandardCharsets.US_ASCII);
+                ZipEntry entry = new ZipEntry("mimetype");
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(mimetype.length);
+                CRC32 crc = new CRC32();
+                crc.update(mimetype);
+                entry.setCrc(crc.getValue());
+                zip.putNextEntry(entry);
+                zip.write(mimetype);
+                zip.closeEntry();
+            }
+            for (int i = 0; i + 1 < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,119 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PDFFileReaderTest {
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    private ThreadPoolTaskExecutor executor(int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    private static MockMultipartFile pdf(byte[] content) {
+        return new MockMultipartFile("file", "file.pdf", "application/pdf", content);
+    }
+
+    @Test
+    void parallelSlicesMatchSinglePass() throws IOException {
+        MockMultipartFile file = pdf(PdfFixtures.pages(10, 5));
+        PDFFileReader single = new PDFFileReader(executor(1), 1000, Duration.ofSeconds(30));
+        PDFFileReader parallel = new PDFFileReader(executor(3), 1, Duration.ofSeconds(30));
+
+        String html = parallel.readFile(file);
+
+        assertThat(html).isEqualTo(single.readFile(file));
+        assertThat(html).startsWith("<html><body><p>Page 1 line 1: a &lt; b &amp; c</p>");
+        // Диапазоны объединены в порядке страниц
+        for (int page = 1; page < 10; page++) {
+            assertThat(html.indexOf("Page " + page + " line 5")).isLessThan(html.indexOf("Page " + (page + 1) + " line 1"));
+        }
+    }
+
+    @Test
+    void fullQueueFallsBackToCallerThread() throws IOException {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        executors.add(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        // Поток пула и единственное место в очереди заняты другими загрузками
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> awaitQuietly(release));
+        }
+
+        try {
+            // Второй диапазон не помещается в очередь и читается в потоке запроса, без ожидания пула
+            String html = new PDFFileReader(executor, 2, Duration.ofMillis(100)).readFile(pdf(PdfFixtures.pages(6, 2)));
+
+            assertThat(html).contains("Page 1 line 1", "Page 6 line 2");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void sliceTimeoutCancelsRead() throws Exception {
+        ThreadPoolTaskExecutor executor = executor(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Единственный поток пула занят другой загрузкой
+        executor.execute(() -> awaitQuietly(release));
+        PDFFileReader reader = new PDFFileReader(executor, 1, Duration.ofMillis(100));
+
+        try {
+            assertThatThrownBy(() -> reader.readFile(pdf(PdfFixtures.pages(4, 1))))
+                    .isInstanceOf(BaseCoreServiceException.class)
+                    .satisfies(e -> assertThat(((BaseCoreServiceException) e).getStatusCode())
+                            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void brokenFileIsBadRequest() {
+        PDFFileReader reader = new PDFFileReader(executor(1), 20, Duration.ofSeconds(30));
+
+        assertThatThrownBy(() -> reader.readFile(pdf("%PDF-1.4 broken".getBytes())))
+                .isInstanceOf(BaseCoreServiceException.class)
+                .satisfies(e -> assertThat(((BaseCoreServiceException) e).getStatusCode())
+                        .isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
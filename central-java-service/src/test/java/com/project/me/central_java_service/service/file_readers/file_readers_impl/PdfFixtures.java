@@ -0,0 +1,39 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Тестовые pdf, собранные через PDFBox
+final class PdfFixtures {
+    private PdfFixtures() {
+    }
+
+    // Документ из pages страниц, на каждой linesPerPage строк с номером страницы
+    static byte[] pages(int pages, int linesPerPage) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(12);
+                    content.newLineAtOffset(40, 750);
+                    for (int line = 1; line <= linesPerPage; line++) {
+                        content.showText("Page " + page + " line " + line + ": a < b & c");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RTFFileReaderTest {
+    private static final Charset CP1251 = Charset.forName("windows-1251");
+    private static final String HEADER = "{\\rtf1\\ansi\\ansicpg1251\\deff0{\\fonttbl{\\f0\\fnil\\fcharset204 Arial;}}\\f0 ";
+
+    private final RTFFileReader reader = new RTFFileReader();
+
+    private String read(byte[] content) {
+        return reader.readFile(new MockMultipartFile("file", "file.rtf", "application/rtf", content));
+    }
+
+    // Текст вне ASCII записывается в файл как есть, в кодировке cp1251
+    private String read(String rtf) {
+        return read(rtf.getBytes(CP1251));
+    }
+
+    private static String paragraph(String html) {
+        return "<p style=\"text-align: left;\">" + html + "</p>";
+    }
+
+    @Test
+    void escapedCp1251BytesAreDecoded() {
+        assertThat(read(HEADER + "\\'cf\\'f0\\'e8\\'e2\\'e5\\'f2, \\'ec\\'e8\\'f0!\\par}"))
+                .isEqualTo(paragraph("Привет, мир!"));
+    }
+
+    @Test
+    void unescapedCp1251BytesAreDecoded() {
+        ByteArrayOutputStream rtf = new ByteArrayOutputStream();
+        rtf.writeBytes(HEADER.getBytes(StandardCharsets.US_ASCII));
+        rtf.writeBytes("Съешь ещё".getBytes(CP1251));
+        rtf.writeBytes("\\par}".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(read(rtf.toByteArray())).isEqualTo(paragraph("Съешь ещё"));
+    }
+
+    @Test
+    void fontCharsetOverridesDocumentCodePage() {
+        // Документ в 1252, кириллица только у шрифта f1
+        String rtf = "{\\rtf1\\ansi\\ansicpg1252{\\fonttbl{\\f0\\froman Times;}{\\f1\\fswiss\\fcharset204 Arial;}}"
+                + "\\f0 caf\\'e9 {\\f1 \\'cc\\'e8\\'f0} caf\\'e9\\par}";
+
+        assertThat(read(rtf)).isEqualTo(paragraph("café Мир café"));
+    }
+
+    @Test
+    void unicodeWithFallbackCharacter() {
+        assertThat(read(HEADER + "\\u1055?\\u1088?\\u1080?\\u1074?\\u1077?\\u1090?\\par}"))
+                .isEqualTo(paragraph("Привет"));
+        // Заменой может быть и байт в шестнадцатеричной записи
+        assertThat(read(HEADER + "\\u1046\\'c6\\u1046\\'c6\\par}")).isEqualTo(paragraph("ЖЖ"));
+        // Отрицательное значение - знаковое 16-битное число: -3913 = 0xF0B7 (маркер списка шрифта Symbol)
+        assertThat(read(HEADER + "\\u-3913?\\par}")).isEqualTo(paragraph("\uF0B7"));
+    }
+
+    @Test
+    void unicodeSkipCountIsApplied() {
+        assertThat(read(HEADER + "\\uc2\\u1071??x\\par}")).isEqualTo(paragraph("Яx"));
+        assertThat(read(HEADER + "\\uc0\\u1071 x\\par}")).isEqualTo(paragraph("Яx"));
+        // Число пропускаемых символов (uc) действует до конца группы
+        assertThat(read(HEADER + "{\\uc2\\u1071??}\\u1071?x\\par}")).isEqualTo(paragraph("ЯЯx"));
+    }
+
+    @Test
+    void ignorableAndServiceDestinationsAreSkipped() {
+        String rtf = HEADER
+                + "{\\*\\generator Msftedit 5.41;}"
+                + "{\\info{\\title Заголовок}{\\author Автор}}"
+                + "{\\*\\unknown внешний {\\b вложенный} текст}"
+                + "{\\colortbl ;\\red255\\green0\\blue0;}"
+                + "{\\header колонтитул\\par}"
+                + "Текст\\par}";
+
+        assertThat(read(rtf)).isEqualTo(paragraph("Текст"));
+    }
+
+    @Test
+    void textAfterSkippedGroupIsKept() {
+        assertThat(read(HEADER + "до{\\*\\bkmkstart x}{\\*\\bkmkend x} после\\par}"))
+                .isEqualTo(paragraph("до после"));
+    }
+
+    @Test
+    void escapedBracesAndBackslashAreText() {
+        assertThat(read(HEADER + "\\{a\\} \\\\ b\\par}")).isEqualTo(paragraph("{a} \\ b"));
+    }
+
+    @Test
+    void formattingAndParagraphs() {
+        assertThat(read(HEADER + "\\qc\\b\\fs28 Заголовок\\b0\\par\\pard обычный \\i курсив\\i0\\par}"))
+                .isEqualTo("<p style=\"text-align: center;\"><span style=\"font-size: 14px;\"><strong>Заголовок</strong></span></p>"
+                        + "<p style=\"text-align: left;\"><span style=\"font-size: 14px;\">обычный </span>"
+                        + "<span style=\"font-size: 14px;\"><i>курсив</i></span></p>");
+    }
+}
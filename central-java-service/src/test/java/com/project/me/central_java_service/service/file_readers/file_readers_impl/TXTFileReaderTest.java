@@ -0,0 +1,46 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import com.project.me.central_java_service.util.TextCharsetDetector;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TXTFileReaderTest {
+    private final TXTFileReader reader = new TXTFileReader();
+
+    private String read(String text, Charset charset) {
+        return reader.readFile(new MockMultipartFile("file", "file.txt", "text/plain", text.getBytes(charset)));
+    }
+
+    @Test
+    void lineBreaksAreNormalized() {
+        assertThat(read("a\r\nb\nc\rd", StandardCharsets.UTF_8)).isEqualTo("a<br>b<br>c<br>d");
+    }
+
+    @Test
+    void textIsEscaped() {
+        assertThat(read("<script>a & b</script>", StandardCharsets.UTF_8)).isEqualTo("&lt;script&gt;a &amp; b&lt;/script&gt;");
+    }
+
+    @Test
+    void legacyCharsetsAreDecoded() {
+        String text = "Привет, мир! Это проверка определения кодировки.";
+
+        assertThat(read(text, TextCharsetDetector.CP1251)).isEqualTo(text);
+        assertThat(read(text, TextCharsetDetector.KOI8_R)).isEqualTo(text);
+        assertThat(read(text, StandardCharsets.UTF_16LE)).isEqualTo(text);
+    }
+
+    @Test
+    void largeFileIsReadCompletely() {
+        // Больше начального размера буфера и границы куска чтения
+        String line = "строка текста\n";
+        String text = line.repeat(20_000);
+
+        assertThat(read(text, StandardCharsets.UTF_8)).isEqualTo("строка текста<br>".repeat(20_000));
+    }
+}
@@ -0,0 +1,57 @@
+package com.project.me.central_java_service.service.file_readers.file_readers_impl;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+// Прежнее чтение docx через XWPFDocument. Эталон, с которым сравнивается потоковый DocXFileReader
+// в тестах и в benchmark-профиле
+final class XwpfDocxReader {
+    private XwpfDocxReader() {
+    }
+
+    static String read(byte[] docx) throws IOException {
+        StringBuilder htmlContent = new StringBuilder();
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(docx))) {
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                String alignStyle = switch (paragraph.getAlignment()) {
+                    case CENTER -> "text-align: center;";
+                    case RIGHT -> "text-align: right;";
+                    case BOTH -> "text-align: justify;";
+                    default -> "text-align: left;";
+                };
+                htmlContent.append(String.format("<p style=\"%s\">", alignStyle));
+
+                for (XWPFRun run : paragraph.getRuns()) {
+                    int fontSize = run.getFontSize();
+                    String fontSizeStyle = fontSize > 0 ? String.format("font-size: %dpx;", fontSize) : "";
+                    htmlContent.append(String.format("<span style=\"%s\">", fontSizeStyle));
+                    if (run.isBold()) {
+                        htmlContent.append("<strong>");
+                    }
+                    if (run.isItalic()) {
+                        htmlContent.append("<i>");
+                    }
+                    htmlContent.append(run.text()
+                            .replace("&", "&amp;")
+                            .replace("<", "&lt;")
+                            .replace(">", "&gt;")
+                            .replace("\n", "<br>")
+                            .replace("\r", "<br>"));
+                    if (run.isItalic()) {
+                        htmlContent.append("</i>");
+                    }
+                    if (run.isBold()) {
+                        htmlContent.append("</strong>");
+                    }
+                    htmlContent.append("</span>");
+                }
+                htmlContent.append("</p>");
+            }
+        }
+        return htmlContent.toString();
+    }
+}
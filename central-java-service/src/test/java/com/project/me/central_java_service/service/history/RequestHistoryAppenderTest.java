@@ -0,0 +1,228 @@
+package com.project.me.central_java_service.service.history;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.project.me.central_java_service.model.entity.TextAiRequest;
+import com.project.me.central_java_service.service.UserRevisionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RequestHistoryAppenderTest {
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final UserRevisionService revisionService = mock(UserRevisionService.class);
+    // Содержимое пачек, переданных в базу
+    private final List<List<TextAiRequest>> inserted = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenAnswer(call -> {
+            inserted.add(List.copyOf(call.<List<TextAiRequest>>getArgument(0)));
+            return bulk;
+        });
+    }
+
+    private RequestHistoryAppender appender(Duration retryDelay) {
+        return new RequestHistoryAppender(mongoTemplate, revisionService, new SimpleMeterRegistry(), 100, 10,
+                retryDelay, Duration.ofMinutes(1));
+    }
+
+    private static TextAiRequest request() {
+        TextAiRequest request = new TextAiRequest();
+        request.setAiRequestId(UUID.randomUUID().toString());
+        request.setRequestTime(LocalDateTime.now());
+        return request;
+    }
+
+    @Test
+    void outageDoesNotSpinAndBacksOff() {
+        when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+        RequestHistoryAppender appender = appender(Duration.ofMinutes(1));
+        for (int i = 0; i < 25; i++) {
+            appender.append("user", request());
+        }
+
+        appender.flush();
+        // Одна попытка на первую пачку, остальные ждут вместе с ней
+        verify(bulk, times(1)).execute();
+        assertThat(appender.hasBuffered("user")).isTrue();
+
+        // Пауза после ошибки еще не прошла: база не нагружается повторами
+        appender.flush();
+        verify(bulk, times(1)).execute();
+    }
+
+    @Test
+    void failedRecordsAreRetriedAfterOutage() {
+        when(bulk.execute())
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(BulkWriteResult.unacknowledged());
+        RequestHistoryAppender appender = appender(Duration.ZERO);
+        for (int i = 0; i < 5; i++) {
+            appender.append("user", request());
+        }
+
+        appender.flush();
+        appender.flush();
+
+        assertThat(inserted).hasSize(2);
+        assertThat(inserted.get(1)).hasSize(5);
+        assertThat(appender.hasBuffered("user")).isFalse();
+    }
+
+    @Test
+    void rejectedRecordIsNotRetried() {
+        BulkWriteError invalid = new BulkWriteError(121, "Document failed validation", new BsonDocument(), 0);
+        when(bulk.execute()).thenThrow(new BulkOperationException("rejected", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(invalid), null, new ServerAddress(), Set.of())));
+        RequestHistoryAppender appender = appender(Duration.ZERO);
+        appender.append("user", request());
+        appender.append("user", request());
+
+        appender.flush();
+        appender.flush();
+
+        // Ошибка документа постоянна: запись уходит в лог, а не в повтор
+        assertThat(inserted).hasSize(1);
+        assertThat(appender.hasBuffered("user")).isFalse();
+        verify(revisionService).increment(Set.of("user"), UserRevisionService.HISTORY);
+    }
+
+    @Test
+    void flushWritesOnlyRecordsPresentAtStart() {
+        RequestHistoryAppender appender = appender(Duration.ZERO);
+        for (int i = 0; i < 3; i++) {
+            appender.append("user", request());
+        }
+        // Запись, добавленная во время сохранения, ждет следующего вызова
+        when(bulk.execute()).thenAnswer(call -> {
+            if (inserted.size() == 1) {
+                appender.append("user", request());
+            }
+            return BulkWriteResult.unacknowledged();
+        });
+
+        appender.flush();
+        assertThat(inserted).hasSize(1);
+        assertThat(appender.hasBuffered("user")).isTrue();
+
+        appender.flush();
+        assertThat(inserted).hasSize(2);
+        verify(revisionService, times(2)).increment(any(Set.class), anyString());
+    }
+
+    @Test
+    void pendingRecordsAreTrackedPerUser() {
+        RequestHistoryAppender appender = appender(Duration.ZERO);
+        TextAiRequest request = request();
+        request.setRequestTime(LocalDateTime.of(2026, 1, 1, 12, 0, 0, 123_456_789));
+        appender.append("first", request);
+        appender.append("second", request());
+
+        assertThat(appender.hasBuffered("first")).isTrue();
+        assertThat(appender.hasBuffered("third")).isFalse();
+        assertThat(appender.buffered("first")).containsExactly(request);
+        // Время обрезано до точности базы, чтобы курсор не менялся после сохранения
+        assertThat(request.getRequestTime().getNano()).isEqualTo(123_000_000);
+
+        when(bulk.execute()).thenReturn(BulkWriteResult.unacknowledged());
+        appender.flush();
+
+        assertThat(appender.hasBuffered("first")).isFalse();
+        assertThat(appender.hasBuffered("second")).isFalse();
+        assertThat(appender.buffered("first")).isEmpty();
+    }
+
+    @Test
+    void recordIsVisibleWhileFlushMovesIt() throws Exception {
+        RequestHistoryAppender appender = appender(Duration.ZERO);
+        Set<String> appended = ConcurrentHashMap.newKeySet();
+        Set<String> saved = ConcurrentHashMap.newKeySet();
+        when(bulk.execute()).thenAnswer(call -> {
+            inserted.get(inserted.size() - 1).forEach(request -> saved.add(request.getAiRequestId()));
+            return BulkWriteResult.unacknowledged();
+        });
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            while (running.get()) {
+                TextAiRequest request = request();
+                appender.append("user", request);
+                appended.add(request.getAiRequestId());
+                appender.flush();
+            }
+        });
+        writer.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while (System.nanoTime() < deadline) {
+                // Запись, добавленная до чтения, есть либо среди несохраненных, либо уже в базе
+                Set<String> expected = Set.copyOf(appended);
+                Set<String> visible = new HashSet<>();
+                appender.buffered("user").forEach(request -> visible.add(request.getAiRequestId()));
+                visible.addAll(saved);
+                assertThat(visible).containsAll(expected);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    void fullBufferDropsRecordWithoutWritingOnCallerThread() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RequestHistoryAppender appender = new RequestHistoryAppender(mongoTemplate, revisionService, registry, 2, 10,
+                Duration.ZERO, Duration.ofMinutes(1));
+        List<String> writers = new CopyOnWriteArrayList<>();
+        CountDownLatch written = new CountDownLatch(1);
+        when(bulk.execute()).thenAnswer(call -> {
+            writers.add(Thread.currentThread().getName());
+            written.countDown();
+            return BulkWriteResult.unacknowledged();
+        });
+        appender.append("user", request());
+        appender.append("user", request());
+        TextAiRequest overflow = request();
+
+        appender.append("user", overflow);
+
+        // Переполненный буфер не сохраняется в потоке Kafka: запись теряется, сохранение уходит потоку сохранения
+        assertThat(registry.counter("ai.history.dropped").count()).isEqualTo(1);
+        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(writers).containsOnly("history-flusher");
+        assertThat(inserted.get(0)).hasSize(2).doesNotContain(overflow);
+        appender.shutdown();
+    }
+}
@@ -0,0 +1,97 @@
+package com.project.me.central_java_service.service.history;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.model.dto.RequestHistoryItemDTO;
+import com.project.me.central_java_service.model.dto.RequestHistoryPageDTO;
+import com.project.me.central_java_service.model.entity.TextAiRequest;
+import com.project.me.central_java_service.model.entity.UserRevision;
+import com.project.me.central_java_service.service.UserRevisionService;
+import com.project.me.central_java_service.util.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RequestHistoryServiceTest {
+    private static final String USER = "user@example.com";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final RequestHistoryAppender appender = mock(RequestHistoryAppender.class);
+    private final UserRevisionService revisionService = new UserRevisionService(mongoTemplate);
+    private final RequestHistoryService service = new RequestHistoryService(mongoTemplate, appender, revisionService, 100);
+
+    private static TextAiRequest request(String id, int minutesAgo) {
+        TextAiRequest request = new TextAiRequest();
+        request.setAiRequestId(id);
+        request.setUserEmail(USER);
+        request.setPrompt("prompt " + id);
+        request.setRequestTime(NOW.minusMinutes(minutesAgo));
+        return request;
+    }
+
+    private static List<String> ids(RequestHistoryPageDTO page) {
+        return page.items().stream().map(RequestHistoryItemDTO::aiRequestId).toList();
+    }
+
+    @Test
+    void bufferedRecordsAreMergedWithoutFlush() {
+        when(mongoTemplate.find(any(Query.class), eq(TextAiRequest.class)))
+                .thenReturn(new ArrayList<>(List.of(request("db-1", 10), request("db-2", 20))));
+        when(appender.buffered(USER)).thenReturn(List.of(request("new", 1), request("db-1", 10)));
+
+        RequestHistoryPageDTO page = service.getPage(USER, null, 2);
+
+        // Новая запись из буфера первая, запись, уже сохраненная в базу, не повторяется
+        assertThat(ids(page)).containsExactly("new", "db-1");
+        assertThat(KeysetCursor.decode(page.nextCursor())).isEqualTo(new KeysetCursor(NOW.minusMinutes(10), "db-1"));
+        verify(appender, never()).flush();
+    }
+
+    @Test
+    void bufferedRecordsBeforeCursorAreSkipped() {
+        when(mongoTemplate.find(any(Query.class), eq(TextAiRequest.class)))
+                .thenReturn(new ArrayList<>(List.of(request("db-2", 20))));
+        when(appender.buffered(USER)).thenReturn(List.of(request("new", 1)));
+        String cursor = new KeysetCursor(NOW.minusMinutes(10), "db-1").encode();
+
+        RequestHistoryPageDTO page = service.getPage(USER, cursor, 10);
+
+        assertThat(ids(page)).containsExactly("db-2");
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void entryIsFoundInBuffer() {
+        when(appender.buffered(USER)).thenReturn(List.of(request("new", 1)));
+
+        assertThat(service.getEntry(USER, "new").getAiRequestId()).isEqualTo("new");
+        assertThatThrownBy(() -> service.getEntry(USER, "missing")).isInstanceOf(BaseCoreServiceException.class);
+    }
+
+    @Test
+    void eTagIsSkippedWhileUserHasBufferedRecords() {
+        UserRevision revision = new UserRevision();
+        revision.setHistory(3);
+        when(mongoTemplate.findOne(any(Query.class), eq(UserRevision.class))).thenReturn(revision);
+
+        when(appender.hasBuffered(USER)).thenReturn(true);
+        assertThat(service.getPageETag(USER, null, 20)).isEmpty();
+
+        when(appender.hasBuffered(USER)).thenReturn(false);
+        assertThat(service.getPageETag(USER, null, 20)).contains(UserRevisionService.eTag(3L, null, 20));
+        assertThat(service.getPageETag(USER, "cursor", 20)).isNotEqualTo(service.getPageETag(USER, null, 20));
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.me.central_java_service.util;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocumentETagTest {
+
+    @Test
+    void versionRoundTrips() {
+        assertThat(DocumentETag.parse(DocumentETag.of(12))).isEqualTo(12L);
+    }
+
+    @Test
+    void weakAndBareValuesAreAccepted() {
+        assertThat(DocumentETag.parse("W/\"7\"")).isEqualTo(7L);
+        assertThat(DocumentETag.parse(" 7 ")).isEqualTo(7L);
+    }
+
+    @Test
+    void missingOrAnyMeansNoCheck() {
+        assertThat(DocumentETag.parse(null)).isNull();
+        assertThat(DocumentETag.parse(" ")).isNull();
+        assertThat(DocumentETag.parse("*")).isNull();
+    }
+
+    @Test
+    void malformedValueIsBadRequest() {
+        assertThatThrownBy(() -> DocumentETag.parse("\"abc\"")).isInstanceOf(BaseCoreServiceException.class);
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.me.central_java_service.util;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 1, 1, 12, 0, 0, 123_000_000);
+
+    @Test
+    void encodedCursorIsDecoded() {
+        KeysetCursor cursor = new KeysetCursor(TIME, "abc|def");
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void malformedCursorIsBadRequest() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor")).isInstanceOf(BaseCoreServiceException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("bm8tc2VwYXJhdG9y")).isInstanceOf(BaseCoreServiceException.class);
+    }
+
+    @Test
+    void afterMeansOlderOrSameTimeWithSmallerId() {
+        KeysetCursor cursor = new KeysetCursor(TIME, "m");
+
+        assertThat(cursor.isAfter(TIME.minusNanos(1_000_000), "z")).isTrue();
+        assertThat(cursor.isAfter(TIME, "a")).isTrue();
+        assertThat(cursor.isAfter(TIME, "m")).isFalse();
+        assertThat(cursor.isAfter(TIME, "z")).isFalse();
+        assertThat(cursor.isAfter(TIME.plusNanos(1_000_000), "a")).isFalse();
+    }
+}
@@ -0,0 +1,29 @@
+package com.project.me.central_java_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PreMadePromptsTest {
+    private final PreMadePrompts prompts = new PreMadePrompts();
+
+    @Test
+    void optionsCannotBeModified() {
+        Map<String, String> options = prompts.getOptions();
+        String instruction = options.keySet().iterator().next();
+
+        assertThatThrownBy(() -> options.put("Новая инструкция", "Повысить ясность"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> options.remove(instruction)).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(prompts.getOptions()).containsKey(instruction).doesNotContainKey("Новая инструкция");
+    }
+
+    @Test
+    void unknownInstructionIsNotChunkable() {
+        assertThat(prompts.isChunkable("Своя инструкция")).isFalse();
+        assertThat(prompts.expectedOutputChars("Своя инструкция", 123)).isEqualTo(123);
+    }
+}
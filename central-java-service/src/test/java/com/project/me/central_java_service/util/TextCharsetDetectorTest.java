@@ -0,0 +1,64 @@
+package com.project.me.central_java_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextCharsetDetectorTest {
+    private static final String RUSSIAN = "Стороны обязуются выполнить работы в срок, согласно приложению к договору.\n";
+
+    private static TextCharsetDetector.Detection detect(byte[] sample) {
+        return TextCharsetDetector.detect(sample, sample.length);
+    }
+
+    private static byte[] withBom(byte[] bom, String text, Charset charset) {
+        byte[] body = text.getBytes(charset);
+        byte[] result = new byte[bom.length + body.length];
+        System.arraycopy(bom, 0, result, 0, bom.length);
+        System.arraycopy(body, 0, result, bom.length, body.length);
+        return result;
+    }
+
+    @Test
+    void bomSelectsCharsetAndIsSkipped() {
+        assertThat(detect(withBom(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, RUSSIAN, StandardCharsets.UTF_8)))
+                .isEqualTo(new TextCharsetDetector.Detection(StandardCharsets.UTF_8, 3));
+        assertThat(detect(withBom(new byte[]{(byte) 0xFE, (byte) 0xFF}, RUSSIAN, StandardCharsets.UTF_16BE)))
+                .isEqualTo(new TextCharsetDetector.Detection(StandardCharsets.UTF_16BE, 2));
+        assertThat(detect(withBom(new byte[]{(byte) 0xFF, (byte) 0xFE}, RUSSIAN, StandardCharsets.UTF_16LE)))
+                .isEqualTo(new TextCharsetDetector.Detection(StandardCharsets.UTF_16LE, 2));
+    }
+
+    @Test
+    void utf16WithoutBomIsDetectedByHighBytes() {
+        assertThat(detect(RUSSIAN.getBytes(StandardCharsets.UTF_16LE)))
+                .isEqualTo(new TextCharsetDetector.Detection(StandardCharsets.UTF_16LE, 0));
+        assertThat(detect(RUSSIAN.getBytes(StandardCharsets.UTF_16BE)))
+                .isEqualTo(new TextCharsetDetector.Detection(StandardCharsets.UTF_16BE, 0));
+        assertThat(detect("Plain latin text\n".getBytes(StandardCharsets.UTF_16LE)).charset())
+                .isEqualTo(StandardCharsets.UTF_16LE);
+    }
+
+    @Test
+    void utf8WithoutBom() {
+        assertThat(detect(RUSSIAN.getBytes(StandardCharsets.UTF_8)))
+                .isEqualTo(new TextCharsetDetector.Detection(StandardCharsets.UTF_8, 0));
+        // Последовательность, обрезанная концом образца, не делает его не-UTF-8
+        byte[] truncated = "текст".getBytes(StandardCharsets.UTF_8);
+        assertThat(TextCharsetDetector.detect(truncated, truncated.length - 1).charset()).isEqualTo(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void cp1251AndKoi8rAreToldApart() {
+        assertThat(detect(RUSSIAN.getBytes(TextCharsetDetector.CP1251)).charset()).isEqualTo(TextCharsetDetector.CP1251);
+        assertThat(detect(RUSSIAN.getBytes(TextCharsetDetector.KOI8_R)).charset()).isEqualTo(TextCharsetDetector.KOI8_R);
+    }
+
+    @Test
+    void asciiIsUtf8() {
+        assertThat(detect("hello, world\n".getBytes(StandardCharsets.US_ASCII)).charset()).isEqualTo(StandardCharsets.UTF_8);
+    }
+}
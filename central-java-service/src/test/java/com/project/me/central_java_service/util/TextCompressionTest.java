@@ -0,0 +1,91 @@
+package com.project.me.central_java_service.util;
+
+import com.github.luben.zstd.Zstd;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class TextCompressionTest {
+    private static final String TEXT = "Съешь же ещё этих мягких французских булок, да выпей чаю. 😀 ".repeat(200);
+
+    @Test
+    void zstdRoundTrip() {
+        byte[] compressed = TextCompression.compress(TEXT, TextCompression.ZSTD, 3);
+
+        assertThat(compressed.length).isLessThan(TEXT.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(TextCompression.decompress(compressed, TextCompression.ZSTD)).isEqualTo(TEXT);
+    }
+
+    @Test
+    void deflateRoundTrip() {
+        byte[] compressed = TextCompression.compress(TEXT, TextCompression.DEFLATE, 6);
+
+        assertThat(compressed.length).isLessThan(TEXT.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(TextCompression.decompress(compressed, TextCompression.DEFLATE)).isEqualTo(TEXT);
+    }
+
+    @Test
+    void emptyTextRoundTrip() {
+        assertThat(TextCompression.decompress(TextCompression.compress("", TextCompression.ZSTD, 3), TextCompression.ZSTD)).isEmpty();
+        assertThat(TextCompression.decompress(TextCompression.compress("", TextCompression.DEFLATE, 6), TextCompression.DEFLATE)).isEmpty();
+    }
+
+    @Test
+    void unknownCodecIsRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> TextCompression.compress(TEXT, "lzma", 1));
+        assertThatIllegalArgumentException().isThrownBy(() -> TextCompression.decompress(new byte[1], "lzma"));
+    }
+
+    @Test
+    void corruptedZstdIsRejected() {
+        byte[] compressed = TextCompression.compress(TEXT, TextCompression.ZSTD, 3);
+
+        assertThatIllegalStateException().isThrownBy(() -> TextCompression.decompress(new byte[]{1, 2, 3, 4}, TextCompression.ZSTD));
+        // Заголовок кадра цел, данные обрезаны
+        assertThatIllegalStateException().isThrownBy(() ->
+                TextCompression.decompress(Arrays.copyOf(compressed, compressed.length / 2), TextCompression.ZSTD));
+    }
+
+    @Test
+    void corruptedDeflateIsRejected() {
+        byte[] compressed = TextCompression.compress(TEXT, TextCompression.DEFLATE, 6);
+
+        assertThatIllegalStateException().isThrownBy(() -> TextCompression.decompress(new byte[]{1, 2, 3, 4}, TextCompression.DEFLATE));
+        assertThatIllegalStateException().isThrownBy(() ->
+                TextCompression.decompress(Arrays.copyOf(compressed, compressed.length / 2), TextCompression.DEFLATE));
+    }
+
+    @Test
+    void zstdFrameSizeAboveLimitIsRejected() {
+        // Кадр с записанным размером больше int: приведение к int дало бы отрицательный или урезанный размер
+        byte[] frame = ByteBuffer.allocate(14).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0xFD2FB528)
+                .put((byte) 0xE0)
+                .putLong(1L << 40)
+                .array();
+        assertThat(Zstd.getFrameContentSize(frame)).isEqualTo(1L << 40);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> TextCompression.decompress(frame, TextCompression.ZSTD))
+                .withMessageContaining("превышает");
+    }
+
+    @Test
+    void textAboveLimitIsRejected() {
+        String text = "а".repeat(1000);
+
+        assertThatIllegalStateException().isThrownBy(() ->
+                TextCompression.decompress(TextCompression.compress(text, TextCompression.ZSTD, 3), TextCompression.ZSTD, 1999));
+        assertThatIllegalStateException().isThrownBy(() ->
+                TextCompression.decompress(TextCompression.compress(text, TextCompression.DEFLATE, 6), TextCompression.DEFLATE, 1999));
+        assertThat(TextCompression.decompress(TextCompression.compress(text, TextCompression.DEFLATE, 6), TextCompression.DEFLATE, 2000))
+                .isEqualTo(text);
+    }
+}
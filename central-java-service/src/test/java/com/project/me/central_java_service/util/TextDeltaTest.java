@@ -0,0 +1,107 @@
+package com.project.me.central_java_service.util;
+
+import com.project.me.central_java_service.exception.BaseCoreServiceException;
+import com.project.me.central_java_service.model.dto.TextEditOperation;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextDeltaTest {
+
+    private static TextEditOperation retain(int length) {
+        return new TextEditOperation(length, null, null);
+    }
+
+    private static TextEditOperation insert(String text) {
+        return new TextEditOperation(null, text, null);
+    }
+
+    private static TextEditOperation delete(int length) {
+        return new TextEditOperation(null, null, length);
+    }
+
+    private static void assertBadRequest(String base, TextEditOperation... ops) {
+        assertThatThrownBy(() -> TextDelta.apply(base, Arrays.asList(ops)))
+                .isInstanceOfSatisfying(BaseCoreServiceException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void retainInsertDeleteCombination() {
+        assertThat(TextDelta.apply("hello world", List.of(retain(6), delete(5), insert("there"))))
+                .isEqualTo("hello there");
+        assertThat(TextDelta.apply("abc", List.of(insert("x"), retain(1), insert("y"), delete(1), retain(1))))
+                .isEqualTo("xayc");
+    }
+
+    @Test
+    void textAfterLastOperationIsRetained() {
+        assertThat(TextDelta.apply("abcdef", List.of(retain(2), insert("-")))).isEqualTo("ab-cdef");
+        assertThat(TextDelta.apply("abcdef", List.of(delete(2)))).isEqualTo("cdef");
+        assertThat(TextDelta.apply("abcdef", List.of())).isEqualTo("abcdef");
+    }
+
+    @Test
+    void operationsOnEmptyText() {
+        assertThat(TextDelta.apply("", List.of(insert("текст")))).isEqualTo("текст");
+        assertThat(TextDelta.apply("", List.of(retain(0), delete(0)))).isEmpty();
+    }
+
+    @Test
+    void wholeTextCanBeReplaced() {
+        assertThat(TextDelta.apply("старый", List.of(delete(6), insert("новый")))).isEqualTo("новый");
+    }
+
+    @Test
+    void retainOrDeleteBeyondTextIsBadRequest() {
+        assertBadRequest("abc", retain(4));
+        assertBadRequest("abc", delete(4));
+        assertBadRequest("abc", retain(2), delete(2));
+        // Вставка не сдвигает позицию в исходном тексте
+        assertBadRequest("abc", insert("xyz"), retain(4));
+    }
+
+    @Test
+    void negativeLengthIsBadRequest() {
+        assertBadRequest("abc", retain(-1));
+        assertBadRequest("abc", retain(2), delete(-1));
+    }
+
+    @Test
+    void operationWithoutExactlyOneFieldIsBadRequest() {
+        assertBadRequest("abc", new TextEditOperation(null, null, null));
+        assertBadRequest("abc", new TextEditOperation(1, "x", null));
+        assertBadRequest("abc", new TextEditOperation(1, null, 1));
+        assertBadRequest("abc", new TextEditOperation(1, "x", 1));
+        assertBadRequest("abc", retain(1), null);
+    }
+
+    @Test
+    void cyrillicIsCountedByChars() {
+        assertThat(TextDelta.apply("Привет, мир", List.of(retain(8), delete(3), insert("Москва"))))
+                .isEqualTo("Привет, Москва");
+    }
+
+    @Test
+    void surrogatePairCountsAsTwoUnits() {
+        // Эмодзи вне BMP занимает две единицы UTF-16, как в Quill
+        String base = "a😀b";
+        assertThat(base).hasSize(4);
+
+        assertThat(TextDelta.apply(base, List.of(retain(3), insert("!")))).isEqualTo("a😀!b");
+        assertThat(TextDelta.apply(base, List.of(retain(1), delete(2)))).isEqualTo("ab");
+        assertThat(TextDelta.apply(base, List.of(retain(1), insert("😎")))).isEqualTo("a😎😀b");
+    }
+
+    @Test
+    void splittingSurrogatePairIsBadRequest() {
+        assertBadRequest("a😀b", retain(2), insert("x"));
+        assertBadRequest("a😀b", retain(1), delete(1));
+        assertBadRequest("a😀b", delete(2));
+    }
+}
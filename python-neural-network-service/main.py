@@ -1,134 +1,318 @@
-from fastapi import FastAPI
-import asyncio
-import json
-from aiokafka import AIOKafkaProducer, AIOKafkaConsumer
-from yandex_cloud_ml_sdk import YCloudML
-from typing import Optional
-
-app = FastAPI()
-
-# Конфигурация Kafka
-KAFKA_BOOTSTRAP_SERVERS = "localhost:9092"
-REQUEST_TOPIC = "text-processing-requests"
-RESPONSE_TOPIC = "text-processing-response"
-
-# Конфигурация Yandex Cloud ML SDK
-FOLDER_ID = ""
-API_KEY = ""
-
-# Глобальные переменные для producer, consumer и sdk
-producer: Optional[AIOKafkaProducer] = None
-consumer: Optional[AIOKafkaConsumer] = None
-sdk: Optional[YCloudML] = None
-
-
-async def process_text(instruction: str, text: str) -> str:
-    """Асинхронно обрабатывает текст с помощью YandexGPT через asyncio.to_thread."""
-    messages = [
-        {"role": "system", "text": instruction},
-        {"role": "user", "text": text},
-    ]
-
-    def sync_process():
-        """Синхронная функция для выполнения запроса к YandexGPT."""
-        try:
-            result = sdk.models.completions("yandexgpt").configure(temperature=0.4).run(messages)
-            for alternative in result:
-                return alternative.text if hasattr(alternative, "text") else str(alternative)
-            return "Ошибка: результат не получен"
-        except Exception as e:
-            print(f"Ошибка YandexGPT: {e}")
-            return f"Ошибка обработки: {str(e)}"
-
-    # Выполняем синхронный код в отдельном потоке
-    return await asyncio.to_thread(sync_process)
-
-
-async def kafka_consumer_loop():
-    """Асинхронная обработка сообщений из Kafka."""
-    global producer, consumer
-
-    try:
-        while True:
-            msg = await consumer.getone()  # Асинхронное получение сообщения
-
-            try:
-                message = json.loads(msg.value.decode("utf-8"))
-                request_id = message["requestId"]
-                text = message["text"]
-                instruction = message["instruction"]
-            except (json.JSONDecodeError, KeyError) as e:
-                print(f"Ошибка парсинга сообщения: {e}")
-                continue
-
-            # Асинхронная обработка текста
-            processed_text = await process_text(instruction, text)
-
-            # Формируем и отправляем ответ
-            response = {
-                "requestId": request_id,
-                "processedText": processed_text
-            }
-
-            try:
-                await producer.send_and_wait(
-                    RESPONSE_TOPIC,
-                    json.dumps(response).encode("utf-8")
-                )
-                print(f"Отправлен результат для requestId: {request_id}")
-            except Exception as e:
-                print(f"Ошибка при отправке в Kafka: {e}")
-
-    except Exception as e:
-        print(f"Ошибка в consumer loop: {e}")
-    finally:
-        await consumer.stop()
-
-
-@app.on_event("startup")
-async def startup_event():
-    """Инициализация асинхронных компонентов при запуске."""
-    global producer, consumer, sdk
-
-    # Инициализация асинхронного Kafka Producer
-    producer = AIOKafkaProducer(bootstrap_servers=KAFKA_BOOTSTRAP_SERVERS)
-    await producer.start()
-
-    # Инициализация асинхронного Kafka Consumer
-    consumer = AIOKafkaConsumer(
-        REQUEST_TOPIC,
-        bootstrap_servers=KAFKA_BOOTSTRAP_SERVERS,
-        group_id="python-service-group",
-        auto_offset_reset="earliest"
-    )
-    await consumer.start()
-
-    # Инициализация синхронного Yandex Cloud ML SDK
-    sdk = YCloudML(folder_id=FOLDER_ID, auth=API_KEY)
-
-    # Запуск consumer loop как фоновой задачи
-    asyncio.create_task(kafka_consumer_loop())
-    print("Асинхронный Kafka Consumer запущен")
-
-
-@app.on_event("shutdown")
-async def shutdown_event():
-    """Очистка ресурсов при остановке."""
-    global producer, consumer
-
-    if producer:
-        await producer.stop()
-    if consumer:
-        await consumer.stop()
-    print("Ресурсы очищены")
-
-
-@app.get("/")
-async def root():
-    return {"message": "Асинхронный Python-сервис на FastAPI работает"}
-
-
-if __name__ == "__main__":
-    import uvicorn
-
+from fastapi import FastAPI
+import asyncio
+import hashlib
+import json
+import os
+from aiokafka import AIOKafkaProducer, AIOKafkaConsumer
+from yandex_cloud_ml_sdk import YCloudML
+from typing import Optional
+
+app = FastAPI()
+
+# Конфигурация Kafka
+KAFKA_BOOTSTRAP_SERVERS = "localhost:9092"
+RESPONSE_TOPIC = "text-processing-response"
+# Полосы запросов: короткие интерактивные операции обрабатываются отдельно от длинных,
+# чтобы не ждать в общей очереди. Значение - группа consumer'ов и количество одновременно обрабатываемых запросов
+LANES = {
+    "text-processing-requests-short": ("python-service-group-short", int(os.getenv("SHORT_LANE_CONCURRENCY", "4"))),
+    "text-processing-requests": ("python-service-group", int(os.getenv("LONG_LANE_CONCURRENCY", "2"))),
+}
+# Заголовок с топиком ответа конкретного экземпляра central-сервиса
+REPLY_TOPIC_HEADER = "kafka_replyTopic"
+# Заголовки конверта сообщений: формат тела и алгоритм сжатия.
+# Сообщение без заголовков считается JSON без сжатия
+ENVELOPE_VERSION_HEADER = "x-envelope-version"
+CODEC_HEADER = "x-codec"
+COMPRESSION_HEADER = "x-compression"
+ENVELOPE_VERSION = "1"
+
+# Поддержка бинарных форматов и сжатия зависит от установленных пакетов (requirements.txt).
+# Если пакета нет, запрос в этом формате получает ответ с ошибкой
+try:
+    import cbor2
+except ImportError:
+    cbor2 = None
+try:
+    import zstandard
+except ImportError:
+    zstandard = None
+try:
+    import lz4.frame as lz4_frame
+except ImportError:
+    lz4_frame = None
+
+# Хранилище больших текстов (claim check): в Kafka передается только ссылка и SHA-256.
+# Текст результата больше порога сохраняется туда же, central-сервис удаляет его после чтения
+MONGO_URI = os.getenv("MONGO_URI", "mongodb://localhost:27017")
+MONGO_DB = os.getenv("MONGO_DB", "reflexia")
+CLAIM_CHECK_BUCKET = os.getenv("CLAIM_CHECK_BUCKET", "ai_payloads")
+CLAIM_CHECK_THRESHOLD = int(os.getenv("CLAIM_CHECK_THRESHOLD", "262144"))
+try:
+    import gridfs
+    from bson import ObjectId
+    from pymongo import MongoClient
+except ImportError:
+    gridfs = None
+
+# Конфигурация Yandex Cloud ML SDK
+FOLDER_ID = ""
+API_KEY = ""
+
+# Глобальные переменные для producer, consumers и sdk
+producer: Optional[AIOKafkaProducer] = None
+consumers: list[AIOKafkaConsumer] = []
+sdk: Optional[YCloudML] = None
+payload_store = None
+
+
+async def process_text(instruction: str, text: str) -> str:
+    """Асинхронно обрабатывает текст с помощью YandexGPT через asyncio.to_thread."""
+    messages = [
+        {"role": "system", "text": instruction},
+        {"role": "user", "text": text},
+    ]
+
+    def sync_process():
+        """Синхронная функция для выполнения запроса к YandexGPT."""
+        result = sdk.models.completions("yandexgpt").configure(temperature=0.4).run(messages)
+        for alternative in result:
+            return alternative.text if hasattr(alternative, "text") else str(alternative)
+        raise RuntimeError("результат не получен")
+
+    # Выполняем синхронный код в отдельном потоке
+    return await asyncio.to_thread(sync_process)
+
+
+def get_header(msg, name: str, default: str) -> str:
+    """Возвращает значение заголовка сообщения или значение по умолчанию."""
+    for key, value in msg.headers or []:
+        if key == name and value:
+            return value.decode("utf-8")
+    return default
+
+
+def get_reply_topic(msg) -> str:
+    """Возвращает топик ответа из заголовков сообщения или общий топик."""
+    return get_header(msg, REPLY_TOPIC_HEADER, RESPONSE_TOPIC)
+
+
+def decode_request(msg) -> tuple[dict, str]:
+    """Распаковка запроса по заголовкам конверта. Возвращает сообщение и формат для ответа."""
+    payload = msg.value
+    compression = get_header(msg, COMPRESSION_HEADER, "none")
+    if compression == "zstd" and zstandard:
+        payload = zstandard.ZstdDecompressor().decompressobj().decompress(payload)
+    elif compression == "lz4" and lz4_frame:
+        payload = lz4_frame.decompress(payload)
+    elif compression != "none":
+        raise ValueError(f"неподдерживаемое сжатие: {compression}")
+
+    codec = get_header(msg, CODEC_HEADER, "json")
+    if codec == "cbor" and cbor2:
+        return cbor2.loads(payload), "cbor"
+    if codec == "json":
+        return json.loads(payload.decode("utf-8")), "json"
+    raise ValueError(f"неподдерживаемый формат: {codec}")
+
+
+def load_payload(ref: str, sha256: str) -> str:
+    """Чтение текста из хранилища с проверкой контрольной суммы."""
+    if payload_store is None:
+        raise ValueError("хранилище текстов недоступно")
+    data = payload_store.get(ObjectId(ref)).read()
+    if sha256 and hashlib.sha256(data).hexdigest() != sha256:
+        raise ValueError(f"контрольная сумма текста не совпадает: {ref}")
+    return data.decode("utf-8")
+
+
+def offload_result(response: dict) -> dict:
+    """Замена большого результата ссылкой на хранилище."""
+    data = response["processedText"].encode("utf-8")
+    if payload_store is None or len(data) <= CLAIM_CHECK_THRESHOLD:
+        return response
+    sha256 = hashlib.sha256(data).hexdigest()
+    ref = payload_store.put(
+        data, filename="ai-payload", contentType="text/plain; charset=utf-8", metadata={"sha256": sha256}
+    )
+    return {"requestId": response["requestId"], "processedTextRef": str(ref), "processedTextSha256": sha256}
+
+
+def encode_reply(message: dict, codec: str) -> tuple[bytes, list]:
+    """Кодирование ответа в формате запроса. Ответы не сжимаются."""
+    body = cbor2.dumps(message) if codec == "cbor" else json.dumps(message).encode("utf-8")
+    headers = [
+        (ENVELOPE_VERSION_HEADER, ENVELOPE_VERSION.encode("utf-8")),
+        (CODEC_HEADER, codec.encode("utf-8")),
+        (COMPRESSION_HEADER, b"none"),
+    ]
+    return body, headers
+
+
+async def stream_text(instruction: str, text: str, on_delta) -> str:
+    """Потоковая обработка текста: новые части ответа передаются в on_delta по мере генерации."""
+    messages = [
+        {"role": "system", "text": instruction},
+        {"role": "user", "text": text},
+    ]
+    loop = asyncio.get_running_loop()
+    queue: asyncio.Queue = asyncio.Queue()
+
+    def sync_stream():
+        """SDK отдает накопленный текст целиком, поэтому в очередь кладется весь текст на текущий момент."""
+        try:
+            model = sdk.models.completions("yandexgpt").configure(temperature=0.4)
+            for result in model.run_stream(messages):
+                for alternative in result:
+                    loop.call_soon_threadsafe(queue.put_nowait, alternative.text)
+                    break
+        finally:
+            loop.call_soon_threadsafe(queue.put_nowait, None)
+
+    task = asyncio.create_task(asyncio.to_thread(sync_stream))
+    full_text = ""
+    while (current := await queue.get()) is not None:
+        if len(current) > len(full_text):
+            await on_delta(current[len(full_text):])
+            full_text = current
+    await task
+    return full_text
+
+
+async def reply_decode_error(msg, error: Exception):
+    """Ответ с ошибкой на запрос, который не удалось разобрать.
+    requestId берется из ключа сообщения, ответ кодируется в JSON - его понимает любой central-сервис."""
+    if not msg.key:
+        return
+    request_id = msg.key.decode("utf-8")
+    try:
+        body, headers = encode_reply({"requestId": request_id, "error": f"запрос не разобран: {error}"}, "json")
+        await producer.send_and_wait(get_reply_topic(msg), body, key=msg.key, headers=headers)
+    except Exception as e:
+        print(f"Ошибка при отправке в Kafka: {e}")
+
+
+async def handle_message(msg):
+    """Обработка одного запроса из Kafka и отправка ответа."""
+    try:
+        message, codec = decode_request(msg)
+        request_id = message["requestId"]
+        instruction = message["instruction"]
+        stream = message.get("stream") == "true"
+    except Exception as e:
+        print(f"Ошибка парсинга сообщения: {e}")
+        await reply_decode_error(msg, e)
+        return
+
+    reply_topic = get_reply_topic(msg)
+    seq = 0
+
+    async def send_delta(delta: str):
+        """Отправка промежуточной части ответа с порядковым номером."""
+        nonlocal seq
+        body, headers = encode_reply({"requestId": request_id, "seq": seq, "delta": delta}, codec)
+        await producer.send_and_wait(reply_topic, body, key=request_id.encode("utf-8"), headers=headers)
+        seq += 1
+
+    # Асинхронная обработка текста. Ошибка передается отдельным полем,
+    # чтобы central-сервис не принял ее за результат
+    try:
+        if "textRef" in message:
+            text = await asyncio.to_thread(load_payload, message["textRef"], message.get("textSha256"))
+        else:
+            text = message["text"]
+        if stream:
+            processed_text = await stream_text(instruction, text, send_delta)
+        else:
+            processed_text = await process_text(instruction, text)
+        response = await asyncio.to_thread(offload_result, {
+            "requestId": request_id,
+            "processedText": processed_text
+        })
+    except Exception as e:
+        print(f"Ошибка YandexGPT: {e}")
+        response = {
+            "requestId": request_id,
+            "error": str(e)
+        }
+
+    try:
+        body, headers = encode_reply(response, codec)
+        await producer.send_and_wait(reply_topic, body, key=request_id.encode("utf-8"), headers=headers)
+        print(f"Отправлен результат для requestId: {request_id}")
+    except Exception as e:
+        print(f"Ошибка при отправке в Kafka: {e}")
+
+
+async def kafka_consumer_loop(consumer: AIOKafkaConsumer, concurrency: int):
+    """Асинхронная обработка сообщений одной полосы, не более concurrency запросов одновременно."""
+    semaphore = asyncio.Semaphore(concurrency)
+
+    async def run(msg):
+        try:
+            await handle_message(msg)
+        finally:
+            semaphore.release()
+
+    try:
+        while True:
+            await semaphore.acquire()
+            msg = await consumer.getone()  # Асинхронное получение сообщения
+            asyncio.create_task(run(msg))
+    except Exception as e:
+        print(f"Ошибка в consumer loop: {e}")
+    finally:
+        await consumer.stop()
+
+
+@app.on_event("startup")
+async def startup_event():
+    """Инициализация асинхронных компонентов при запуске."""
+    global producer, sdk, payload_store
+
+    # Инициализация асинхронного Kafka Producer
+    producer = AIOKafkaProducer(bootstrap_servers=KAFKA_BOOTSTRAP_SERVERS)
+    await producer.start()
+
+    # Инициализация синхронного Yandex Cloud ML SDK
+    sdk = YCloudML(folder_id=FOLDER_ID, auth=API_KEY)
+
+    # Хранилище больших текстов, если установлен pymongo
+    if gridfs is not None:
+        payload_store = gridfs.GridFS(MongoClient(MONGO_URI)[MONGO_DB], collection=CLAIM_CHECK_BUCKET)
+
+    # Отдельный consumer на каждую полосу, чтобы длинные запросы не задерживали короткие
+    for topic, (group_id, concurrency) in LANES.items():
+        consumer = AIOKafkaConsumer(
+            topic,
+            bootstrap_servers=KAFKA_BOOTSTRAP_SERVERS,
+            group_id=group_id,
+            auto_offset_reset="earliest"
+        )
+        await consumer.start()
+        consumers.append(consumer)
+
+        # Запуск consumer loop как фоновой задачи
+        asyncio.create_task(kafka_consumer_loop(consumer, concurrency))
+        print(f"Асинхронный Kafka Consumer запущен: {topic}, параллельность {concurrency}")
+
+
+@app.on_event("shutdown")
+async def shutdown_event():
+    """Очистка ресурсов при остановке."""
+    if producer:
+        await producer.stop()
+    for consumer in consumers:
+        await consumer.stop()
+    print("Ресурсы очищены")
+
+
+@app.get("/")
+async def root():
+    return {"message": "Асинхронный Python-сервис на FastAPI работает"}
+
+
+if __name__ == "__main__":
+    import uvicorn
+
     uvicorn.run(app, host="0.0.0.0", port=8000)
\ No newline at end of file